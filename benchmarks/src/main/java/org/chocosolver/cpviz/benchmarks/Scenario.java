@@ -0,0 +1,143 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz.benchmarks;
+
+import org.chocosolver.cpviz.Visualizer;
+import org.chocosolver.cpviz.visualizers.*;
+import org.chocosolver.solver.Model;
+import org.chocosolver.solver.search.strategy.Search;
+import org.chocosolver.solver.variables.BoolVar;
+import org.chocosolver.solver.variables.IntVar;
+
+/**
+ * The models run by {@link TracingBenchmark}, each one comes with the visualizer to trace it with.
+ * <br/>
+ * Search strategies are static, so that every run explores the very same tree.
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public enum Scenario {
+
+    /**
+     * First solution of the 24-queens problem, traced with a {@link Vector}
+     */
+    QUEENS_VECTOR {
+        @Override
+        Visualizer build(Model m) {
+            IntVar[] Q = queens(m, 24);
+            Vector vector = new Vector(Q, "expanded", 24, 24);
+            vector.setMinMax(1, 24);
+            return vector;
+        }
+    },
+    /**
+     * First solution of the 16-queens problem, with a channeled chess board traced with a {@link DomainMatrix}
+     */
+    QUEENS_MATRIX {
+        @Override
+        Visualizer build(Model m) {
+            int n = 16;
+            IntVar[] Q = queens(m, n);
+            BoolVar[][] board = new BoolVar[n][];
+            for (int i = 0; i < n; i++) {
+                board[i] = m.boolVarArray("B_" + i, n);
+                m.boolsIntChanneling(board[i], Q[i], 1).post();
+            }
+            return new DomainMatrix(board, "expanded", n, n);
+        }
+    },
+    /**
+     * SEND+MORE=MONEY, with Y forbidden to its only solution value: the whole tree is explored.
+     * Traced with an {@link AllDifferent}
+     */
+    SEND_MORE_MONEY {
+        @Override
+        Visualizer build(Model m) {
+            IntVar S = m.intVar("S", 0, 9, false);
+            IntVar E = m.intVar("E", 0, 9, false);
+            IntVar N = m.intVar("N", 0, 9, false);
+            IntVar D = m.intVar("D", 0, 9, false);
+            IntVar M = m.intVar("M", 0, 9, false);
+            IntVar O = m.intVar("O", 0, 9, false);
+            IntVar R = m.intVar("R", 0, 9, false);
+            IntVar Y = m.intVar("Y", 0, 9, false);
+            IntVar[] letters = {S, E, N, D, M, O, R, Y};
+            m.arithm(S, "!=", 0).post();
+            m.arithm(M, "!=", 0).post();
+            m.arithm(Y, "!=", 2).post();
+            m.allDifferent(letters, "NEQS").post();
+            m.scalar(new IntVar[]{S, E, N, D, M, O, R, E, M, O, N, E, Y},
+                    new int[]{1000, 100, 10, 1, 1000, 100, 10, 1, -10000, -1000, -100, -10, -1},
+                    "=", 0).post();
+            m.getSolver().setSearch(Search.inputOrderLBSearch(letters));
+            AllDifferent visualizer = new AllDifferent(letters, "expanded", 8, 10);
+            visualizer.setMinMax(0, 9);
+            return visualizer;
+        }
+    },
+    /**
+     * Unsatisfiable assignment of 8 variables to 4 values, each value taken exactly twice, with an odd sum.
+     * Traced with a {@link Gcc}
+     */
+    GCC {
+        @Override
+        Visualizer build(Model m) {
+            int n = 8;
+            IntVar[] X = m.intVarArray("X", n, 0, 3, false);
+            int[] values = {0, 1, 2, 3};
+            int[] occ = {2, 2, 2, 2};
+            IntVar[] cards = new IntVar[values.length];
+            for (int i = 0; i < values.length; i++) {
+                cards[i] = m.intVar(occ[i]);
+            }
+            m.globalCardinality(X, values, cards, true).post();
+            m.sum(X, "=", 13).post();
+            m.getSolver().setSearch(Search.inputOrderLBSearch(X));
+            return new Gcc(X, values, occ, occ, "expanded", 30, 30);
+        }
+    },
+    /**
+     * Unsatisfiable pigeon-hole problem (7 pigeons, 6 holes) where the first pigeon is channeled to booleans.
+     * Traced with a {@link BoolChanneling}
+     */
+    BOOL_CHANNELING {
+        @Override
+        Visualizer build(Model m) {
+            int n = 6;
+            IntVar[] P = m.intVarArray("P", n + 1, 1, n, false);
+            BoolVar[] bool = m.boolVarArray("b", n);
+            m.boolsIntChanneling(bool, P[0], 1).post();
+            m.allDifferent(P, "NEQS").post();
+            m.getSolver().setSearch(Search.inputOrderLBSearch(P));
+            BoolChanneling visualizer = new BoolChanneling(P[0], bool, 1, "expanded", n, n);
+            visualizer.setMinMax(0, n);
+            return visualizer;
+        }
+    };
+
+    /**
+     * Post the model in <i>m</i>, set a static search strategy and return a visualizer for it.
+     */
+    abstract Visualizer build(Model m);
+
+    private static IntVar[] queens(Model m, int n) {
+        IntVar[] Q = m.intVarArray("Q", n, 1, n, false);
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                int k = j - i;
+                m.arithm(Q[i], "!=", Q[j]).post();
+                m.arithm(Q[i], "!=", Q[j], "+", k).post();
+                m.arithm(Q[i], "!=", Q[j], "-", k).post();
+            }
+        }
+        m.getSolver().setSearch(Search.inputOrderLBSearch(Q));
+        return Q;
+    }
+}
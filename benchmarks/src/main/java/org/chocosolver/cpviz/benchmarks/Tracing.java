@@ -0,0 +1,30 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz.benchmarks;
+
+/**
+ * What is traced during a run of {@link TracingBenchmark}.
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public enum Tracing {
+    /**
+     * No visualization at all, the reference
+     */
+    NONE,
+    /**
+     * The search tree only
+     */
+    TREE,
+    /**
+     * The search tree and the visualizer of the scenario
+     */
+    TREE_VIZ
+}
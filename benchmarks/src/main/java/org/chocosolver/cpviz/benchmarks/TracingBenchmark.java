@@ -0,0 +1,142 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz.benchmarks;
+
+import org.chocosolver.cpviz.Visualization;
+import org.chocosolver.cpviz.Visualizer;
+import org.chocosolver.solver.Model;
+import org.chocosolver.solver.Solver;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measure the cost of tracing a search, for each {@link Scenario} and each level of {@link Tracing}.
+ * <br/>
+ * One operation is one complete call to <code>Solver.solve()</code>, the model being built (and the log files
+ * being opened) before the measurement. Besides the time per solve, the following secondary results are reported:
+ * <br/>
+ * - <code>nodes</code>: time per search node, in ns/node,<br/>
+ * - <code>bytesPerNode</code>: size of the trace files per search node,<br/>
+ * - <code>gc.alloc.rate</code> and <code>gc.alloc.rate.norm</code>, with <code>-prof gc</code>.
+ * <br/>
+ * Run with:
+ * <pre>
+ * mvn install -DskipTests
+ * mvn -f benchmarks/pom.xml package
+ * java -jar benchmarks/target/benchmarks.jar -prof gc
+ * </pre>
+ *
+ * @since 17/10/26
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Thread)
+public class TracingBenchmark {
+
+    @Param({"QUEENS_VECTOR", "QUEENS_MATRIX", "SEND_MORE_MONEY", "GCC", "BOOL_CHANNELING"})
+    Scenario scenario;
+
+    @Param({"NONE", "TREE", "TREE_VIZ"})
+    Tracing tracing;
+
+    private File dir;
+
+    private Solver solver;
+
+    /**
+     * Number of nodes explored, reported as time per node
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Nodes {
+        public long nodes;
+
+        @Setup(Level.Iteration)
+        public void clean() {
+            nodes = 0;
+        }
+    }
+
+    /**
+     * Size of the trace files, reported per node
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Output {
+        public long bytesPerNode;
+
+        private long bytes, nodes;
+
+        @Setup(Level.Iteration)
+        public void clean() {
+            bytes = nodes = bytesPerNode = 0;
+        }
+
+        void add(long b, long n) {
+            bytes += b;
+            nodes += n;
+            bytesPerNode = nodes == 0 ? 0 : bytes / nodes;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void createDirectory() throws IOException {
+        dir = Files.createTempDirectory("cpviz-bench").toFile();
+    }
+
+    @Setup(Level.Invocation)
+    public void buildModel() {
+        Model model = new Model(scenario.name());
+        Visualizer visualizer = scenario.build(model);
+        solver = model.getSolver();
+        if (tracing != Tracing.NONE) {
+            Visualization visu = new Visualization(scenario.name(), solver, dir.getPath());
+            visu.createTree();
+            if (tracing == Tracing.TREE_VIZ) {
+                visu.createViz();
+                visu.addVisualizer(visualizer);
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean solve(Nodes nodes, Output output) {
+        boolean solved = solver.solve();
+        long n = solver.getNodeCount();
+        nodes.nodes += n;
+        output.add(traceSize(), n);
+        return solved;
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteDirectory() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private long traceSize() {
+        if (tracing == Tracing.NONE) {
+            return 0;
+        }
+        return new File(dir, "tree-" + scenario.name() + ".xml").length()
+                + new File(dir, "visualization-" + scenario.name() + ".xml").length();
+    }
+}
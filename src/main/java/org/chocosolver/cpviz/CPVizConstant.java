@@ -43,6 +43,18 @@ public class CPVizConstant {
     public static final String T_TRY_TAG = "\t<try id=\"%s\" parent=\"%s\" name=\"%s\" size=\"%s\" value=\"%s\" />\n";
     public static final String T_FAIL_TAG = "\t<fail id=\"%s\" parent=\"%s\" name=\"%s\" size=\"%s\" value=\"%s\" />\n";
     public static final String T_SUCC_TAG = "\t<succ id=\"%s\" />\n";
+    // try and fail nodes with their depth and the number of levels climbed since the previous node, see Visualization#enableDepths
+    public static final String T_TRY_DEPTH_TAG = "\t<try id=\"%s\" parent=\"%s\" name=\"%s\" size=\"%s\" value=\"%s\""
+            + " depth=\"%s\" jump=\"%s\" />\n";
+    public static final String T_FAIL_DEPTH_TAG = "\t<fail id=\"%s\" parent=\"%s\" name=\"%s\" size=\"%s\" value=\"%s\""
+            + " depth=\"%s\" jump=\"%s\" />\n";
+    // root of the nodes opened after a restart: a try node named RESTART, with the header of the restart in extra attributes
+    public static final String T_RESTART_TAG = "\t<try id=\"%s\" parent=\"0\" name=\"%s\" size=\"?\" value=\"%s\""
+            + " nodes=\"%s\" fails=\"%s\" neighbourhood=\"%s\" />\n";
+
+    // runs of a session, in both the tree and the visualization files
+    public static final String S_RUN_TAG_IN = "<run id=\"%s\" model=\"%s\" >\n";
+    public static final String S_RUN_TAG_OUT = "</run>\n";
 
     ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
     //******************************************* VISUALIZATION*******************************************************//
@@ -52,6 +64,11 @@ public class CPVizConstant {
 
     public static final String V_VISUALIZER_TAG = "\t<visualizer id=\"%s\" type=\"%s\" display=\"%s\" width=\"%s\" height=\"%s\" %s/>\n";
 
+    // static arguments: written once within the declaration of their visualizer, then referenced in each state
+    public static final String V_VISUALIZER_TAG_IN = "\t<visualizer id=\"%s\" type=\"%s\" display=\"%s\" width=\"%s\" height=\"%s\" %s>\n";
+    public static final String V_VISUALIZER_TAG_OUT = "\t</visualizer>\n";
+    public static final String V_STATIC_TAG = "%s<static index=\"%s\" />\n";
+
 
     public static final String V_ARGUMENT_TAG_IN = "%s<argument index=\"%s\">\n";
     public static final String V_ARGUMENT_TAG_OUT = "%s</argument>\n";
@@ -76,6 +93,13 @@ public class CPVizConstant {
     public static final String V_STATE_TAG_IN = "\t<state id=\"%s\" tree_node=\"%s\" >\n";
     public static final String V_STATE_TAG_OUT = "\t</state>\n";
 
+    // delta states: only the elements which differ from the parent state are written, the others are skipped
+    public static final String V_STATE_DELTA_TAG_IN = "\t<state id=\"%s\" tree_node=\"%s\" parent=\"%s\" >\n";
+    public static final String V_SKIP_TAG = "%s<skip count=\"%s\" />\n";
+
+    // summary of a tile of cells of a matrix: number of instantiated cells, mean domain size, smallest and largest values
+    public static final String V_TILE_TAG = "%s<tile index=\"%s\" instantiated=\"%s\" size=\"%s\" min=\"%s\" max=\"%s\" />\n";
+
     public static final String V_SVAR_TAG = "%s<svar index=\"%s\" low=\"%s\" high=\"%s\" />\n";
 
     public static final String V_TUPLE_TAG_IN = "%s<tuple index=\"%s\">\n";
@@ -104,4 +128,13 @@ public class CPVizConstant {
 
     public static final String VALUES = "values";
 
+    // name of the tree nodes summarizing dropped subtrees, see RecordingPolicy
+    public static final String SUMMARY = "dropped";
+
+    // name of the tree nodes rooting the search of each worker of a portfolio, see PortfolioVisualization
+    public static final String WORKER = "worker";
+
+    // name of the tree nodes rooting the search which follows each restart, see RestartPolicy
+    public static final String RESTART = "restart";
+
 }
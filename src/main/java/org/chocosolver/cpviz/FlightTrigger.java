@@ -0,0 +1,66 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz;
+
+/**
+ * Decide when the events kept by the flight recorder of a {@link Visualization} are written
+ * (see {@link Visualization#enableFlightRecorder(int, FlightTrigger)}).
+ * <br/>
+ * A trigger is asked after each node and after each solution. When it fires, the last events are written,
+ * the node or the solution which made it fire being the last one.
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public interface FlightTrigger {
+
+    /**
+     * @param id       identifier of the node
+     * @param depth    depth of the node, the children of the root node are at depth 1
+     * @param failed   <tt>true</tt> if the node is a failure
+     * @param solution <tt>true</tt> when asked after a solution, found at node <i>id</i>
+     * @return <tt>true</tt> if the events kept so far should be written
+     */
+    boolean fire(long id, int depth, boolean failed, boolean solution);
+
+    /**
+     * Write the nodes leading to each solution
+     */
+    static FlightTrigger onSolution() {
+        return (id, depth, failed, solution) -> solution;
+    }
+
+    /**
+     * Write the nodes leading to each failure at depth greater than or equal to <i>d</i>
+     */
+    static FlightTrigger failureDepth(int d) {
+        return (id, depth, failed, solution) -> failed && depth >= d;
+    }
+
+    /**
+     * Write the nodes leading to <i>from</i>, then each node up to <i>to</i>
+     */
+    static FlightTrigger nodeRange(long from, long to) {
+        return (id, depth, failed, solution) -> !solution && id >= from && id <= to;
+    }
+
+    /**
+     * Write the events kept as soon as a trigger of <i>triggers</i> fires
+     */
+    static FlightTrigger any(FlightTrigger... triggers) {
+        return (id, depth, failed, solution) -> {
+            for (FlightTrigger trigger : triggers) {
+                if (trigger.fire(id, depth, failed, solution)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+}
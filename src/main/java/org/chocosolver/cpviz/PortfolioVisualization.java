@@ -0,0 +1,213 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz;
+
+import org.chocosolver.cpviz.io.PortfolioMerger;
+import org.chocosolver.solver.Model;
+import org.chocosolver.solver.ParallelPortfolio;
+import org.chocosolver.solver.search.loop.monitors.IMonitorClose;
+import org.chocosolver.solver.search.loop.monitors.IMonitorInitialize;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.BiConsumer;
+
+/**
+ * Visualization of the workers of a {@link ParallelPortfolio}.
+ * <br/>
+ * Each worker model gets its own {@link Visualization}, named <i>pbname</i>-w<i>k</i> for the <i>k</i>-th worker,
+ * which only touches the files and the state of this worker: the workers do not share any lock while searching.
+ * <br/>
+ * With {@link Mode#COMBINED}, once every worker has been closed, the traces are merged into a single tree and
+ * a single visualization named <i>pbname</i>, each node being tagged with its worker (see {@link PortfolioMerger}),
+ * and the files of the workers are deleted. With {@link Mode#PER_WORKER}, the files of the workers are kept as is.
+ * <br/>
+ * A worker which has not started when another one ends is never started by the portfolio:
+ * its files are closed empty, and it is left out of the merged trace.
+ * <br/>
+ * The models must be added to the portfolio before building <code>this</code>.
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public class PortfolioVisualization {
+
+    public enum Mode {
+        /**
+         * One tree and one visualization per worker
+         */
+        PER_WORKER,
+        /**
+         * A single tree and a single visualization, tagged with the workers
+         */
+        COMBINED
+    }
+
+    private final String pbid;
+
+    private final String dir;
+
+    private final Mode mode;
+
+    private final Visualization[] visualizations;
+
+    private static final int NEW = 0, RUNNING = 1, CLOSED = 2, ABANDONED = 3;
+
+    /**
+     * State of each worker
+     */
+    private final AtomicIntegerArray states;
+
+    private final AtomicBoolean combined = new AtomicBoolean();
+
+    /**
+     * Build the visualizations of the workers of <i>portfolio</i>.
+     *
+     * @param pbname    name of the treated problem (suffix of log files)
+     * @param portfolio the portfolio, with its models
+     * @param dir       output directory
+     * @param mode      how the traces of the workers are written
+     * @param setup     called for each worker, with its model and its visualization,
+     *                  to create the tree and the viz and add the visualizers
+     */
+    public PortfolioVisualization(String pbname, ParallelPortfolio portfolio, String dir, Mode mode,
+                                  BiConsumer<Model, Visualization> setup) {
+        this.pbid = pbname;
+        this.dir = dir;
+        this.mode = mode;
+        List<Model> models = portfolio.getModels();
+        if (models.isEmpty()) {
+            throw new UnsupportedOperationException("The models must be added to the portfolio first");
+        }
+        this.visualizations = new Visualization[models.size()];
+        this.states = new AtomicIntegerArray(models.size());
+        for (int w = 0; w < visualizations.length; w++) {
+            Model model = models.get(w);
+            visualizations[w] = new Visualization(worker(w), model.getSolver(), dir);
+            // plugged before the visualization, so that it is initialized first, and closed after
+            model.getSolver().plugMonitor(new Worker(w));
+            setup.accept(model, visualizations[w]);
+            if (mode == Mode.COMBINED && (visualizations[w].treeFile == null
+                    || (visualizations[w].vizFile == null) != (visualizations[0].vizFile == null))) {
+                throw new UnsupportedOperationException("Every worker must create a tree, and either all or none a viz");
+            }
+        }
+    }
+
+    /**
+     * @return number of workers
+     */
+    public int getNbWorkers() {
+        return visualizations.length;
+    }
+
+    /**
+     * @return the visualization of the worker <i>w</i>
+     */
+    public Visualization getVisualization(int w) {
+        return visualizations[w];
+    }
+
+    private String worker(int w) {
+        return pbid + "-w" + w;
+    }
+
+    /**
+     * Called once a worker is closed: the last one to close merges the traces, only once
+     */
+    private void closed(int w) {
+        states.set(w, CLOSED);
+        // the workers which have not started yet never will
+        for (int k = 0; k < states.length(); k++) {
+            states.compareAndSet(k, NEW, ABANDONED);
+        }
+        for (int k = 0; k < states.length(); k++) {
+            if (states.get(k) == RUNNING) {
+                return;
+            }
+        }
+        if (combined.compareAndSet(false, true)) {
+            for (int k = 0; k < states.length(); k++) {
+                if (states.get(k) == ABANDONED) {
+                    visualizations[k].beforeClose();
+                }
+            }
+            if (mode == Mode.COMBINED) {
+                try {
+                    combine();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void combine() throws IOException {
+        int n = visualizations.length;
+        File[] trees = new File[n];
+        File[] vizs = visualizations[0].vizFile == null ? null : new File[n];
+        for (int w = 0; w < n; w++) {
+            trees[w] = visualizations[w].treeFile;
+            if (vizs != null) {
+                vizs[w] = visualizations[w].vizFile;
+            }
+        }
+        PortfolioMerger.merge(trees, vizs,
+                new File(dir, "tree-" + pbid + ".xml"), new File(dir, "visualization-" + pbid + ".xml"));
+        // the configuration of the first worker, pointing at the merged files
+        File conf = new File(dir, "configuration-" + worker(0) + ".xml");
+        String configuration = new String(Files.readAllBytes(conf.toPath()), StandardCharsets.UTF_8);
+        Files.write(new File(dir, "configuration-" + pbid + ".xml").toPath(),
+                configuration.replace(worker(0), pbid).getBytes(StandardCharsets.UTF_8));
+        for (int w = 0; w < n; w++) {
+            new File(dir, "configuration-" + worker(w) + ".xml").delete();
+            trees[w].delete();
+            if (vizs != null) {
+                vizs[w].delete();
+            }
+        }
+    }
+
+    private final class Worker implements IMonitorInitialize, IMonitorClose {
+
+        private final int w;
+
+        Worker(int w) {
+            this.w = w;
+        }
+
+        @Override
+        public void beforeInitialize() {
+            if (!states.compareAndSet(w, NEW, RUNNING) && states.get(w) == ABANDONED) {
+                // too late, the traces may already be merged: the visualization, plugged next, is left out
+                visualizations[w].solver.unplugMonitor(visualizations[w]);
+            }
+        }
+
+        @Override
+        public void afterInitialize() {
+        }
+
+        @Override
+        public void beforeClose() {
+        }
+
+        @Override
+        public void afterClose() {
+            if (states.get(w) == RUNNING) {
+                closed(w);
+            }
+        }
+    }
+}
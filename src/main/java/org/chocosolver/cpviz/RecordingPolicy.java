@@ -0,0 +1,147 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz;
+
+import java.util.Random;
+
+/**
+ * Decide which nodes of the search tree are recorded by a {@link Visualization}.
+ * <br/>
+ * A policy is only asked about the nodes whose parent is recorded: when a node is rejected, its whole subtree
+ * is dropped and collapses, together with the dropped siblings, into a single summary node
+ * (see {@link Visualization#setRecordingPolicy(RecordingPolicy)}).
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public interface RecordingPolicy {
+
+    /**
+     * @param id     identifier of the node
+     * @param depth  depth of the node, the children of the root node are at depth 1
+     * @param failed <tt>true</tt> if the node is a failure
+     * @param bytes  number of bytes written so far in the tree and visualization files, flushed or still buffered;
+     *               in asynchronous mode, the events not handled yet by the writer thread are not counted
+     * @return <tt>true</tt> if the node, and possibly its subtree, should be recorded
+     */
+    boolean accept(long id, int depth, boolean failed, long bytes);
+
+    /**
+     * Record every node
+     */
+    RecordingPolicy ALL = (id, depth, failed, bytes) -> true;
+
+    /**
+     * Record one node out of <i>k</i>, among the nodes whose parent is recorded
+     */
+    static RecordingPolicy everyKth(int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be positive");
+        }
+        return new RecordingPolicy() {
+            long count;
+
+            @Override
+            public boolean accept(long id, int depth, boolean failed, long bytes) {
+                return count++ % k == 0;
+            }
+        };
+    }
+
+    /**
+     * Record the first <i>n</i> nodes only
+     */
+    static RecordingPolicy firstNodes(long n) {
+        return new RecordingPolicy() {
+            long count;
+
+            @Override
+            public boolean accept(long id, int depth, boolean failed, long bytes) {
+                if (count < n) {
+                    count++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Record the nodes of depth lower than or equal to <i>d</i> only
+     */
+    static RecordingPolicy maxDepth(int d) {
+        return (id, depth, failed, bytes) -> depth <= d;
+    }
+
+    /**
+     * Record every node which is not a failure, and sample the failures the way a reservoir of <i>n</i> failures
+     * would admit them: the <i>k</i>-th failure is recorded with probability <i>n/k</i>.
+     * The number of recorded failures thus grows logarithmically with the number of failures.
+     *
+     * @param n    size of the reservoir
+     * @param seed seed of the random number generator
+     */
+    static RecordingPolicy failureReservoir(int n, long seed) {
+        Random random = new Random(seed);
+        return new RecordingPolicy() {
+            long count;
+
+            @Override
+            public boolean accept(long id, int depth, boolean failed, long bytes) {
+                if (!failed) {
+                    return true;
+                }
+                count++;
+                return count <= n || random.nextDouble() * count < n;
+            }
+        };
+    }
+
+    /**
+     * Record nodes as long as less than <i>max</i> bytes have been written in the tree and visualization files
+     */
+    static RecordingPolicy byteBudget(long max) {
+        return (id, depth, failed, bytes) -> bytes < max;
+    }
+
+    /**
+     * Record nodes during the first <i>ms</i> milliseconds, starting from the first node
+     */
+    static RecordingPolicy timeBudget(long ms) {
+        return new RecordingPolicy() {
+            boolean started;
+            long end;
+
+            @Override
+            public boolean accept(long id, int depth, boolean failed, long bytes) {
+                long now = System.nanoTime();
+                if (!started) {
+                    started = true;
+                    end = now + ms * 1_000_000;
+                }
+                return now - end < 0;
+            }
+        };
+    }
+
+    /**
+     * Record a node only if every policy of <i>policies</i> accepts it.
+     * Every policy is asked about every node, whatever the answers of the others, so that policies which count
+     * the nodes, such as {@link #everyKth(int)} or {@link #firstNodes(long)}, do not depend on their order.
+     */
+    static RecordingPolicy all(RecordingPolicy... policies) {
+        return (id, depth, failed, bytes) -> {
+            boolean accept = true;
+            for (RecordingPolicy policy : policies) {
+                accept &= policy.accept(id, depth, failed, bytes);
+            }
+            return accept;
+        };
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz;
+
+/**
+ * Decide which of the searches following the restarts are recorded in detail by a {@link Visualization}.
+ * <br/>
+ * After each restart, the nodes opened until the next restart hang from a node named {@link CPVizConstant#RESTART},
+ * child of the root node, which gives the index of the restart, the numbers of nodes and failures before it
+ * and, for a large neighbourhood search, the decisions fixed by the neighbourhood.
+ * A policy is asked once per restart: when it rejects a restart, the node of the restart is still written but
+ * the nodes opened after it collapse into a single summary node, named {@link CPVizConstant#SUMMARY}
+ * (see {@link Visualization#setRestartPolicy(RestartPolicy)}).
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public interface RestartPolicy {
+
+    /**
+     * @param restart index of the restart, from 1
+     * @param nodes   number of nodes opened before the restart
+     * @param fails   number of failures before the restart
+     * @return <tt>true</tt> if the nodes opened after the restart should be recorded
+     */
+    boolean accept(long restart, long nodes, long fails);
+
+    /**
+     * Record every restart
+     */
+    RestartPolicy ALL = (restart, nodes, fails) -> true;
+
+    /**
+     * Collapse every restart
+     */
+    RestartPolicy NONE = (restart, nodes, fails) -> false;
+
+    /**
+     * Record one restart out of <i>k</i>, starting with the first one
+     */
+    static RestartPolicy everyKth(int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be positive");
+        }
+        return (restart, nodes, fails) -> (restart - 1) % k == 0;
+    }
+
+    /**
+     * Record the first <i>n</i> restarts only
+     */
+    static RestartPolicy firstRestarts(long n) {
+        return (restart, nodes, fails) -> restart <= n;
+    }
+}
@@ -0,0 +1,302 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz;
+
+import org.chocosolver.memory.IStateInt;
+import org.chocosolver.solver.Solver;
+import org.chocosolver.solver.exception.ContradictionException;
+import org.chocosolver.solver.search.loop.monitors.IMonitorContradiction;
+import org.chocosolver.solver.search.loop.monitors.IMonitorDownBranch;
+import org.chocosolver.solver.search.loop.monitors.IMonitorInitialize;
+import org.chocosolver.solver.search.loop.monitors.IMonitorSolution;
+import org.chocosolver.solver.search.strategy.decision.Decision;
+import org.chocosolver.solver.variables.IntVar;
+import org.chocosolver.solver.variables.SetVar;
+import org.chocosolver.solver.variables.Variable;
+
+import java.util.*;
+
+/**
+ * An in-memory representation of the search tree, built as the search runs, to be queried once it is over.
+ * <br/>
+ * Nodes are numbered from 0, the root node, in the order they are opened; these identifiers are the ones
+ * expected and returned by every method of this class. They are the identifiers of the tree file written by a
+ * {@link Visualization} of the same search only when every node of that file is a decision node:
+ * restart and summary nodes, or nodes skipped before an activation trigger fires, shift the numbering of the file.
+ * Nodes are stored in parallel arrays of primitives (parent, depth, variable, value, domain size and status),
+ * so that no object is allocated per node.
+ * Unlike the tree file, a node is a failure if the propagation which follows its decision fails.
+ * <br/>
+ * Nodes are numbered in depth-first order, the subtree of a node is thus made of consecutive nodes.
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public class SearchTreeIndex implements IMonitorInitialize, IMonitorDownBranch, IMonitorContradiction, IMonitorSolution {
+
+    public static final byte TRY = 0, FAIL = 1, SUCC = 2;
+
+    private final Solver solver;
+
+    private final IStateInt current;
+
+    private int size;
+
+    private int[] parents = new int[1024];
+
+    private int[] depths = new int[1024];
+
+    private int[] names = new int[1024];
+
+    private int[] values = new int[1024];
+
+    private int[] sizes = new int[1024];
+
+    private byte[] status = new byte[1024];
+
+    private int[] solutions = new int[16];
+
+    private int nbSolutions;
+
+    /**
+     * Set when the propagation of the decision being applied fails, the node being created afterwards
+     */
+    private boolean branching, failed;
+
+    /**
+     * Identifier of the name of the decision variables
+     */
+    private final IdentityHashMap<Variable, Integer> variables = new IdentityHashMap<>();
+
+    private final List<String> variableNames = new ArrayList<>();
+
+    /**
+     * Build an index of the search tree of <i>solver</i>, and plug it in.
+     *
+     * @param solver solver to observe
+     */
+    public SearchTreeIndex(Solver solver) {
+        this.solver = solver;
+        this.current = solver.getEnvironment().makeInt(0);
+        solver.plugMonitor(this);
+    }
+
+    @Override
+    public void afterInitialize() {
+        size = 0;
+        nbSolutions = 0;
+        add(-1, -1, 0, -1);
+        current.set(0);
+    }
+
+    @Override
+    public void beforeDownBranch(boolean left) {
+        branching = true;
+        failed = false;
+    }
+
+    @Override
+    public void afterDownBranch(boolean left) {
+        Decision decision = solver.getDecisionPath().getLastDecision();
+        Variable var = decision.getDecisionVariable();
+        if (var == null) {
+            // the root decision, applied again after a restart
+            branching = false;
+            return;
+        }
+        Integer name = variables.get(var);
+        if (name == null) {
+            name = variableNames.size();
+            variables.put(var, name);
+            variableNames.add(var.getName());
+        }
+        int dsize = -1;
+        if (var instanceof IntVar) {
+            dsize = ((IntVar) var).getDomainSize();
+        } else if (var instanceof SetVar) {
+            dsize = ((SetVar) var).getUB().size();
+        }
+        Object value = decision.getDecisionValue();
+        int node = add(current.get(), name, value instanceof Integer ? (Integer) value : 0, dsize);
+        if (failed) {
+            status[node] = FAIL;
+        }
+        branching = false;
+        current.set(node);
+    }
+
+    @Override
+    public void onContradiction(ContradictionException cex) {
+        if (branching) {
+            failed = true;
+        } else if (size > 0) {
+            status[current.get()] = FAIL;
+        }
+    }
+
+    @Override
+    public void onSolution() {
+        int node = current.get();
+        status[node] = SUCC;
+        if (nbSolutions == solutions.length) {
+            solutions = Arrays.copyOf(solutions, nbSolutions * 3 / 2 + 1);
+        }
+        solutions[nbSolutions++] = node;
+    }
+
+    private int add(int parent, int name, int value, int dsize) {
+        if (size == parents.length) {
+            int n = size * 3 / 2 + 1;
+            parents = Arrays.copyOf(parents, n);
+            depths = Arrays.copyOf(depths, n);
+            names = Arrays.copyOf(names, n);
+            values = Arrays.copyOf(values, n);
+            sizes = Arrays.copyOf(sizes, n);
+            status = Arrays.copyOf(status, n);
+        }
+        parents[size] = parent;
+        depths[size] = parent < 0 ? 0 : depths[parent] + 1;
+        names[size] = name;
+        values[size] = value;
+        sizes[size] = dsize;
+        status[size] = TRY;
+        return size++;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @return number of nodes, root node included
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return parent of <i>node</i>, -1 for the root node
+     */
+    public int parent(int node) {
+        return parents[check(node)];
+    }
+
+    public int depth(int node) {
+        return depths[check(node)];
+    }
+
+    /**
+     * @return name of the variable of the decision of <i>node</i>, <tt>null</tt> for the root node
+     */
+    public String variable(int node) {
+        int name = names[check(node)];
+        return name < 0 ? null : variableNames.get(name);
+    }
+
+    /**
+     * @return value of the decision of <i>node</i>
+     */
+    public int value(int node) {
+        return values[check(node)];
+    }
+
+    /**
+     * @return size of the domain of the variable of <i>node</i>, after the decision, -1 if unknown
+     */
+    public int domainSize(int node) {
+        return sizes[check(node)];
+    }
+
+    /**
+     * @return {@link #TRY}, {@link #FAIL} or {@link #SUCC}
+     */
+    public byte status(int node) {
+        return status[check(node)];
+    }
+
+    /**
+     * @return number of nodes in the subtree rooted in <i>node</i>, <i>node</i> included
+     */
+    public int subtreeSize(int node) {
+        int d = depths[check(node)];
+        int end = node + 1;
+        while (end < size && depths[end] > d) {
+            end++;
+        }
+        return end - node;
+    }
+
+    /**
+     * @return for each variable, the number of failures which followed a decision on it
+     */
+    public Map<String, Long> failuresPerVariable() {
+        long[] counts = new long[variableNames.size()];
+        for (int i = 1; i < size; i++) {
+            if (status[i] == FAIL) {
+                counts[names[i]]++;
+            }
+        }
+        Map<String, Long> failures = new LinkedHashMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                failures.merge(variableNames.get(i), counts[i], Long::sum);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * @return the nodes from the root node to <i>node</i>, both included
+     */
+    public int[] path(int node) {
+        int[] path = new int[depths[check(node)] + 1];
+        for (int i = path.length - 1; i >= 0; i--) {
+            path[i] = node;
+            node = parents[node];
+        }
+        return path;
+    }
+
+    /**
+     * @return number of solutions found
+     */
+    public int nbSolutions() {
+        return nbSolutions;
+    }
+
+    /**
+     * @return the nodes from the root node to the node of the <i>k</i>-th solution (starting from 0)
+     */
+    public int[] pathToSolution(int k) {
+        if (k < 0 || k >= nbSolutions) {
+            throw new IndexOutOfBoundsException("no solution " + k);
+        }
+        return path(solutions[k]);
+    }
+
+    /**
+     * @return the number of nodes at each depth
+     */
+    public long[] depthHistogram() {
+        int max = 0;
+        for (int i = 0; i < size; i++) {
+            max = Math.max(max, depths[i]);
+        }
+        long[] histogram = new long[size == 0 ? 0 : max + 1];
+        for (int i = 0; i < size; i++) {
+            histogram[depths[i]]++;
+        }
+        return histogram;
+    }
+
+    private int check(int node) {
+        if (node < 0 || node >= size) {
+            throw new IndexOutOfBoundsException("no node " + node);
+        }
+        return node;
+    }
+}
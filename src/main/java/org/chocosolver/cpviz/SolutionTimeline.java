@@ -0,0 +1,172 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz;
+
+import org.chocosolver.solver.ResolutionPolicy;
+import org.chocosolver.solver.Solver;
+import org.chocosolver.solver.objective.IObjectiveManager;
+import org.chocosolver.solver.search.loop.monitors.IMonitorClose;
+import org.chocosolver.solver.search.loop.monitors.IMonitorSolution;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Record, for each solution, the time, the number of nodes and failures, the objective value
+ * and the best bound proved on the objective, to follow the convergence of an optimization run.
+ * <br/>
+ * Unlike the tree and visualization files, nothing but a few primitive columns is updated per solution:
+ * the timeline can be left on permanently (see {@link Visualization#createTimeline()}).
+ * When the resolution closes, the solutions not written yet are appended to the file, if any,
+ * as comma-separated values: time (in nanoseconds since the beginning of the resolution), nodes, failures,
+ * objective and bound, the last two being empty for a satisfaction problem.
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public final class SolutionTimeline implements IMonitorSolution, IMonitorClose {
+
+    public static final String HEADER = "nanos,nodes,fails,objective,bound";
+
+    private final Solver solver;
+
+    private final File file;
+
+    private long[] nanos = new long[16], nodes = new long[16], fails = new long[16];
+
+    private double[] objectives = new double[16], bounds = new double[16];
+
+    private int size;
+
+    /**
+     * Number of solutions already written into the file
+     */
+    private int written;
+
+    /**
+     * Build a timeline, to be plugged into <i>solver</i>
+     *
+     * @param solver the solver whose solutions are recorded
+     * @param file   where solutions are written when the resolution closes, <tt>null</tt> to keep them in memory only
+     */
+    public SolutionTimeline(Solver solver, File file) {
+        this.solver = solver;
+        this.file = file;
+    }
+
+    @Override
+    public void onSolution() {
+        if (size == nanos.length) {
+            int n = size * 2;
+            nanos = Arrays.copyOf(nanos, n);
+            nodes = Arrays.copyOf(nodes, n);
+            fails = Arrays.copyOf(fails, n);
+            objectives = Arrays.copyOf(objectives, n);
+            bounds = Arrays.copyOf(bounds, n);
+        }
+        nanos[size] = solver.getTimeCountInNanoSeconds();
+        nodes[size] = solver.getNodeCount();
+        fails[size] = solver.getFailCount();
+        IObjectiveManager<?> objective = solver.getObjectiveManager();
+        if (objective.isOptimization()) {
+            objectives[size] = objective.getBestSolutionValue().doubleValue();
+            bounds[size] = (objective.getPolicy() == ResolutionPolicy.MINIMIZE ?
+                    objective.getBestLB() : objective.getBestUB()).doubleValue();
+        } else {
+            objectives[size] = Double.NaN;
+            bounds[size] = Double.NaN;
+        }
+        size++;
+    }
+
+    @Override
+    public void beforeClose() {
+        if (file == null || (written == size && written > 0)) {
+            return;
+        }
+        try (Writer out = new FileWriter(file, written > 0)) {
+            StringBuilder st = new StringBuilder();
+            if (written == 0) {
+                st.append(HEADER).append('\n');
+            }
+            for (int i = written; i < size; i++) {
+                st.append(nanos[i]).append(',').append(nodes[i]).append(',').append(fails[i]).append(',');
+                number(st, objectives[i]).append(',');
+                number(st, bounds[i]).append('\n');
+            }
+            out.write(st.toString());
+            written = size;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void afterClose() {
+    }
+
+    private static StringBuilder number(StringBuilder st, double v) {
+        if (v == (long) v) {
+            st.append((long) v);
+        } else if (!Double.isNaN(v)) {
+            st.append(v);
+        }
+        return st;
+    }
+
+    /**
+     * @return number of solutions recorded
+     */
+    public int getNbSolutions() {
+        return size;
+    }
+
+    /**
+     * @param i index of a solution, from 0
+     * @return time of the solution, in nanoseconds since the beginning of the resolution
+     */
+    public long getNanos(int i) {
+        return nanos[i];
+    }
+
+    /**
+     * @param i index of a solution, from 0
+     * @return number of nodes opened before the solution
+     */
+    public long getNodes(int i) {
+        return nodes[i];
+    }
+
+    /**
+     * @param i index of a solution, from 0
+     * @return number of failures before the solution
+     */
+    public long getFails(int i) {
+        return fails[i];
+    }
+
+    /**
+     * @param i index of a solution, from 0
+     * @return value of the objective of the solution, NaN for a satisfaction problem
+     */
+    public double getObjective(int i) {
+        return objectives[i];
+    }
+
+    /**
+     * @param i index of a solution, from 0
+     * @return best bound proved on the objective when the solution was found, NaN for a satisfaction problem
+     */
+    public double getBound(int i) {
+        return bounds[i];
+    }
+}
@@ -0,0 +1,258 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz;
+
+import org.chocosolver.cpviz.io.ByteEmitter;
+import org.chocosolver.cpviz.io.TraceFormat;
+import org.chocosolver.cpviz.sinks.BinaryTraceSink;
+import org.chocosolver.cpviz.sinks.XmlTraceSink;
+import org.chocosolver.cpviz.visualizers.StateRecord;
+import org.chocosolver.solver.Solver;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A trace shared by many resolutions, for an application which solves small models over and over.
+ * <br/>
+ * The sink of a session, its files and its string tables, stay open from one resolution to the next:
+ * each resolution is a run of the session, started by {@link #newRun(Solver)},
+ * whose events are enclosed in a <code>run</code> section of the trace (see {@link TraceSink#onRunStart(long, String)}).
+ * A run ends when the next one starts, or when the session is closed: its {@link Visualization} is then unplugged
+ * from its solver, so that a solver reused from one run to the next only feeds the current run.
+ * <br/>
+ * Runs are sequential: a session is not thread-safe.
+ * When a session writes files, they can be rolled: once a part exceeds a given size,
+ * the next run starts a new part, <code>tree-</code><i>name</i><code>-</code><i>part</i> and
+ * <code>visualization-</code><i>name</i><code>-</code><i>part</i>. A run is never split between two parts.
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public final class TraceSession implements AutoCloseable {
+
+    private TraceSink sink;
+
+    /**
+     * Files of the session, <tt>null</tt> when the sink is given
+     */
+    private final String name, dir;
+
+    private final TraceFormat format;
+
+    private final long rollSize;
+
+    private ByteEmitter tree, visualization;
+
+    private int part = -1;
+
+    /**
+     * Number of runs written before the current part
+     */
+    private long partStart;
+
+    /**
+     * Number of runs started, the last one being the current run
+     */
+    private long runs;
+
+    private boolean running, closed;
+
+    /**
+     * Visualization of the current run, <tt>null</tt> if none
+     */
+    private Visualization current;
+
+    /**
+     * Build a session delivering the events of its runs to <i>sink</i>, closed with the session
+     *
+     * @param sink receiver of the events
+     */
+    public TraceSession(TraceSink sink) {
+        this.sink = sink;
+        this.name = null;
+        this.dir = null;
+        this.format = TraceFormat.XML;
+        this.rollSize = 0;
+    }
+
+    /**
+     * Build a session writing the tree and the visualization of its runs into files
+     *
+     * @param name     name of the session (suffix of the files)
+     * @param dir      output directory
+     * @param format   format of the files
+     * @param rollSize size, in bytes, above which the next run is written into new files, 0 to never roll
+     */
+    public TraceSession(String name, String dir, TraceFormat format, long rollSize) {
+        this.name = name;
+        this.dir = dir;
+        this.format = format;
+        this.rollSize = rollSize;
+        roll();
+    }
+
+    /**
+     * Open the next part of the files
+     */
+    private void roll() {
+        if (sink != null) {
+            sink.onClose();
+        }
+        part++;
+        partStart = runs;
+        try {
+            tree = ByteEmitter.open(new File(dir, "tree-" + name + "-" + part + format.extension));
+            visualization = ByteEmitter.open(new File(dir, "visualization-" + name + "-" + part + format.extension));
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new UnsupportedOperationException("Unable to create the files of the session " + name);
+        }
+        sink = format == TraceFormat.BINARY ? new BinaryTraceSink(tree, visualization) : new XmlTraceSink(tree, visualization);
+    }
+
+    /**
+     * Start a new run, named after the model of <i>solver</i>, and end the current one
+     *
+     * @param solver the solver of the run
+     * @return the visualization of the run, to which visualizers are added directly
+     */
+    public Visualization newRun(Solver solver) {
+        return newRun(solver, solver.getModel().getName());
+    }
+
+    /**
+     * Start a new run and end the current one
+     *
+     * @param solver the solver of the run
+     * @param model  name of the run
+     * @return the visualization of the run, to which visualizers are added directly
+     */
+    public Visualization newRun(Solver solver, String model) {
+        if (closed) {
+            throw new UnsupportedOperationException("The session is closed");
+        }
+        endRun();
+        if (rollSize > 0 && runs > partStart
+                && tree.flushed() + tree.buffered() + visualization.flushed() + visualization.buffered() >= rollSize) {
+            roll();
+        }
+        running = true;
+        sink.onRunStart(++runs, model);
+        current = new Visualization(solver, new Run(runs));
+        return current;
+    }
+
+    private void endRun() {
+        if (running) {
+            // the events it still buffers belong to the run
+            current.detach();
+            current = null;
+            running = false;
+            sink.onRunEnd(runs);
+        }
+    }
+
+    /**
+     * @return number of runs started
+     */
+    public long getNbRuns() {
+        return runs;
+    }
+
+    /**
+     * @return number of parts of the files written so far, 0 if the session writes no file
+     */
+    public int getNbParts() {
+        return part + 1;
+    }
+
+    /**
+     * End the current run, and close the sink
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            endRun();
+            sink.onClose();
+        }
+    }
+
+    /**
+     * The sink of a run: forward the events to the sink of the session while the run is the current one
+     */
+    private final class Run implements TraceSink {
+
+        private final long id;
+
+        Run(long id) {
+            this.id = id;
+        }
+
+        private boolean current() {
+            return running && id == runs;
+        }
+
+        @Override
+        public void onRoot() {
+            if (current()) {
+                sink.onRoot();
+            }
+        }
+
+        @Override
+        public void onNode(long id, long parent, String varName, int size, Object value, Status status) {
+            if (current()) {
+                sink.onNode(id, parent, varName, size, value, status);
+            }
+        }
+
+        @Override
+        public void onNode(long id, long parent, String varName, int size, Object value, Status status,
+                           int depth, int jump) {
+            if (current()) {
+                sink.onNode(id, parent, varName, size, value, status, depth, jump);
+            }
+        }
+
+        @Override
+        public void onRestart(long id, long restart, long nodes, long fails, String neighbourhood) {
+            if (current()) {
+                sink.onRestart(id, restart, nodes, fails, neighbourhood);
+            }
+        }
+
+        @Override
+        public void onSolution(long id) {
+            if (current()) {
+                sink.onSolution(id);
+            }
+        }
+
+        @Override
+        public void onVisualizer(int id, String declaration) {
+            if (current()) {
+                sink.onVisualizer(id, declaration);
+            }
+        }
+
+        @Override
+        public void onVisualizerState(long stateId, long nodeId, StateRecord state) {
+            if (current()) {
+                sink.onVisualizerState(stateId, nodeId, state);
+            }
+        }
+
+        @Override
+        public void onClose() {
+            // the run ends with the next one, the sink is closed with the session
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz;
+
+import org.chocosolver.cpviz.visualizers.StateRecord;
+
+/**
+ * Receive the events of a search traced by a {@link Visualization}, independently of any file format.
+ * <br/>
+ * Events are delivered in order, by a single thread at a time: the search thread,
+ * or the writer thread once {@link Visualization#enableAsync(int, org.chocosolver.cpviz.io.Backpressure, int)} is called.
+ * Tree events are delivered for the nodes accepted by the recording policy, including summary nodes.
+ * Visualizer states are delivered as {@link StateRecord}s, which can be turned into XML
+ * with {@link org.chocosolver.cpviz.visualizers.Writer#replay(StateRecord)},
+ * as {@link org.chocosolver.cpviz.sinks.XmlTraceSink} does.
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public interface TraceSink {
+
+    enum Status {
+        TRY, FAIL
+    }
+
+    /**
+     * The root node, of identifier 0, is created
+     */
+    void onRoot();
+
+    /**
+     * A node is created
+     *
+     * @param id      identifier of the node
+     * @param parent  identifier of its parent node
+     * @param varName name of the decision variable
+     * @param size    domain size of the decision variable, -1 if unknown
+     * @param value   value of the decision
+     * @param status  {@link Status#FAIL} if the node is a failure
+     */
+    void onNode(long id, long parent, String varName, int size, Object value, Status status);
+
+    /**
+     * A node is created, with its depth, once {@link Visualization#enableDepths()} is called.
+     * By default, delivered without its depth.
+     *
+     * @param id      identifier of the node
+     * @param parent  identifier of its parent node
+     * @param varName name of the decision variable
+     * @param size    domain size of the decision variable, -1 if unknown
+     * @param value   value of the decision
+     * @param status  {@link Status#FAIL} if the node is a failure
+     * @param depth   depth of the node, the children of the root node are at depth 1
+     * @param jump    number of levels the search climbed up since the previous node, 0 when going down
+     */
+    default void onNode(long id, long parent, String varName, int size, Object value, Status status, int depth, int jump) {
+        onNode(id, parent, varName, size, value, status);
+    }
+
+    /**
+     * The search restarts: a node rooting the nodes opened until the next restart is created, as a child of the root node.
+     * By default, delivered as a node named {@link CPVizConstant#RESTART} whose value is <i>restart</i>.
+     *
+     * @param id            identifier of the node
+     * @param restart       index of the restart, from 1
+     * @param nodes         number of nodes opened before the restart
+     * @param fails         number of failures before the restart
+     * @param neighbourhood decisions fixed by a large neighbourhood search, such as <code>x=1 y=3</code>, empty if none
+     */
+    default void onRestart(long id, long restart, long nodes, long fails, String neighbourhood) {
+        onNode(id, 0, CPVizConstant.RESTART, -1, restart, Status.TRY);
+    }
+
+    /**
+     * The node <i>id</i> is a solution
+     */
+    void onSolution(long id);
+
+    /**
+     * A visualizer is declared, before any state is delivered
+     *
+     * @param id          identifier of the visualizer
+     * @param declaration its <code>visualizer</code> tag, as written in the visualization file
+     */
+    void onVisualizer(int id, String declaration);
+
+    /**
+     * The visualizers states of a node are captured
+     *
+     * @param stateId identifier of the state
+     * @param nodeId  identifier of the node, -1 for the state before the initial propagation
+     * @param state   the calls made to print the state, only valid during the call
+     */
+    void onVisualizerState(long stateId, long nodeId, StateRecord state);
+
+    /**
+     * The search is over, no more event will be delivered
+     */
+    void onClose();
+
+    /**
+     * A run of a {@link TraceSession} starts, the next events belong to it.
+     * Node, state and visualizer identifiers are only unique within a run.
+     *
+     * @param run   identifier of the run, from 1
+     * @param model name of the model solved
+     */
+    default void onRunStart(long run, String model) {
+    }
+
+    /**
+     * The run <i>run</i> of a {@link TraceSession} ends
+     */
+    default void onRunEnd(long run) {
+    }
+
+    /**
+     * Ignore every event
+     */
+    TraceSink NULL = new TraceSink() {
+        @Override
+        public void onRoot() {
+        }
+
+        @Override
+        public void onNode(long id, long parent, String varName, int size, Object value, Status status) {
+        }
+
+        @Override
+        public void onSolution(long id) {
+        }
+
+        @Override
+        public void onVisualizer(int id, String declaration) {
+        }
+
+        @Override
+        public void onVisualizerState(long stateId, long nodeId, StateRecord state) {
+        }
+
+        @Override
+        public void onClose() {
+        }
+    };
+
+    /**
+     * Deliver each event to every sink of <i>sinks</i>, in order
+     */
+    static TraceSink fanOut(TraceSink... sinks) {
+        TraceSink[] copy = sinks.clone();
+        return new TraceSink() {
+            @Override
+            public void onRoot() {
+                for (TraceSink sink : copy) {
+                    sink.onRoot();
+                }
+            }
+
+            @Override
+            public void onNode(long id, long parent, String varName, int size, Object value, Status status) {
+                for (TraceSink sink : copy) {
+                    sink.onNode(id, parent, varName, size, value, status);
+                }
+            }
+
+            @Override
+            public void onNode(long id, long parent, String varName, int size, Object value, Status status,
+                               int depth, int jump) {
+                for (TraceSink sink : copy) {
+                    sink.onNode(id, parent, varName, size, value, status, depth, jump);
+                }
+            }
+
+            @Override
+            public void onRestart(long id, long restart, long nodes, long fails, String neighbourhood) {
+                for (TraceSink sink : copy) {
+                    sink.onRestart(id, restart, nodes, fails, neighbourhood);
+                }
+            }
+
+            @Override
+            public void onSolution(long id) {
+                for (TraceSink sink : copy) {
+                    sink.onSolution(id);
+                }
+            }
+
+            @Override
+            public void onVisualizer(int id, String declaration) {
+                for (TraceSink sink : copy) {
+                    sink.onVisualizer(id, declaration);
+                }
+            }
+
+            @Override
+            public void onVisualizerState(long stateId, long nodeId, StateRecord state) {
+                for (TraceSink sink : copy) {
+                    sink.onVisualizerState(stateId, nodeId, state);
+                }
+            }
+
+            @Override
+            public void onClose() {
+                for (TraceSink sink : copy) {
+                    sink.onClose();
+                }
+            }
+
+            @Override
+            public void onRunStart(long run, String model) {
+                for (TraceSink sink : copy) {
+                    sink.onRunStart(run, model);
+                }
+            }
+
+            @Override
+            public void onRunEnd(long run) {
+                for (TraceSink sink : copy) {
+                    sink.onRunEnd(run);
+                }
+            }
+        };
+    }
+}
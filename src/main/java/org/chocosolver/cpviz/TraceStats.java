@@ -0,0 +1,246 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The cost of tracing a search, measured by a {@link Visualization} once
+ * {@link Visualization#enableStats()} has been called.
+ * <br/>
+ * Times are in nanoseconds, bytes are those written in the tree and visualization files:
+ * <ul>
+ * <li>per phase, the time spent in the search monitor callbacks of the visualization and their number of calls,</li>
+ * <li>per visualizer, the time spent printing its states and the bytes they take
+ * (no byte is counted in asynchronous mode, where states are only recorded on the search thread),</li>
+ * <li>per tag, the number of tags written and the bytes they take,</li>
+ * <li>the time spent handing the bytes over to the files.</li>
+ * </ul>
+ * The counters are updated without any synchronization: read while the search runs, they are approximate.
+ * {@link #snapshot()} returns a copy which does not move anymore.
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public final class TraceStats implements TraceStatsMXBean {
+
+    public enum Phase {
+        /**
+         * Root node and its states
+         */
+        INITIALIZE,
+        /**
+         * Each node and its states
+         */
+        DOWN_BRANCH,
+        /**
+         * Solutions
+         */
+        SOLUTION,
+        /**
+         * End of the search and closing of the files
+         */
+        CLOSE
+    }
+
+    public enum Tag {
+        ROOT, TRY, FAIL, SUCC, STATE, RESTART
+    }
+
+    private final long[] phaseNanos = new long[Phase.values().length];
+
+    private final long[] phaseCalls = new long[Phase.values().length];
+
+    private final long[] tagCounts = new long[Tag.values().length];
+
+    private final long[] tagBytes = new long[Tag.values().length];
+
+    /**
+     * Indexed by visualizer identifier, which starts at 1
+     */
+    private long[] visualizerNanos = new long[8], visualizerBytes = new long[8];
+
+    private String[] visualizerTypes = new String[8];
+
+    private long ioNanos;
+
+    /**
+     * Emitters whose I/O time is reported, <tt>null</tt> in a snapshot
+     */
+    private final Visualization visualization;
+
+    TraceStats(Visualization visualization) {
+        this.visualization = visualization;
+    }
+
+    void phase(Phase phase, long start) {
+        phaseNanos[phase.ordinal()] += System.nanoTime() - start;
+        phaseCalls[phase.ordinal()]++;
+    }
+
+    void tag(Tag tag, long bytes) {
+        tagCounts[tag.ordinal()]++;
+        tagBytes[tag.ordinal()] += bytes;
+    }
+
+    void declare(int id, String type) {
+        if (id >= visualizerTypes.length) {
+            int n = Math.max(id + 1, visualizerTypes.length * 2);
+            visualizerNanos = Arrays.copyOf(visualizerNanos, n);
+            visualizerBytes = Arrays.copyOf(visualizerBytes, n);
+            visualizerTypes = Arrays.copyOf(visualizerTypes, n);
+        }
+        visualizerTypes[id] = type;
+    }
+
+    void visualizer(int id, long start, long bytes) {
+        visualizerNanos[id] += System.nanoTime() - start;
+        visualizerBytes[id] += bytes;
+    }
+
+    /**
+     * @return a copy of <code>this</code>, which does not move anymore
+     */
+    public TraceStats snapshot() {
+        TraceStats copy = new TraceStats(null);
+        System.arraycopy(phaseNanos, 0, copy.phaseNanos, 0, phaseNanos.length);
+        System.arraycopy(phaseCalls, 0, copy.phaseCalls, 0, phaseCalls.length);
+        System.arraycopy(tagCounts, 0, copy.tagCounts, 0, tagCounts.length);
+        System.arraycopy(tagBytes, 0, copy.tagBytes, 0, tagBytes.length);
+        copy.visualizerNanos = visualizerNanos.clone();
+        copy.visualizerBytes = visualizerBytes.clone();
+        copy.visualizerTypes = visualizerTypes.clone();
+        copy.ioNanos = getIoNanos();
+        return copy;
+    }
+
+    public long getNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    public long getCalls(Phase phase) {
+        return phaseCalls[phase.ordinal()];
+    }
+
+    public long getCount(Tag tag) {
+        return tagCounts[tag.ordinal()];
+    }
+
+    public long getBytes(Tag tag) {
+        return tagBytes[tag.ordinal()];
+    }
+
+    /**
+     * @return number of visualizers declared
+     */
+    public int getNbVisualizers() {
+        int n = 0;
+        for (int id = 1; id < visualizerTypes.length; id++) {
+            if (visualizerTypes[id] != null) {
+                n = id;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * @param id identifier of a visualizer, from 1
+     */
+    public long getVisualizerNanos(int id) {
+        return id < visualizerNanos.length ? visualizerNanos[id] : 0;
+    }
+
+    /**
+     * @param id identifier of a visualizer, from 1
+     */
+    public long getVisualizerBytes(int id) {
+        return id < visualizerBytes.length ? visualizerBytes[id] : 0;
+    }
+
+    @Override
+    public long getIoNanos() {
+        return visualization == null ? ioNanos : visualization.ioNanos();
+    }
+
+    @Override
+    public Map<String, Long> getPhaseNanos() {
+        Map<String, Long> map = new LinkedHashMap<>();
+        for (Phase phase : Phase.values()) {
+            map.put(phase.name(), getNanos(phase));
+        }
+        return map;
+    }
+
+    @Override
+    public Map<String, Long> getPhaseCalls() {
+        Map<String, Long> map = new LinkedHashMap<>();
+        for (Phase phase : Phase.values()) {
+            map.put(phase.name(), getCalls(phase));
+        }
+        return map;
+    }
+
+    @Override
+    public Map<String, Long> getTagCounts() {
+        Map<String, Long> map = new LinkedHashMap<>();
+        for (Tag tag : Tag.values()) {
+            map.put(tag.name(), getCount(tag));
+        }
+        return map;
+    }
+
+    @Override
+    public Map<String, Long> getTagBytes() {
+        Map<String, Long> map = new LinkedHashMap<>();
+        for (Tag tag : Tag.values()) {
+            map.put(tag.name(), getBytes(tag));
+        }
+        return map;
+    }
+
+    @Override
+    public Map<String, Long> getVisualizerNanos() {
+        Map<String, Long> map = new LinkedHashMap<>();
+        for (int id = 1; id <= getNbVisualizers(); id++) {
+            map.put(key(id), getVisualizerNanos(id));
+        }
+        return map;
+    }
+
+    @Override
+    public Map<String, Long> getVisualizerBytes() {
+        Map<String, Long> map = new LinkedHashMap<>();
+        for (int id = 1; id <= getNbVisualizers(); id++) {
+            map.put(key(id), getVisualizerBytes(id));
+        }
+        return map;
+    }
+
+    private String key(int id) {
+        return id + " " + visualizerTypes[id];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder st = new StringBuilder();
+        for (Phase phase : Phase.values()) {
+            st.append(String.format("%-12s %10d calls %12.3f ms%n", phase, getCalls(phase), getNanos(phase) / 1e6));
+        }
+        for (Tag tag : Tag.values()) {
+            st.append(String.format("%-12s %10d tags  %12d bytes%n", tag, getCount(tag), getBytes(tag)));
+        }
+        for (int id = 1; id <= getNbVisualizers(); id++) {
+            st.append(String.format("%-12s %10.3f ms %12d bytes%n", key(id), getVisualizerNanos(id) / 1e6, getVisualizerBytes(id)));
+        }
+        st.append(String.format("%-12s %12.3f ms%n", "I/O", getIoNanos() / 1e6));
+        return st.toString();
+    }
+}
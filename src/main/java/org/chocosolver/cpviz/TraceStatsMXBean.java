@@ -0,0 +1,36 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz;
+
+import java.util.Map;
+
+/**
+ * The {@link TraceStats} of a {@link Visualization}, as exposed through JMX
+ * (see {@link Visualization#registerStats()}).
+ * Maps are keyed by phase, by tag or by visualizer identifier followed by its type.
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public interface TraceStatsMXBean {
+
+    Map<String, Long> getPhaseNanos();
+
+    Map<String, Long> getPhaseCalls();
+
+    Map<String, Long> getTagCounts();
+
+    Map<String, Long> getTagBytes();
+
+    Map<String, Long> getVisualizerNanos();
+
+    Map<String, Long> getVisualizerBytes();
+
+    long getIoNanos();
+}
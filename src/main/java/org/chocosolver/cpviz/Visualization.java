@@ -8,19 +8,30 @@
  */
 package org.chocosolver.cpviz;
 
+import org.chocosolver.cpviz.io.*;
+import org.chocosolver.cpviz.visualizers.BinaryWriter;
+import org.chocosolver.cpviz.visualizers.DeltaWriter;
+import org.chocosolver.cpviz.visualizers.RecordingWriter;
+import org.chocosolver.cpviz.visualizers.StateRecord;
 import org.chocosolver.cpviz.visualizers.Writer;
-import org.chocosolver.memory.IStateLong;
 import org.chocosolver.solver.Solver;
 import org.chocosolver.solver.exception.ContradictionException;
 import org.chocosolver.solver.search.loop.monitors.*;
 import org.chocosolver.solver.search.strategy.decision.Decision;
+import org.chocosolver.solver.search.strategy.decision.DecisionPath;
 import org.chocosolver.solver.variables.IntVar;
 import org.chocosolver.solver.variables.SetVar;
+import org.chocosolver.util.criteria.Criterion;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 
@@ -39,7 +50,9 @@ import static org.chocosolver.cpviz.Show.VIZ;
  * <br/>
  * These files are created at the root directory of the project (see logback.xml for more details).
  * <br/>
- * These files can be treaten with <a href="https://sourceforge.net/projects/cpviz/">cpviz<a/>
+ * These files can be treaten with <a href="https://sourceforge.net/projects/cpviz/">cpviz<a/>.
+ * With {@link TraceFormat#BINARY}, the tree and visualization files are written in a compact binary format instead,
+ * and turned into XML afterwards with {@link BinaryTraceConverter}.
  * <p/>
  * <br/>
  * <p/>
@@ -51,6 +64,22 @@ import static org.chocosolver.cpviz.Show.VIZ;
  * - {@code addVisualizer(Visualizervisualizer)}: add a visualizer to the container<br/>
  * - {@code close()} : close the log files
  * <p/>
+ * Optionally, {@code enableAsync(...)} moves the formatting and the writing of the log files to a dedicated thread
+ * and {@code enableDeltaStates()} only writes the part of a state which differs from the state of the parent node.
+ * {@code enableRangeDomains()} writes enumerated domains as lists of intervals rather than lists of values.
+ * {@code setRecordingPolicy(...)} bounds the number of nodes recorded,
+ * {@code enableDepths()} writes the depth of each node and the levels the search climbed up before it
+ * and {@code enableSegments(...)} makes the files recoverable if the resolution is killed.
+ * {@code addSink(...)} also delivers the events of the search to a {@link TraceSink}, such as a
+ * {@link org.chocosolver.cpviz.sinks.LiveStream} which publishes them, as they go, to the clients of a local endpoint.
+ * A <code>Visualization</code> built with a sink only writes no file at all.
+ * <p/>
+ * Nothing is plugged into the solver, allocated in its environment or opened on disk until the tree, the viz or
+ * a sink is created: a disabled <code>Visualization</code> costs nothing to the search.
+ * {@code activateWhen(...)} further delays the tracing until a trigger fires, in the middle of the search.
+ * {@code enableFlightRecorder(...)} only keeps the last events in memory, and writes them when a trigger fires.
+ * {@code enableStats()} measures what the tracing costs, per phase, per visualizer and per tag (see {@link TraceStats}).
+ * <p/>
  * <br/>
  *
  * @author Charles Prud'homme
@@ -59,30 +88,151 @@ import static org.chocosolver.cpviz.Show.VIZ;
 
 // BEWARE: indices must start at 1
 public class Visualization implements IMonitorClose, IMonitorInitialize,
-        IMonitorDownBranch, IMonitorContradiction, IMonitorSolution {
+        IMonitorDownBranch, IMonitorUpBranch, IMonitorContradiction, IMonitorSolution, IMonitorRestart {
 
     private String pbid;
 
     private String dir;
 
+    private final TraceFormat format;
+
+    private Codec codec;
+
+    private long segmentSize;
+
+    private SegmentedChannel treeSegments, vizSegments;
+
     protected PrintWriter configuration;
 
-    protected PrintWriter tree;
+    /**
+     * Files written, <tt>null</tt> until created
+     */
+    File treeFile, vizFile;
+
+    /**
+     * Tree and visualization files, <tt>null</tt> until created.
+     * These fields were <code>PrintWriter</code>s before the files were written through an emitter: a subclass
+     * writing into them must now call the <code>write</code> methods of {@link ByteEmitter} instead of
+     * <code>printf</code>, and stay within the same UTF-8 output.
+     */
+    protected ByteEmitter tree;
 
-    protected PrintWriter visualization;
+    protected ByteEmitter visualization;
+
+    private BinaryTrace binaryTree, binaryVisualization;
 
     protected Writer writer;
 
+    /**
+     * Where events are recorded, in asynchronous mode or with the flight recorder, <tt>null</tt> otherwise
+     */
+    private TraceBuffer buffer;
+
+    private RecordingWriter recorder;
+
+    private FlightRecorder flight;
+
+    private FlightTrigger flightTrigger;
+
+    private boolean delta;
+
+    /**
+     * Write enumerated domains as lists of maximal intervals
+     */
+    private boolean ranges;
+
+    /**
+     * Write the static arguments of the visualizers in their declaration
+     */
+    private boolean hoisting;
+
+    private TraceSink sink;
+
+    /**
+     * Records the states delivered to the sink in synchronous mode, into <i>sinkState</i>
+     */
+    private RecordingWriter sinkRecorder;
+
+    private StateRecord sinkState;
+
     public int trace_tools = 0;
 
     List<Visualizer> visualizers;
 
     private long node_id = -1;
 
-    private IStateLong parent_id;
+    /**
+     * Nodes of the current branch, maintained on the down and up branches rather than in the environment of the solver:
+     * <i>ancestors[d]</i> is the node at depth <i>d</i>, the root node (or the node of the last restart) included,
+     * and <i>level</i> the number of nodes of the branch
+     */
+    private long[] ancestors = new long[64];
+
+    private int level;
+
+    /**
+     * Depth of a node minus the position of its decision in the decision path: 0, or 1 once restarted,
+     * the nodes of a restart hanging below its node
+     */
+    private int offset;
+
+    /**
+     * Number of levels climbed since the last node
+     */
+    private int jump;
+
+    /**
+     * Write the depth of the nodes, and the levels climbed before each of them
+     */
+    private boolean depths;
 
     private long state_id = 0;
 
+    private RecordingPolicy policy;
+
+    /**
+     * Depth of the root of the dropped subtree the search is in, {@link Integer#MAX_VALUE} if none
+     */
+    private int dropped_depth = Integer.MAX_VALUE;
+
+    /**
+     * Summary of the dropped subtrees of <i>summary_parent</i>, not written yet, <i>summary_id</i> is 0 if none
+     */
+    private long summary_id, summary_parent, summary_nodes, summary_fails, summary_sols;
+
+    private RestartPolicy restartPolicy;
+
+    /**
+     * Number of restarts, node rooting the nodes opened since the last restart, 0 if none,
+     * and numbers of nodes and failures before the last restart
+     */
+    private long restarts, restart_id, restart_nodes, restart_fails;
+
+    /**
+     * <i>restart_pending</i> until the node of the last restart is written,
+     * <i>collapsed</i> if the nodes opened since the last restart are summarized
+     */
+    private boolean restart_pending, collapsed;
+
+    /**
+     * Fires the tracing, <tt>null</tt> to trace from the beginning of the search
+     */
+    private Criterion trigger;
+
+    /**
+     * <tt>true</tt> once <code>this</code>, or its trigger, is plugged into the solver
+     */
+    private boolean plugged;
+
+    /**
+     * Plugged instead of <code>this</code> until the trigger fires, <tt>null</tt> if none
+     */
+    private Trigger triggerMonitor;
+
+    private TraceStats stats;
+
+    private SolutionTimeline timeline;
+
     //Decision currentDecision;
 
     final Solver solver;
@@ -107,17 +257,191 @@ public class Visualization implements IMonitorClose, IMonitorInitialize,
      * @param dir    output directory
      */
     public Visualization(String pbname, Solver solver, String dir) {
+        this(pbname, solver, dir, TraceFormat.XML);
+    }
+
+    /**
+     * Build a new instance of <code>Visualization</code>.
+     *
+     * @param pbname name of the treated problem (suffix of log files)
+     * @param solver associated solver
+     * @param dir    output directory
+     * @param format format of the tree and visualization files
+     */
+    public Visualization(String pbname, Solver solver, String dir, TraceFormat format) {
         this.pbid = pbname;
         this.dir = dir;
+        this.format = format;
         this.solver = solver;
-        this.parent_id = this.solver.getEnvironment().makeLong();
+    }
+
+    /**
+     * Build a new instance of <code>Visualization</code> which writes no file but delivers the events to <i>sink</i>.
+     * Neither {@code createTree()} nor {@code createViz()} can be called, visualizers are added directly.
+     *
+     * @param solver associated solver
+     * @param sink   receiver of the events
+     */
+    public Visualization(Solver solver, TraceSink sink) {
+        this.pbid = "sink";
+        this.format = TraceFormat.XML;
+        this.solver = solver;
+        this.visualizers = new ArrayList<>(8);
+        addSink(sink);
+    }
+
+    /**
+     * Open the configuration file, if not done yet.
+     * The configuration is flushed after each line, so that it survives a killed resolution,
+     * up to its closing tag (see {@link SegmentRecovery#closeConfiguration(File)}).
+     *
+     * @return the configuration file, <tt>null</tt> if there is none
+     */
+    private PrintWriter configuration() {
+        if (configuration == null && dir != null) {
+            try {
+                configuration = new PrintWriter(new File(dir, "configuration-" + pbid + ".xml"));
+                configuration.printf(CPVizConstant.C_CONF_TAG_IN, dir, pbid);
+                configuration.flush();
+            } catch (FileNotFoundException e) {
+                e.printStackTrace();
+            }
+        }
+        return configuration;
+    }
+
+    /**
+     * Plug <code>this</code> into the solver, or its trigger if any, on the first call only
+     */
+    private void activate() {
+        if (!plugged) {
+            plugged = true;
+            if (trigger == null) {
+                solver.plugMonitor(this);
+            } else {
+                solver.plugMonitor(triggerMonitor = new Trigger());
+            }
+        }
+    }
+
+    /**
+     * Start tracing when <i>trigger</i> is met, checked after each branching decision, such as
+     * <code>() -&gt; solver.getNodeCount() &gt;= 1000</code> or a {@link org.chocosolver.solver.search.limits.TimeCounter}.
+     * <br/>
+     * Until then, nothing is written and only the trigger is plugged into the solver.
+     * When it fires, the root node and its states are written as at the beginning of the search, with the current domains,
+     * and the nodes opened from then on are written, those above the current node being attached to the root node.
+     * If it never fires, the files are closed empty.
+     * Must be called before the resolution starts.
+     *
+     * @param trigger when to start tracing
+     */
+    public void activateWhen(Criterion trigger) {
+        if (node_id >= 0 || this.trigger != null) {
+            throw new UnsupportedOperationException("The trigger must be set once, before the resolution starts");
+        }
+        this.trigger = trigger;
+        if (plugged) {
+            solver.unplugMonitor(this);
+            solver.plugMonitor(triggerMonitor = new Trigger());
+        }
+    }
+
+    /**
+     * Unplug <code>this</code>, its trigger and its timeline if any, from the solver, and stop recording:
+     * the events still buffered are handed over, nothing is recorded afterwards.
+     * The files, if any, are left as they are.
+     */
+    void detach() {
+        if (plugged) {
+            solver.unplugMonitor(this);
+            if (triggerMonitor != null) {
+                solver.unplugMonitor(triggerMonitor);
+            }
+        }
+        if (timeline != null) {
+            solver.unplugMonitor(timeline);
+        }
+        if (buffer != null) {
+            buffer.close();
+        }
+    }
+
+    /**
+     * Measure the cost of the tracing, from now on (see {@link TraceStats}).
+     *
+     * @return the counters, updated as the search goes
+     */
+    public TraceStats enableStats() {
+        if (stats == null) {
+            stats = new TraceStats(this);
+            if (visualizers != null) {
+                for (int i = 0; i < visualizers.size(); i++) {
+                    stats.declare(visualizers.get(i).getId(), visualizers.get(i).getType());
+                }
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * @return a snapshot of the cost of the tracing, <tt>null</tt> if {@code enableStats()} has not been called
+     */
+    public TraceStats getStats() {
+        return stats == null ? null : stats.snapshot();
+    }
+
+    /**
+     * Enable the stats, if not done yet, and register them into the platform MBean server,
+     * under <code>org.chocosolver.cpviz:type=TraceStats,name=</code><i>pbname</i>.
+     * They stay registered until unregistered by the caller.
+     *
+     * @return the name of the MBean, <tt>null</tt> if it cannot be registered
+     */
+    public ObjectName registerStats() {
         try {
-            configuration = new PrintWriter(new File(dir, "configuration-" + pbid + ".xml"));
-        } catch (FileNotFoundException e) {
+            ObjectName name = new ObjectName("org.chocosolver.cpviz:type=TraceStats,name=" + ObjectName.quote(pbid));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(enableStats(), name);
+            return name;
+        } catch (JMException e) {
             e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Record the progress of the resolution at each solution (see {@link SolutionTimeline}),
+     * into <code>timeline-</code><i>pbname</i><code>.csv</code>.
+     * The timeline is plugged on its own: it does not require the tree nor the visualization to be created.
+     *
+     * @return the timeline, updated as the search goes
+     */
+    public SolutionTimeline createTimeline() {
+        if (timeline == null) {
+            timeline = new SolutionTimeline(solver, dir == null ? null : new File(dir, "timeline-" + pbid + ".csv"));
+            solver.plugMonitor(timeline);
         }
-        configuration.printf(CPVizConstant.C_CONF_TAG_IN, dir, pbid);
-        solver.plugMonitor(this);
+        return timeline;
+    }
+
+    /**
+     * @return time spent writing into the tree and the visualization files
+     */
+    long ioNanos() {
+        return (tree != null ? tree.ioNanos() : 0) + (visualization != null ? visualization.ioNanos() : 0);
+    }
+
+    /**
+     * Bytes written into the tree file so far, flushed or still buffered.
+     * In asynchronous mode the emitter is filled by the writer thread: the count is read without synchronization
+     * and lags behind the search by the events still in the ring buffer.
+     */
+    private long treeBytes() {
+        return tree == null ? 0 : tree.flushed() + tree.buffered();
+    }
+
+    private long vizBytes() {
+        return visualization == null ? 0 : visualization.flushed() + visualization.buffered();
     }
 
     /**
@@ -131,19 +455,32 @@ public class Visualization implements IMonitorClose, IMonitorInitialize,
      * @param height  height of SVG canvas in screen pixels
      */
     public void createTree(String type, String display, String repeat, int width, int height) {
-        if (configuration != null) {
+        if (configuration() != null) {
             if ((trace_tools & Show.TREE.mask) == 0) {
                 trace_tools += Show.TREE.mask;
                 try {
-                    tree = new PrintWriter(new File(dir, "tree-" + pbid + ".xml"));
-                } catch (FileNotFoundException e) {
+                    File file = new File(dir, "tree-" + pbid + extension());
+                    treeFile = file;
+                    if (segmentSize > 0) {
+                        treeSegments = new SegmentedChannel(file, segmentSize,
+                                format == TraceFormat.BINARY ? new byte[]{BinaryTrace.END} : XmlTags.TREE_OUT);
+                        tree = new ByteEmitter(treeSegments, 1 << 12);
+                    } else {
+                        tree = ByteEmitter.open(file, codec);
+                    }
+                } catch (IOException e) {
                     e.printStackTrace();
                 }
                 if (tree != null) {
+                    activate();
                     configuration.printf(C_TOOL_TAG,
                             TREE, type, display, repeat, Integer.toString(width), Integer.toString(height), "tree-" + pbid);
-                    tree.printf(HEADER);
-                    tree.printf(T_TREE_TAG_IN);
+                    configuration.flush();
+                    if (format == TraceFormat.BINARY) {
+                        binaryTree = new BinaryTrace(tree, BinaryTrace.TREE);
+                    } else {
+                        tree.write(XmlTags.HEADER).write(XmlTags.TREE_IN);
+                    }
                 } else {
                     throw new UnsupportedOperationException("Unable to create tree");
                 }
@@ -179,20 +516,35 @@ public class Visualization implements IMonitorClose, IMonitorInitialize,
      */
     public void createViz(String type, String display, String repeat, int width, int height) {
         visualizers = new ArrayList<>(8);
-        if (configuration != null) {
+        if (configuration() != null) {
             if ((trace_tools & Show.VIZ.mask) == 0) {
                 trace_tools += Show.VIZ.mask;
                 try {
-                    visualization = new PrintWriter(new File(dir, "visualization-" + pbid + ".xml"));
-                } catch (FileNotFoundException e) {
+                    File file = new File(dir, "visualization-" + pbid + extension());
+                    vizFile = file;
+                    if (segmentSize > 0) {
+                        vizSegments = new SegmentedChannel(file, segmentSize,
+                                format == TraceFormat.BINARY ? new byte[]{BinaryTrace.END} : XmlTags.VISUALIZATION_OUT);
+                        visualization = new ByteEmitter(vizSegments, 1 << 12);
+                    } else {
+                        visualization = ByteEmitter.open(file, codec);
+                    }
+                } catch (IOException e) {
                     e.printStackTrace();
                 }
                 if (visualization != null) {
-                    writer = new Writer(visualization);
+                    activate();
                     configuration.printf(C_TOOL_TAG,
                             VIZ, type, display, repeat, Integer.toString(width), Integer.toString(height), "visualization-" + pbid);
-                    visualization.printf(HEADER);
-                    visualization.printf(V_VISUALIZATION_TAG_IN);
+                    configuration.flush();
+                    if (format == TraceFormat.BINARY) {
+                        binaryVisualization = new BinaryTrace(visualization, BinaryTrace.VISUALIZATION);
+                        writer = new BinaryWriter(binaryVisualization);
+                    } else {
+                        visualization.write(XmlTags.HEADER).write(XmlTags.VISUALIZATION_IN);
+                        writer = delta ? new DeltaWriter(visualization) : new Writer(visualization);
+                        writer.setRangeDomains(ranges);
+                    }
                 } else {
                     throw new UnsupportedOperationException("Cannot create viz");
                 }
@@ -215,6 +567,223 @@ public class Visualization implements IMonitorClose, IMonitorInitialize,
         createViz(CPVizConstant.LAYOUT, CPVizConstant.COMPACT, CPVizConstant.ALL, 500, 500);
     }
 
+    /**
+     * Compress the tree and the visualization files with <i>codec</i>, such as {@link Codec#GZIP}.<br/>
+     * The files are compressed by blocks on a pool of worker threads, their names end with the codec extension.
+     * Must be called before {@code createTree()} and {@code createViz()}.
+     *
+     * @param codec compression format, <tt>null</tt> not to compress
+     */
+    public void setCodec(Codec codec) {
+        if (tree != null || visualization != null) {
+            throw new UnsupportedOperationException("The codec must be set before creating the tree or the viz");
+        }
+        if (codec != null && segmentSize > 0) {
+            throw new UnsupportedOperationException("Segments cannot be compressed");
+        }
+        this.codec = codec;
+    }
+
+    /**
+     * Write the tree and the visualization files into memory-mapped segments of <i>segmentSize</i> bytes,
+     * each node being committed once written (see {@link SegmentedChannel}).<br/>
+     * If the resolution is killed before {@code beforeClose()}, well-formed files can be rebuilt
+     * from the segments with {@link SegmentRecovery}, and the configuration file closed with
+     * {@link SegmentRecovery#closeConfiguration(File)}. Otherwise, the segments are merged into the files on closing.
+     * Must be called before {@code createTree()} and {@code createViz()}, cannot be combined with a codec.
+     *
+     * @param segmentSize size of a segment file, in bytes
+     */
+    public void enableSegments(long segmentSize) {
+        if (tree != null || visualization != null) {
+            throw new UnsupportedOperationException("Segments must be enabled before creating the tree or the viz");
+        }
+        if (codec != null) {
+            throw new UnsupportedOperationException("Segments cannot be compressed");
+        }
+        this.segmentSize = segmentSize;
+    }
+
+    private String extension() {
+        return codec == null ? format.extension : format.extension + codec.extension();
+    }
+
+    /**
+     * Format and write the tree and the visualization files on a dedicated thread.<br/>
+     * The search thread only records compact events into a ring buffer of <i>capacity</i> slots.
+     * Must be called before the resolution starts.
+     *
+     * @param capacity     number of events the ring buffer can hold
+     * @param backpressure what to do when the writer thread cannot keep up
+     * @param sampling     with {@link Backpressure#SAMPLE}, keep the states of one node out of <i>sampling</i>
+     */
+    public void enableAsync(int capacity, Backpressure backpressure, int sampling) {
+        if (flight != null) {
+            throw new UnsupportedOperationException("The flight recorder cannot be combined with the asynchronous mode");
+        }
+        if (buffer == null) {
+            recorder = new RecordingWriter();
+            buffer = new AsyncTraceWriter("cpviz-" + pbid, capacity, backpressure, sampling, this::write);
+            setWriters(recorder);
+        }
+    }
+
+    /**
+     * Keep the last <i>capacity</i> events in memory, nodes and their states, and only write them
+     * when <i>trigger</i> fires, such as {@link FlightTrigger#onSolution()}: the files only contain the windows
+     * of the search which led to a trigger.<br/>
+     * The root node and its states are always written. A node whose parent is not written is attached to the root node.
+     * Must be called before the resolution starts, cannot be combined with the asynchronous mode
+     * or a recording policy.
+     *
+     * @param capacity number of events kept, rounded up to the next power of 2
+     * @param trigger  when to write the events kept
+     */
+    public void enableFlightRecorder(int capacity, FlightTrigger trigger) {
+        if (buffer != null || policy != null) {
+            throw new UnsupportedOperationException("The flight recorder cannot be combined with the asynchronous mode or a recording policy");
+        }
+        recorder = new RecordingWriter();
+        flight = new FlightRecorder(capacity, this::write);
+        flightTrigger = trigger;
+        buffer = flight;
+        setWriters(recorder);
+    }
+
+    /**
+     * Format and write the tree and the visualization files on a dedicated thread.<br/>
+     * - capacity : 4096 <br/>
+     * - sampling : 16 <br/>
+     *
+     * @param backpressure what to do when the writer thread cannot keep up
+     */
+    public void enableAsync(Backpressure backpressure) {
+        enableAsync(4096, backpressure, 16);
+    }
+
+    /**
+     * @return number of visualizer states not recorded because of the backpressure policy, 0 in synchronous mode
+     */
+    public long getDroppedStates() {
+        return buffer == null ? 0 : buffer.getDroppedStates();
+    }
+
+    /**
+     * Write the state of a node as a delta of the state of its parent node: elements that have not changed
+     * are skipped. Full states can be rebuilt with {@link org.chocosolver.cpviz.io.DeltaDecoder}.
+     * Must be called before the resolution starts, only available with {@link TraceFormat#XML}.
+     */
+    public void enableDeltaStates() {
+        if (format != TraceFormat.XML) {
+            throw new UnsupportedOperationException("Delta states are only available in XML");
+        }
+        if (!delta) {
+            delta = true;
+            if (writer != null) {
+                writer = new DeltaWriter(visualization);
+                writer.setRangeDomains(ranges);
+                setWriters(stateWriter());
+            }
+        }
+    }
+
+    /**
+     * Write enumerated domains as lists of maximal intervals, such as <code>1..998 1000</code>,
+     * instead of lists of values: the size of a state no longer grows with the size of the domains.
+     * Values are rebuilt with {@link org.chocosolver.cpviz.io.RangeDecoder}, for the tools which only read lists of values.
+     * Must be called before the resolution starts, only available with {@link TraceFormat#XML}
+     * (see {@link org.chocosolver.cpviz.io.BinaryTraceConverter#convert(File, File, boolean)} otherwise).
+     */
+    public void enableRangeDomains() {
+        if (format != TraceFormat.XML) {
+            throw new UnsupportedOperationException("Range domains are only available in XML");
+        }
+        ranges = true;
+        if (writer != null) {
+            writer.setRangeDomains(true);
+        }
+    }
+
+    /**
+     * Write the static arguments of the visualizers, such as arrays of constants, once in their declaration
+     * instead of in every state, where they are only referenced by a <code>static</code> tag.
+     * Must be called before the visualizers are added.
+     */
+    public void enableStaticArguments() {
+        if (visualizers != null && !visualizers.isEmpty()) {
+            throw new UnsupportedOperationException("Static arguments must be enabled before adding visualizers");
+        }
+        hoisting = true;
+    }
+
+    /**
+     * Deliver the events of the search to <i>sink</i>, in addition to the files and to the sinks already added.<br/>
+     * Tree events are delivered whether {@code createTree()} has been called or not, states as soon as
+     * a visualizer is added. The visualizers already added are declared to <i>sink</i> at once.
+     * Must be called before the resolution starts.
+     *
+     * @param sink receiver of the events
+     */
+    public void addSink(TraceSink sink) {
+        activate();
+        this.sink = this.sink == null ? sink : TraceSink.fanOut(this.sink, sink);
+        if (sinkRecorder == null) {
+            sinkRecorder = new RecordingWriter();
+            sinkState = new StateRecord();
+            sinkRecorder.setRecord(sinkState);
+            setWriters(stateWriter());
+        }
+        if (visualizers != null) {
+            for (int i = 0; i < visualizers.size(); i++) {
+                Visualizer visualizer = visualizers.get(i);
+                sink.onVisualizer(visualizer.getId(), declaration(visualizer));
+            }
+        }
+    }
+
+    /**
+     * Record only the nodes accepted by <i>policy</i>.<br/>
+     * A rejected node is dropped together with its subtree. The consecutive dropped subtrees of a node collapse
+     * into a single summary node, named {@link CPVizConstant#SUMMARY}, whose size is the number of dropped nodes,
+     * whose value is the number of dropped failures and which is marked as a success if a solution was dropped.
+     * Summary nodes have no visualizer state.
+     * Must be called before the resolution starts.
+     *
+     * @param policy which nodes to record, <tt>null</tt> to record every node
+     */
+    public void setRecordingPolicy(RecordingPolicy policy) {
+        if (flight != null && policy != null) {
+            throw new UnsupportedOperationException("A recording policy cannot be combined with the flight recorder");
+        }
+        this.policy = policy;
+    }
+
+    /**
+     * Write the depth of each try and fail node, the children of the root node being at depth 1, and the number of
+     * levels the search climbed up since the previous node, 0 when going down, in extra attributes
+     * <code>depth</code> and <code>jump</code>.
+     * Both are known from the branching events, at no cost for the solver: they are not stored in its environment.
+     * Must be called before the resolution starts.
+     */
+    public void enableDepths() {
+        depths = true;
+    }
+
+    /**
+     * Record in detail only the restarts accepted by <i>policy</i>.<br/>
+     * Whatever the policy, the nodes opened after a restart hang from a node named {@link CPVizConstant#RESTART},
+     * child of the root node, whose value is the index of the restart and whose extra attributes
+     * give the numbers of nodes and failures before the restart and the decisions fixed by a large neighbourhood
+     * search, if any. The nodes opened after a rejected restart collapse into a single summary node
+     * (see {@link #setRecordingPolicy(RecordingPolicy)}).
+     * Must be called before the resolution starts.
+     *
+     * @param policy which restarts to record, <tt>null</tt> to record every restart
+     */
+    public void setRestartPolicy(RestartPolicy policy) {
+        this.restartPolicy = policy;
+    }
+
     /**
      * Add a constraint/variable visualizer to the container
      *
@@ -222,31 +791,117 @@ public class Visualization implements IMonitorClose, IMonitorInitialize,
      */
     public void addVisualizer(Visualizer visualizer) {
         visualizers.add(visualizer);
-        visualizer.setWriter(writer);
+        visualizer.setWriter(stateWriter());
         visualizer.setId(visualizers.size());
-        if (visualization != null) {
-            visualization.printf(CPVizConstant.V_VISUALIZER_TAG,
+        visualizer.setHoisted(hoisting);
+        visualizer.buildLocator();
+        if (stats != null) {
+            stats.declare(visualizer.getId(), visualizer.getType());
+        }
+        if (visualization != null || sink != null) {
+            String tag = declaration(visualizer);
+            if (binaryVisualization != null) {
+                binaryVisualization.op(BinaryTrace.TEXT).string(tag);
+            } else if (visualization != null) {
+                visualization.write(tag);
+            }
+            if (sink != null) {
+                sink.onVisualizer(visualizer.getId(), tag);
+            }
+        }
+    }
+
+    private static String declaration(Visualizer visualizer) {
+        String statics = visualizer.printStatics();
+        if (statics != null) {
+            return String.format(CPVizConstant.V_VISUALIZER_TAG_IN,
                     visualizer.getId(), visualizer.getType(), visualizer.getDisplay(),
                     visualizer.getWidth(), visualizer.getHeight(),
-                    visualizer.options());
+                    visualizer.options()) + statics + CPVizConstant.V_VISUALIZER_TAG_OUT;
+        }
+        return String.format(CPVizConstant.V_VISUALIZER_TAG,
+                visualizer.getId(), visualizer.getType(), visualizer.getDisplay(),
+                visualizer.getWidth(), visualizer.getHeight(),
+                visualizer.options());
+    }
+
+    /**
+     * @return the writer the visualizers print their states with
+     */
+    private Writer stateWriter() {
+        return buffer != null ? recorder : sinkRecorder != null ? sinkRecorder : writer;
+    }
+
+    private void setWriters(Writer w) {
+        if (visualizers != null) {
+            for (int i = 0; i < visualizers.size(); i++) {
+                visualizers.get(i).setWriter(w);
+            }
         }
     }
 
+    /**
+     * @return <tt>true</tt> if the tree events are written or delivered
+     */
+    private boolean tracing() {
+        return tree != null || sink != null;
+    }
+
+    /**
+     * @return <tt>true</tt> if the visualizer states are written or delivered
+     */
+    private boolean printing() {
+        return visualizers != null && (visualization != null || sink != null);
+    }
+
 
     @Override
     public void beforeClose() {
+        long start = stats == null ? 0 : System.nanoTime();
+        if (tracing()) {
+            if (restart_pending) {
+                openRestart("");
+            }
+            flushSummary();
+        }
+        RuntimeException failure = null;
+        if (buffer != null) {
+            try {
+                buffer.close();
+            } catch (RuntimeException e) {
+                // close the files first
+                failure = e;
+            }
+        }
+        if (sink != null) {
+            sink.onClose();
+        }
         if (configuration != null) {
             configuration.printf(C_CONF_TAG_OUT);
             configuration.close();
         }
         if (tree != null) {
-            tree.printf(T_TREE_TAG_OUT);
+            if (binaryTree != null) {
+                binaryTree.op(BinaryTrace.END);
+            } else {
+                tree.write(XmlTags.TREE_OUT);
+            }
             tree.close();
         }
         if (visualization != null) {
-            visualization.printf(V_VISUALIZATION_TAG_OUT);
+            if (binaryVisualization != null) {
+                binaryVisualization.op(BinaryTrace.END);
+            } else {
+                visualization.write(XmlTags.VISUALIZATION_OUT);
+            }
             visualization.close();
         }
+        if (stats != null) {
+            stats.phase(TraceStats.Phase.CLOSE, start);
+        }
+        if (failure != null) {
+            throw failure;
+        }
     }
 
     @Override
@@ -260,25 +915,60 @@ public class Visualization implements IMonitorClose, IMonitorInitialize,
 
     @Override
     public void beforeInitialize() {
+        long start = stats == null ? 0 : System.nanoTime();
         node_id = 0;
-        parent_id.set(0);
+        ancestors[0] = 0;
+        level = 1;
+        offset = jump = 0;
+        dropped_depth = Integer.MAX_VALUE;
         state_id = 1;
+        summary_id = 0;
+        restarts = restart_id = 0;
+        restart_pending = collapsed = false;
 
-        if (tree != null) {
-            tree.printf(T_ROOT_TAG);
-        }
-        if (visualization != null) {
-            printVisualizerStat(state_id, -1, false, null);
+        if (buffer != null) {
+            TraceEvent event = buffer.claim(TraceEvent.ROOT);
+            event.id = 0;
+            if (printing()) {
+                recorder.setRecord(event.state);
+                printVisualizerStat(recorder, state_id, -1, -1, false, null);
+            }
+            buffer.publish();
+        } else {
+            if (tracing()) {
+                root();
+            }
+            printVisualizerStat(writer, state_id, -1, -1, false, null);
+            commit(0);
         }
         state_id++;
+        if (stats != null) {
+            stats.phase(TraceStats.Phase.INITIALIZE, start);
+        }
     }
 
     @Override
     public void afterInitialize() {
-        if (visualization != null) {
-            printVisualizerStat(state_id, 0, false, null);
+        long start = stats == null ? 0 : System.nanoTime();
+        if (printing()) {
+            if (buffer != null) {
+                TraceEvent event = buffer.claim(TraceEvent.STATE);
+                event.id = 0;
+                recorder.setRecord(event.state);
+                printVisualizerStat(recorder, state_id, 0, -1, false, null);
+                buffer.publish();
+            } else {
+                printVisualizerStat(writer, state_id, 0, -1, false, null);
+                commit(0);
+            }
+        }
+        if (flight != null) {
+            flight.fire();
         }
         state_id++;
+        if (stats != null) {
+            stats.phase(TraceStats.Phase.INITIALIZE, start);
+        }
     }
 
     @Override
@@ -287,7 +977,13 @@ public class Visualization implements IMonitorClose, IMonitorInitialize,
 
     @Override
     public void afterDownBranch(boolean left) {
-        node();
+        if (stats == null) {
+            node();
+        } else {
+            long start = System.nanoTime();
+            node();
+            stats.phase(TraceStats.Phase.DOWN_BRANCH, start);
+        }
     }
 
     @Override
@@ -295,56 +991,489 @@ public class Visualization implements IMonitorClose, IMonitorInitialize,
         this.hasFailed = true;
     }
 
+    @Override
+    public void afterRestart() {
+        if (tracing()) {
+            if (restart_pending) {
+                openRestart("");
+            }
+            flushSummary();
+            restarts++;
+            restart_id = ++node_id;
+            restart_nodes = solver.getNodeCount();
+            restart_fails = solver.getFailCount();
+            restart_pending = true;
+            collapsed = restartPolicy != null && !restartPolicy.accept(restarts, restart_nodes, restart_fails);
+            // the branch of the restart is only left on the next restart
+            ancestors[1] = restart_id;
+            level = 2;
+            offset = 1;
+            jump = 0;
+            dropped_depth = Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Write the node of the last restart
+     *
+     * @param neighbourhood decisions fixed by a large neighbourhood search, empty if none
+     */
+    private void openRestart(String neighbourhood) {
+        restart_pending = false;
+        if (buffer != null) {
+            TraceEvent event = buffer.claim(TraceEvent.RESTART);
+            event.id = restart_id;
+            event.value = restarts;
+            event.nodes = restart_nodes;
+            event.fails = restart_fails;
+            event.name = neighbourhood;
+            buffer.publish();
+        } else {
+            restart(restart_id, restarts, restart_nodes, restart_fails, neighbourhood);
+            commit(restart_id);
+        }
+    }
+
+    /**
+     * @return the decisions of the current branch, a large neighbourhood search fixing its neighbourhood
+     * with several decisions at once, or an empty string if the branch is made of a single decision
+     */
+    private String neighbourhood() {
+        DecisionPath path = solver.getDecisionPath();
+        if (path.size() <= 2) {
+            return "";
+        }
+        StringBuilder st = new StringBuilder();
+        // the first decision is the root decision
+        for (int i = 1; i < path.size(); i++) {
+            Decision decision = path.getDecision(i);
+            if (i > 1) {
+                st.append(' ');
+            }
+            st.append(decision.getDecisionVariable().getName()).append('=').append(decision.getDecisionValue());
+        }
+        return st.toString();
+    }
+
     void node() {
-        node_id++;
         Decision currentDecision = solver.getDecisionPath().getLastDecision();
-        if (tree != null) {
+        if (currentDecision.getDecisionVariable() == null) {
+            // the root decision, applied again after a restart
+            return;
+        }
+        if (restart_pending && tracing()) {
+            openRestart(neighbourhood());
+        }
+        node_id++;
+        int d = currentDecision.getPosition() + offset;
+        long parent = push(d, node_id);
+        int climbed = jump;
+        jump = 0;
+        if (tracing() && collapsed) {
+            if (summary_id == 0) {
+                summary_id = node_id;
+                summary_parent = restart_id;
+            }
+            summary_nodes++;
+            if (hasFailed) {
+                summary_fails++;
+            }
+            hasFailed = false;
+        } else if (tracing() && policy != null && !record(d, parent)) {
+            hasFailed = false;
+        } else if (tracing()) {
             Object bo = currentDecision.getDecisionVariable();
             String name = bo.toString();
-            String dsize = "?";
+            int dsize = -1;
             if (bo instanceof IntVar) {
                 IntVar ivar = (IntVar) bo;
                 name = ivar.getName();
-                dsize = Integer.toString(ivar.getDomainSize());
+                dsize = ivar.getDomainSize();
             } else if (bo instanceof SetVar) {
                 SetVar svar = (SetVar) bo;
                 name = svar.getName();
-                dsize = Integer.toString(svar.getUB().size());
+                dsize = svar.getUB().size();
             }
-            if (hasFailed) {
+            if (buffer != null) {
+                boolean failed = hasFailed;
+                TraceEvent event = buffer.claim(failed ? TraceEvent.FAIL : TraceEvent.TRY);
+                event.id = node_id;
+                event.parent = parent;
+                event.name = name;
+                event.size = dsize;
+                event.value = currentDecision.getDecisionValue();
+                if (depths) {
+                    event.depth = d;
+                    event.jump = climbed;
+                }
                 hasFailed = false;
-                tree.printf(CPVizConstant.T_FAIL_TAG, node_id, parent_id.get(), name, dsize,
-                        currentDecision.getDecisionValue());
+                if (printing() && buffer.acceptState(node_id)) {
+                    recorder.setRecord(event.state);
+                    printVisualizerStat(recorder, state_id, node_id, event.parent, true, currentDecision);
+                }
+                buffer.publish();
+                if (flight != null) {
+                    if (flightTrigger.fire(node_id, d, failed, false)) {
+                        flight.fire();
+                    }
+                }
             } else {
-                tree.printf(CPVizConstant.T_TRY_TAG, node_id, parent_id.get(), name, dsize, currentDecision.getDecisionValue());
-            }
-            if (visualization != null) {
-                printVisualizerStat(state_id, node_id, !hasFailed, currentDecision);
+                int depth = depths ? d : 0;
+                if (hasFailed) {
+                    hasFailed = false;
+                    node(true, node_id, parent, name, dsize, currentDecision.getDecisionValue(), depth, climbed);
+                } else {
+                    node(false, node_id, parent, name, dsize, currentDecision.getDecisionValue(), depth, climbed);
+                }
+                printVisualizerStat(writer, state_id, node_id, parent, !hasFailed, currentDecision);
+                commit(node_id);
             }
             hasFailed = false;
-            parent_id.set(node_id);
         }
         state_id++;
     }
 
+    /**
+     * Make <i>id</i> the node at depth <i>d</i> of the current branch
+     *
+     * @return the parent node of <i>id</i>, the nodes between them being attached to it when a branch applies
+     * several decisions at once, or when the tracing starts in the middle of the search
+     */
+    private long push(int d, long id) {
+        pop(d);
+        if (d >= ancestors.length) {
+            ancestors = Arrays.copyOf(ancestors, Math.max(d + 1, ancestors.length * 3 / 2));
+        }
+        long parent = ancestors[level - 1];
+        for (int i = level; i < d; i++) {
+            ancestors[i] = parent;
+        }
+        ancestors[d] = id;
+        level = d + 1;
+        return parent;
+    }
+
+    /**
+     * Climb up the current branch, up to depth <i>d</i> excluded
+     */
+    private void pop(int d) {
+        if (d < level) {
+            jump += level - d;
+            level = d;
+            if (dropped_depth >= d) {
+                dropped_depth = Integer.MAX_VALUE;
+            }
+        }
+    }
+
+    @Override
+    public void beforeUpBranch() {
+    }
+
+    @Override
+    public void afterUpBranch() {
+        // the last decision of the path is the one to refute, its node replaces the nodes from its depth,
+        // or the root decision, when restarting or when the search is over
+        pop(Math.max(solver.getDecisionPath().getLastDecision().getPosition(), 1) + offset);
+    }
+
+    /**
+     * Apply the recording policy to the current node, summarize it if it is dropped.
+     *
+     * @return <tt>true</tt> if the current node is recorded
+     */
+    private boolean record(int d, long parent) {
+        if (d > dropped_depth) {
+            summary_nodes++;
+            if (hasFailed) {
+                summary_fails++;
+            }
+            return false;
+        }
+        // in asynchronous mode, the events still in the ring buffer are not counted yet
+        if (policy.accept(node_id, d, hasFailed, treeBytes() + vizBytes())) {
+            flushSummary();
+            return true;
+        }
+        if (summary_id > 0 && summary_parent != parent) {
+            flushSummary();
+        }
+        if (summary_id == 0) {
+            summary_id = node_id;
+            summary_parent = parent;
+        }
+        summary_nodes++;
+        if (hasFailed) {
+            summary_fails++;
+        }
+        dropped_depth = d;
+        return false;
+    }
+
+    /**
+     * Write the pending summary node, if any
+     */
+    private void flushSummary() {
+        if (summary_id > 0) {
+            int size = (int) Math.min(summary_nodes, Integer.MAX_VALUE);
+            if (buffer != null) {
+                TraceEvent event = buffer.claim(TraceEvent.TRY);
+                event.id = summary_id;
+                event.parent = summary_parent;
+                event.name = SUMMARY;
+                event.size = size;
+                event.value = summary_fails;
+                buffer.publish();
+                if (summary_sols > 0) {
+                    event = buffer.claim(TraceEvent.SUCC);
+                    event.id = summary_id;
+                    buffer.publish();
+                }
+            } else {
+                node(false, summary_id, summary_parent, SUMMARY, size, summary_fails, 0, 0);
+                if (summary_sols > 0) {
+                    succ(summary_id);
+                }
+                commit(summary_id);
+            }
+            summary_id = summary_nodes = summary_fails = summary_sols = 0;
+        }
+    }
+
     @Override
     public void onSolution() {
-        if (tree != null) {
-            tree.printf(CPVizConstant.T_SUCC_TAG, node_id);
+        long start = stats == null ? 0 : System.nanoTime();
+        if (tracing() && (collapsed || level > dropped_depth)) {
+            summary_sols++;
+        } else if (tracing()) {
+            if (buffer != null) {
+                TraceEvent event = buffer.claim(TraceEvent.SUCC);
+                event.id = node_id;
+                buffer.publish();
+                if (flight != null && flightTrigger.fire(node_id, level - 1, false, true)) {
+                    flight.fire();
+                }
+            } else {
+                succ(node_id);
+                commit(node_id);
+            }
+        }
+        if (stats != null) {
+            stats.phase(TraceStats.Phase.SOLUTION, start);
         }
     }
 
-    private void printVisualizerStat(long s_id, long n_id, Boolean focus, Decision currentDecision) {
-        if (visualization != null && visualizers != null) {
-            visualization.printf(V_STATE_TAG_IN, s_id, n_id);
-            for (int i = 0; i < visualizers.size(); i++) {
-                Visualizer vv = visualizers.get(i);
-                visualization.printf(V_VISUALIZER_STATE_TAG_IN, vv.getId());
+    /**
+     * Print the states of the visualizers with <i>w</i>, the writer of the visualization file or the recorder
+     * in asynchronous mode, and deliver them to the sink in synchronous mode.
+     */
+    private void printVisualizerStat(Writer w, long s_id, long n_id, long p_id, Boolean focus, Decision currentDecision) {
+        if (printing()) {
+            long before = stats == null ? 0 : vizBytes();
+            if (buffer == null && sink != null) {
+                // printed once, then replayed into the visualization file
+                sinkState.clear();
+                printStates(sinkRecorder, s_id, n_id, p_id, focus, currentDecision);
+                if (visualization != null) {
+                    writer.replay(sinkState);
+                }
+                sink.onVisualizerState(s_id, n_id, sinkState);
+            } else if (buffer != null || visualization != null) {
+                printStates(w, s_id, n_id, p_id, focus, currentDecision);
+            }
+            if (stats != null && buffer == null) {
+                stats.tag(TraceStats.Tag.STATE, vizBytes() - before);
+            }
+        }
+    }
+
+    private void printStates(Writer w, long s_id, long n_id, long p_id, Boolean focus, Decision currentDecision) {
+        w.stateIn(s_id, n_id, p_id);
+        for (int i = 0; i < visualizers.size(); i++) {
+            Visualizer vv = visualizers.get(i);
+            w.visualizerIn(vv.getId());
+            if (stats == null) {
+                vv.print(focus, currentDecision);
+            } else {
+                // bytes are only known when printed straight into the visualization file
+                long before = w == writer ? vizBytes() : 0;
+                long start = System.nanoTime();
                 vv.print(focus, currentDecision);
-                visualization.printf(V_VISUALIZER_STATE_TAG_OUT);
+                stats.visualizer(vv.getId(), start, w == writer ? vizBytes() - before : 0);
             }
-            visualization.printf(V_STATE_TAG_OUT);
+            w.visualizerOut();
         }
+        w.stateOut();
     }
 
+    /**
+     * Write an event recorded in asynchronous mode, called on the writer thread only.
+     */
+    private void write(TraceEvent event) {
+        if (tracing()) {
+            switch (event.kind) {
+                case TraceEvent.ROOT:
+                    root();
+                    break;
+                case TraceEvent.TRY:
+                    node(false, event.id, event.parent, event.name, event.size, event.value, event.depth, event.jump);
+                    break;
+                case TraceEvent.FAIL:
+                    node(true, event.id, event.parent, event.name, event.size, event.value, event.depth, event.jump);
+                    break;
+                case TraceEvent.SUCC:
+                    succ(event.id);
+                    break;
+                case TraceEvent.RESTART:
+                    restart(event.id, (Long) event.value, event.nodes, event.fails, event.name);
+                    break;
+            }
+        }
+        if (!event.state.isEmpty()) {
+            long before = stats == null ? 0 : vizBytes();
+            if (writer != null) {
+                writer.replay(event.state);
+            }
+            if (sink != null) {
+                sink.onVisualizerState(event.state.stateId(), event.state.nodeId(), event.state);
+            }
+            if (stats != null) {
+                stats.tag(TraceStats.Tag.STATE, vizBytes() - before);
+            }
+        }
+        commit(event.id);
+    }
+
+    /**
+     * Commit the segments, if any, <i>node</i> being entirely written
+     */
+    private void commit(long node) {
+        if (treeSegments != null) {
+            tree.flush();
+            treeSegments.commit(node);
+        }
+        if (vizSegments != null) {
+            visualization.flush();
+            vizSegments.commit(node);
+        }
+    }
+
+    private void root() {
+        long before = stats == null ? 0 : treeBytes();
+        if (binaryTree != null) {
+            binaryTree.op(BinaryTrace.ROOT);
+        } else if (tree != null) {
+            tree.write(XmlTags.ROOT);
+        }
+        if (sink != null) {
+            sink.onRoot();
+        }
+        if (stats != null) {
+            stats.tag(TraceStats.Tag.ROOT, treeBytes() - before);
+        }
+    }
+
+    private void succ(long id) {
+        long before = stats == null ? 0 : treeBytes();
+        if (binaryTree != null) {
+            binaryTree.op(BinaryTrace.SUCC).varint(id);
+        } else if (tree != null) {
+            XmlTags.tag(tree, XmlTags.SUCC, id);
+        }
+        if (sink != null) {
+            sink.onSolution(id);
+        }
+        if (stats != null) {
+            stats.tag(TraceStats.Tag.SUCC, treeBytes() - before);
+        }
+    }
+
+    /**
+     * Write the node of a restart in the tree file
+     */
+    private void restart(long id, long restart, long nodes, long fails, String neighbourhood) {
+        long before = stats == null ? 0 : treeBytes();
+        if (binaryTree != null) {
+            binaryTree.restart(id, restart, nodes, fails, neighbourhood);
+        } else if (tree != null) {
+            XmlTags.restart(tree, id, restart, nodes, fails, neighbourhood);
+        }
+        if (sink != null) {
+            sink.onRestart(id, restart, nodes, fails, neighbourhood);
+        }
+        if (stats != null) {
+            stats.tag(TraceStats.Tag.RESTART, treeBytes() - before);
+        }
+    }
+
+    /**
+     * Write a try or a <i>fail</i> node in the tree file, an unknown domain size (<i>dsize</i> &lt; 0) is written as "?",
+     * and its <i>depth</i> and <i>jump</i> unless <i>depth</i> is 0.
+     */
+    private void node(boolean fail, long id, long parent, String name, int dsize, Object value, int depth, int jump) {
+        long before = stats == null ? 0 : treeBytes();
+        TraceSink.Status status = fail ? TraceSink.Status.FAIL : TraceSink.Status.TRY;
+        if (depth == 0) {
+            if (binaryTree != null) {
+                binaryTree.node(fail, id, parent, name, dsize, value);
+            } else if (tree != null) {
+                XmlTags.node(tree, fail, id, parent, name, dsize, value);
+            }
+            if (sink != null) {
+                sink.onNode(id, parent, name, dsize, value, status);
+            }
+        } else {
+            if (binaryTree != null) {
+                binaryTree.node(fail, id, parent, name, dsize, value, depth, jump);
+            } else if (tree != null) {
+                XmlTags.node(tree, fail, id, parent, name, dsize, value, depth, jump);
+            }
+            if (sink != null) {
+                sink.onNode(id, parent, name, dsize, value, status, depth, jump);
+            }
+        }
+        if (stats != null) {
+            stats.tag(fail ? TraceStats.Tag.FAIL : TraceStats.Tag.TRY, treeBytes() - before);
+        }
+    }
+
+    /**
+     * Plugged instead of <code>this</code> until the trigger fires, then left inert:
+     * removing it while the solver iterates over its monitors would skip the next one.
+     */
+    private final class Trigger implements IMonitorDownBranch, IMonitorContradiction, IMonitorClose {
+
+        private boolean fired;
+
+        @Override
+        public void onContradiction(ContradictionException cex) {
+            // reported before the branch, so that the node which fires the trigger is written as a failure
+            if (!fired) {
+                Visualization.this.onContradiction(cex);
+            }
+        }
+
+        @Override
+        public void afterDownBranch(boolean left) {
+            if (!fired) {
+                if (trigger.isMet()) {
+                    fired = true;
+                    beforeInitialize();
+                    afterInitialize();
+                    // called back on the current node, as the last monitor
+                    solver.plugMonitor(Visualization.this);
+                } else {
+                    hasFailed = false;
+                }
+            }
+        }
+
+        @Override
+        public void beforeClose() {
+            if (!fired) {
+                fired = true;
+                Visualization.this.beforeClose();
+            }
+        }
+    }
 }
@@ -8,10 +8,17 @@
  */
 package org.chocosolver.cpviz;
 
+import org.chocosolver.cpviz.io.ByteEmitter;
 import org.chocosolver.cpviz.visualizers.Writer;
 import org.chocosolver.solver.search.strategy.decision.Decision;
+import org.chocosolver.solver.variables.Variable;
 
+import java.io.ByteArrayOutputStream;
 import java.io.PrintWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 
 /**
  * An abstract class to define a visulaizer.
@@ -35,6 +42,20 @@ public abstract class Visualizer {
     protected String group;
     protected int min = Integer.MIN_VALUE, max = Integer.MAX_VALUE;
 
+    /**
+     * Indices of the decision variables of <code>this</code>, in {@link #decisionVariables()}, by identity
+     */
+    private IdentityHashMap<Variable, int[]> locator;
+
+    private static final String[] NO_ARGUMENTS = new String[0];
+
+    private static final int[] NO_INDICES = new int[0];
+
+    /**
+     * <tt>true</tt> when the static arguments are written in the declaration of <code>this</code>,
+     * and only referenced in its states
+     */
+    private boolean hoisted;
 
     /**
      * Build a visualizer
@@ -189,6 +210,126 @@ public abstract class Visualizer {
         return st.toString();
     }
 
+    /**
+     * Return the variables of <code>this</code> which may be the variable of a decision,
+     * the focus and the failure of a decision being located by the index of its variable in this array.
+     * <br/>
+     * Called once, when <code>this</code> is added to a {@link Visualization}.
+     *
+     * @return the variables of <code>this</code>, an empty array by default
+     */
+    protected Variable[] decisionVariables() {
+        return new Variable[0];
+    }
+
+    /**
+     * Build the index of the decision variables of <code>this</code>
+     */
+    void buildLocator() {
+        Variable[] variables = decisionVariables();
+        locator = new IdentityHashMap<>(variables.length);
+        for (int i = 0; i < variables.length; i++) {
+            int[] indices = locator.get(variables[i]);
+            if (indices == null) {
+                indices = new int[]{i};
+            } else {
+                // a variable appearing more than once
+                indices = Arrays.copyOf(indices, indices.length + 1);
+                indices[indices.length - 1] = i;
+            }
+            locator.put(variables[i], indices);
+        }
+    }
+
+    /**
+     * Return the index of the variable of <i>decision</i> in {@link #decisionVariables()}, in constant time.
+     * If the variable appears more than once, the first occurrence wins, as with a linear scan.
+     *
+     * @param decision a decision, may be <tt>null</tt>
+     * @return the index of its variable, -1 if <i>decision</i> is <tt>null</tt> or does not involve <code>this</code>
+     */
+    protected final int locate(Decision decision) {
+        int[] indices = locateAll(decision);
+        return indices.length == 0 ? -1 : indices[0];
+    }
+
+    /**
+     * Return every index of the variable of <i>decision</i> in {@link #decisionVariables()}, in constant time
+     *
+     * @param decision a decision, may be <tt>null</tt>
+     * @return the indices of its variable, in increasing order, empty if <i>decision</i> is <tt>null</tt>
+     * or does not involve <code>this</code>; the array must not be modified
+     */
+    protected final int[] locateAll(Decision decision) {
+        if (decision == null) {
+            return NO_INDICES;
+        }
+        if (locator == null) {
+            buildLocator();
+        }
+        int[] indices = locator.get(decision.getDecisionVariable());
+        return indices == null ? NO_INDICES : indices;
+    }
+
+    /**
+     * Return the indices of the arguments of <code>this</code> which cannot change during the search,
+     * such as arrays of constants, each one being written by {@link #printStatic(String)}.
+     *
+     * @return the indices of the static arguments, an empty array by default
+     */
+    protected String[] staticArguments() {
+        return NO_ARGUMENTS;
+    }
+
+    /**
+     * Write the static argument <i>idx</i>, as in a state
+     *
+     * @param idx index of a static argument
+     */
+    protected void printStatic(String idx) {
+    }
+
+    /**
+     * Write the static argument <i>idx</i> in the current state: in full, or as a reference to the declaration of
+     * <code>this</code> once {@link Visualization#enableStaticArguments()} has been called
+     *
+     * @param idx index of a static argument
+     */
+    protected final void staticArgument(String idx) {
+        if (hoisted) {
+            writer.reference(idx, 3);
+        } else {
+            printStatic(idx);
+        }
+    }
+
+    void setHoisted(boolean hoisted) {
+        this.hoisted = hoisted && staticArguments().length > 0;
+    }
+
+    /**
+     * @return the static arguments, as written in the declaration of <code>this</code>,
+     * <tt>null</tt> if they are written in each state
+     */
+    String printStatics() {
+        if (!hoisted) {
+            return null;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ByteEmitter emitter = new ByteEmitter(Channels.newChannel(bytes), 1 << 10);
+        Writer w = writer;
+        writer = new Writer(emitter);
+        try {
+            for (String idx : staticArguments()) {
+                printStatic(idx);
+            }
+        } finally {
+            writer = w;
+        }
+        emitter.flush();
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
     protected abstract void print(boolean focus, Decision decision);
 
 }
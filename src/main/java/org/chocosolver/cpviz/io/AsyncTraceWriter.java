@@ -0,0 +1,256 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz.io;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * A bounded, single-producer single-consumer, ring buffer of {@link TraceEvent}
+ * drained by a dedicated writer thread.
+ * <br/>
+ * The search thread claims a slot, fills it and publishes it; the writer thread hands each published slot over
+ * to the <i>handler</i>, which does the formatting and the I/O.
+ * The {@link Backpressure} policy states how the search thread behaves when the ring is (nearly) full.
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public final class AsyncTraceWriter implements TraceBuffer {
+
+    private static final long PARK_NS = 50_000;
+
+    private final TraceEvent[] ring;
+
+    private final int mask;
+
+    private final Backpressure backpressure;
+
+    private final int sampling;
+
+    /**
+     * Below this number of free slots, the ring is considered as nearly full
+     */
+    private final int lowWater;
+
+    /**
+     * Slot handed out once <code>this</code> is closed, never published
+     */
+    private final TraceEvent discarded = new TraceEvent();
+
+    private final Consumer<TraceEvent> handler;
+
+    private final Thread thread;
+
+    private Thread producer;
+
+    /**
+     * Next slot to handle, only written by the writer thread
+     */
+    private volatile long head;
+
+    /**
+     * Next slot to publish, only written by the search thread
+     */
+    private volatile long tail;
+
+    private volatile boolean closed;
+
+    private volatile boolean sleeping;
+
+    private volatile boolean waiting;
+
+    /**
+     * Only incremented by the search thread, read by any thread
+     */
+    private volatile long droppedStates;
+
+    private volatile long stalls;
+
+    /**
+     * First exception thrown by the handler, rethrown by {@link #close()}
+     */
+    private volatile RuntimeException failure;
+
+    /**
+     * Create a ring buffer and start its writer thread.
+     *
+     * @param name         name of the writer thread
+     * @param capacity     number of slots, rounded up to the next power of 2
+     * @param backpressure policy to apply when the ring is nearly full
+     * @param sampling     with {@link Backpressure#SAMPLE}, record the states of one node out of <i>sampling</i>
+     * @param handler      consumes events, called on the writer thread only
+     */
+    public AsyncTraceWriter(String name, int capacity, Backpressure backpressure, int sampling, Consumer<TraceEvent> handler) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("capacity must be at least 2");
+        }
+        if (sampling < 1) {
+            throw new IllegalArgumentException("sampling must be positive");
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.ring = new TraceEvent[size];
+        for (int i = 0; i < size; i++) {
+            ring[i] = new TraceEvent();
+        }
+        this.mask = size - 1;
+        this.lowWater = size / 4;
+        this.backpressure = backpressure;
+        this.sampling = sampling;
+        this.handler = handler;
+        this.thread = new Thread(this::drain, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Claim the next slot of the ring, waiting for the writer thread if the ring is full.
+     * The slot must be published with {@link #publish()} before claiming a new one.
+     * Once <code>this</code> is closed, events are silently discarded, as a closed <code>PrintWriter</code> does.
+     *
+     * @param kind type of event
+     * @return a cleared slot
+     */
+    @Override
+    public TraceEvent claim(byte kind) {
+        if (closed) {
+            discarded.reset(kind);
+            return discarded;
+        }
+        final long t = tail;
+        if (t - head > mask) {
+            producer = Thread.currentThread();
+            stalls++;
+            waiting = true;
+            while (t - head > mask) {
+                if (!thread.isAlive()) {
+                    throw new IllegalStateException("the trace writer thread is dead");
+                }
+                LockSupport.unpark(thread);
+                LockSupport.parkNanos(this, PARK_NS);
+            }
+            waiting = false;
+        }
+        TraceEvent event = ring[(int) (t & mask)];
+        event.reset(kind);
+        return event;
+    }
+
+    /**
+     * Decide, according to the backpressure policy, whether the visualizer states of the node being claimed
+     * should be recorded.
+     *
+     * @param nid identifier of the node
+     * @return <tt>true</tt> if the states should be recorded
+     */
+    @Override
+    public boolean acceptState(long nid) {
+        switch (backpressure) {
+            case DROP_STATES:
+                if (free() > lowWater) {
+                    return true;
+                }
+                break;
+            case SAMPLE:
+                if (free() > lowWater || nid % sampling == 0) {
+                    return true;
+                }
+                break;
+            default:
+                return true;
+        }
+        droppedStates++;
+        return false;
+    }
+
+    /**
+     * Make the last claimed slot visible to the writer thread.
+     */
+    @Override
+    public void publish() {
+        if (closed) {
+            return;
+        }
+        tail = tail + 1;
+        if (sleeping) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Wait for the writer thread to handle every published event, then stop it.
+     *
+     * @throws RuntimeException the first exception thrown by the handler, if any, the next ones being suppressed
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        RuntimeException e = failure;
+        if (e != null) {
+            failure = null;
+            throw e;
+        }
+    }
+
+    /**
+     * @return number of visualizer states not recorded because of the backpressure policy
+     */
+    @Override
+    public long getDroppedStates() {
+        return droppedStates;
+    }
+
+    /**
+     * @return number of times the search thread had to wait for a free slot
+     */
+    public long getStalls() {
+        return stalls;
+    }
+
+    private int free() {
+        return ring.length - (int) (tail - head);
+    }
+
+    private void drain() {
+        long h = head;
+        while (true) {
+            if (h == tail) {
+                if (closed && h == tail) {
+                    return;
+                }
+                sleeping = true;
+                if (h == tail && !closed) {
+                    LockSupport.parkNanos(this, PARK_NS * 20);
+                }
+                sleeping = false;
+                continue;
+            }
+            TraceEvent event = ring[(int) (h & mask)];
+            try {
+                handler.accept(event);
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+            head = ++h;
+            if (waiting) {
+                LockSupport.unpark(producer);
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz.io;
+
+/**
+ * What to do when the writer thread cannot keep up with the search thread.
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public enum Backpressure {
+    /**
+     * Wait until the writer thread frees a slot, nothing is lost
+     */
+    BLOCK,
+    /**
+     * Keep the tree events but do not record visualizer states while the buffer is nearly full
+     */
+    DROP_STATES,
+    /**
+     * While the buffer is nearly full, only record the visualizer states of one node out of <i>k</i>
+     */
+    SAMPLE
+}
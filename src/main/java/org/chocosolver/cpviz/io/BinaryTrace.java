@@ -0,0 +1,250 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz.io;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+/**
+ * Encoder of the compact binary trace format, one instance per file.
+ * <br/>
+ * A file starts with {@link #MAGIC}, {@link #VERSION} and its kind ({@link #TREE} or {@link #VISUALIZATION}),
+ * then comes a sequence of records, each one being an operation code followed by its operands, and {@link #END}.
+ * Integers are variable-length (see {@link ByteEmitter#varint(long)}), zigzag-encoded when they can be negative.
+ * Strings (names, indices, groups) are interned in a string table: the first occurrence is written as its
+ * reference, <i>i.e.</i> the current size of the table, followed by its UTF-8 bytes; the next ones as their
+ * reference only.
+ * An enumerated domain is written as its lower bound followed by either its intervals or a bitset,
+ * whichever is the smaller.
+ * <br/>
+ * {@link BinaryTraceConverter} turns a binary file into the XML file defined by
+ * {@link org.chocosolver.cpviz.CPVizConstant}.
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public final class BinaryTrace {
+
+    public static final byte[] MAGIC = {'C', 'P', 'V', 'B'};
+    public static final int VERSION = 1;
+    public static final int TREE = 'T', VISUALIZATION = 'V';
+
+    // operations, with their operands
+    public static final int END = 0;
+    // tree: ROOT | TRY/FAIL id parent name size value | SUCC id, size being -1 when unknown
+    public static final int ROOT = 1, TRY = 2, FAIL = 3, SUCC = 4;
+    // visualization: TEXT string, written as is
+    public static final int TEXT = 5;
+    // STATE_IN id tree_node parent | VISUALIZER_IN id
+    public static final int STATE_IN = 6, STATE_OUT = 7, VISUALIZER_IN = 8, VISUALIZER_OUT = 9;
+    // XXX_IN index indent | XXX_OUT indent
+    public static final int ARGUMENT_IN = 10, ARGUMENT_OUT = 11, TUPLE_IN = 12, TUPLE_OUT = 13,
+            COLLECTION_IN = 14, COLLECTION_OUT = 15;
+    // INTEGER index indent value | DVAR index indent domain | BOUNDS index indent lb ub
+    public static final int INTEGER = 16, DVAR = 17, BOUNDS = 18;
+    // FOCUS index group type | FOCUS_NO_TYPE index group | FAILED index group value
+    public static final int FOCUS = 19, FOCUS_NO_TYPE = 20, FAILED = 21;
+    // TILE index indent instantiated size lb ub
+    public static final int TILE = 22;
+    // both: RUN_IN id model | RUN_OUT
+    public static final int RUN_IN = 23, RUN_OUT = 24;
+    // REFERENCE index indent
+    public static final int REFERENCE = 25;
+    // SINTEGER index indent value | SVAR index indent kernel envelope, each set encoded as a domain
+    public static final int SINTEGER = 26, SVAR = 27;
+    // tree: RESTART id restart nodes fails neighbourhood
+    public static final int RESTART = 28;
+    // tree: TRY_DEPTH/FAIL_DEPTH id parent name size value depth jump
+    public static final int TRY_DEPTH = 29, FAIL_DEPTH = 30;
+
+    // kinds of decision values
+    public static final int VALUE_INT = 0, VALUE_STRING = 1;
+
+    // kinds of domain encodings
+    public static final int INTERVALS = 0, BITSET = 1;
+
+    private final ByteEmitter out;
+
+    private final HashMap<String, Integer> strings = new HashMap<>();
+
+    /**
+     * Start a binary file of kind <i>kind</i>
+     *
+     * @param out  destination of the bytes
+     * @param kind {@link #TREE} or {@link #VISUALIZATION}
+     */
+    public BinaryTrace(ByteEmitter out, int kind) {
+        this.out = out;
+        out.write(MAGIC).writeByte(VERSION).writeByte(kind);
+    }
+
+    public ByteEmitter out() {
+        return out;
+    }
+
+    public BinaryTrace op(int op) {
+        out.writeByte(op);
+        return this;
+    }
+
+    public BinaryTrace varint(long v) {
+        out.varint(v);
+        return this;
+    }
+
+    public BinaryTrace zigzag(long v) {
+        out.zigzag(v);
+        return this;
+    }
+
+    /**
+     * Write <i>s</i> through the string table
+     */
+    public BinaryTrace string(String s) {
+        if (s == null) {
+            s = "null";
+        }
+        Integer ref = strings.get(s);
+        if (ref != null) {
+            out.varint(ref);
+        } else {
+            int r = strings.size();
+            strings.put(s, r);
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.varint(r).varint(bytes.length).write(bytes);
+        }
+        return this;
+    }
+
+    /**
+     * Write a try or a <i>fail</i> node
+     */
+    public BinaryTrace node(boolean fail, long id, long parent, String name, int dsize, Object value) {
+        return op(fail ? FAIL : TRY).varint(id).varint(parent).string(name).zigzag(dsize).value(value);
+    }
+
+    /**
+     * Write a try or a <i>fail</i> node with its depth, see {@link XmlTags#node(ByteEmitter, boolean, long, long, String, int, Object, long, long)}
+     */
+    public BinaryTrace node(boolean fail, long id, long parent, String name, int dsize, Object value, long depth, long jump) {
+        return op(fail ? FAIL_DEPTH : TRY_DEPTH).varint(id).varint(parent).string(name).zigzag(dsize).value(value)
+                .varint(depth).varint(jump);
+    }
+
+    /**
+     * Write the node rooting the search which follows a restart, see {@link XmlTags#restart}
+     */
+    public BinaryTrace restart(long id, long restart, long nodes, long fails, String neighbourhood) {
+        op(RESTART).varint(id).varint(restart).varint(nodes).varint(fails).string(neighbourhood);
+        return this;
+    }
+
+    /**
+     * Write a decision value, integers are not turned into strings
+     */
+    public BinaryTrace value(Object v) {
+        if (v instanceof Integer) {
+            out.writeByte(VALUE_INT).zigzag((Integer) v);
+        } else {
+            out.writeByte(VALUE_STRING);
+            string(String.valueOf(v));
+        }
+        return this;
+    }
+
+    /**
+     * Write the domain made of the <i>n</i> (&gt;= 0) disjoint intervals of <i>intervals</i> starting at <i>from</i>,
+     * in increasing order, each one as its two bounds.
+     * The bytes are those of {@link #domain(int[], int, int)} on the values of the intervals.
+     */
+    public BinaryTrace intervals(int[] intervals, int from, int n) {
+        if (n == 0) {
+            // an empty set
+            out.zigzag(0).writeByte(INTERVALS).varint(0);
+            return this;
+        }
+        int lb = intervals[from];
+        int end = from + 2 * n;
+        long span = (long) intervals[end - 1] - lb + 1;
+        out.zigzag(lb);
+        if ((span + 7) / 8 < 2L * n) {
+            out.writeByte(BITSET).varint(span);
+            int bits = 0, nb = 0, k = from;
+            for (long v = 0; v < span; v++) {
+                if (k < end && (long) intervals[k + 1] - lb < v) {
+                    k += 2;
+                }
+                if ((long) intervals[k] - lb <= v) {
+                    bits |= 1 << nb;
+                }
+                if (++nb == 8) {
+                    out.writeByte(bits);
+                    bits = nb = 0;
+                }
+            }
+            if (nb > 0) {
+                out.writeByte(bits);
+            }
+        } else {
+            out.writeByte(INTERVALS).varint(n);
+            long prev = lb;
+            for (int k = from; k < end; k += 2) {
+                out.varint(intervals[k] - prev).varint(intervals[k + 1] - intervals[k]);
+                prev = intervals[k + 1] + 1L;
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Write the domain made of the <i>n</i> (&gt; 0) values of <i>values</i> starting at <i>from</i>,
+     * in increasing order
+     */
+    public BinaryTrace domain(int[] values, int from, int n) {
+        int lb = values[from];
+        int end = from + n;
+        long span = (long) values[end - 1] - lb + 1;
+        int runs = 1;
+        for (int i = from + 1; i < end; i++) {
+            if (values[i] != values[i - 1] + 1) {
+                runs++;
+            }
+        }
+        out.zigzag(lb);
+        if ((span + 7) / 8 < 2L * runs) {
+            out.writeByte(BITSET).varint(span);
+            int bits = 0, nb = 0, i = from;
+            for (long v = 0; v < span; v++) {
+                if ((long) values[i] - lb == v) {
+                    bits |= 1 << nb;
+                    i++;
+                }
+                if (++nb == 8) {
+                    out.writeByte(bits);
+                    bits = nb = 0;
+                }
+            }
+            if (nb > 0) {
+                out.writeByte(bits);
+            }
+        } else {
+            out.writeByte(INTERVALS).varint(runs);
+            long prev = lb;
+            int start = from;
+            for (int i = from + 1; i <= end; i++) {
+                if (i == end || values[i] != values[i - 1] + 1) {
+                    out.varint(values[start] - prev).varint(i - start - 1);
+                    prev = values[i - 1] + 1L;
+                    start = i;
+                }
+            }
+        }
+        return this;
+    }
+}
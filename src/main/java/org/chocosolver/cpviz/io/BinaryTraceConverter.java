@@ -0,0 +1,524 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz.io;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.chocosolver.cpviz.io.BinaryTrace.*;
+
+/**
+ * Turn a file written in the binary format (see {@link BinaryTrace}) into the XML file defined by
+ * {@link org.chocosolver.cpviz.CPVizConstant}, byte for byte the one that would have been written in XML.
+ * <br/>
+ * A truncated file is converted up to its last complete record: each record is decoded aside, and only copied
+ * into the XML once whole, then the elements still open are closed.
+ * Compressed files (see {@link Codec}) are read transparently.
+ * <br/>
+ * Domains are written as lists of values, or as lists of maximal intervals when asked to
+ * (see {@link org.chocosolver.cpviz.visualizers.Writer#setRangeDomains(boolean)}).
+ * <br/>
+ * Usage: <code>BinaryTraceConverter [-ranges] tree-xxx.cpvb [tree-xxx.xml]</code>
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public final class BinaryTraceConverter {
+
+    private final DataInputStream in;
+
+    /**
+     * Destination of the complete records
+     */
+    private final ByteEmitter target;
+
+    /**
+     * Bytes of the record being decoded
+     */
+    private final Pending pending = new Pending();
+
+    /**
+     * Where the record being decoded is written, flushed into {@link #pending}
+     */
+    private final ByteEmitter out = new ByteEmitter(pending, 1 << 12);
+
+    /**
+     * Closing tags, and their indentation, of the elements open in {@link #target}
+     */
+    private byte[][] closers = new byte[8][];
+
+    private int[] indents = new int[8];
+
+    private int open;
+
+    private final List<String> strings = new ArrayList<>();
+
+    private long[] values = new long[64];
+
+    private final boolean ranges;
+
+    private BinaryTraceConverter(InputStream in, ByteEmitter out, boolean ranges) {
+        this.in = new DataInputStream(in);
+        this.target = out;
+        this.ranges = ranges;
+    }
+
+    /**
+     * Convert the binary file <i>in</i> into the XML file <i>out</i>
+     *
+     * @param in  a binary tree or visualization file, compressed or not
+     * @param out the XML file to write
+     * @throws IOException if <i>in</i> is not a binary trace, or a file cannot be read or written
+     */
+    public static void convert(File in, File out) throws IOException {
+        convert(in, out, false);
+    }
+
+    /**
+     * Convert the binary file <i>in</i> into the XML file <i>out</i>
+     *
+     * @param in     a binary tree or visualization file, compressed or not
+     * @param out    the XML file to write
+     * @param ranges set to <tt>true</tt> to write domains as lists of maximal intervals
+     * @throws IOException if <i>in</i> is not a binary trace, or a file cannot be read or written
+     */
+    public static void convert(File in, File out, boolean ranges) throws IOException {
+        try (InputStream is = Codec.open(in)) {
+            ByteEmitter emitter = ByteEmitter.open(out);
+            try {
+                convert(is, emitter, ranges);
+            } finally {
+                emitter.close();
+            }
+            if (emitter.checkError() != null) {
+                throw emitter.checkError();
+            }
+        }
+    }
+
+    /**
+     * Convert the binary trace read from <i>in</i> into XML, written into <i>out</i>
+     *
+     * @param in  a binary tree or visualization
+     * @param out destination of the XML
+     * @throws IOException if <i>in</i> is not a binary trace or cannot be read
+     */
+    public static void convert(InputStream in, ByteEmitter out) throws IOException {
+        convert(in, out, false);
+    }
+
+    /**
+     * Convert the binary trace read from <i>in</i> into XML, written into <i>out</i>
+     *
+     * @param in     a binary tree or visualization
+     * @param out    destination of the XML
+     * @param ranges set to <tt>true</tt> to write domains as lists of maximal intervals
+     * @throws IOException if <i>in</i> is not a binary trace or cannot be read
+     */
+    public static void convert(InputStream in, ByteEmitter out, boolean ranges) throws IOException {
+        new BinaryTraceConverter(in, out, ranges).run();
+    }
+
+    private void run() throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new IOException("Not a binary trace");
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary trace version " + version);
+        }
+        int kind = in.readUnsignedByte();
+        if (kind != TREE && kind != VISUALIZATION) {
+            throw new IOException("Unknown kind of binary trace " + kind);
+        }
+        target.write(XmlTags.HEADER).write(kind == TREE ? XmlTags.TREE_IN : XmlTags.VISUALIZATION_IN);
+        try {
+            int op;
+            while ((op = in.read()) > END) {
+                record(op);
+                out.flush();
+                pending.copyTo(target);
+            }
+        } catch (EOFException e) {
+            // truncated file, the last record is incomplete and dropped
+        }
+        while (open > 0) {
+            open--;
+            target.repeat('\t', indents[open]).write(closers[open]);
+        }
+        target.write(kind == TREE ? XmlTags.TREE_OUT : XmlTags.VISUALIZATION_OUT);
+    }
+
+    private void record(int op) throws IOException {
+        switch (op) {
+            case ROOT:
+                out.write(XmlTags.ROOT);
+                break;
+            case TRY:
+                node(XmlTags.TRY);
+                break;
+            case FAIL:
+                node(XmlTags.FAIL);
+                break;
+            case TRY_DEPTH:
+                node(XmlTags.TRY_DEPTH);
+                break;
+            case FAIL_DEPTH:
+                node(XmlTags.FAIL_DEPTH);
+                break;
+            case SUCC:
+                XmlTags.tag(out, XmlTags.SUCC, varint());
+                break;
+            case RESTART: {
+                long id = varint(), restart = varint(), nodes = varint(), fails = varint();
+                XmlTags.restart(out, id, restart, nodes, fails, string());
+            }
+            break;
+            case RUN_IN: {
+                long id = varint();
+                out.write(XmlTags.RUN_IN[0]).write(id).write(XmlTags.RUN_IN[1]).write(string()).write(XmlTags.RUN_IN[2]);
+                push(XmlTags.RUN_OUT, 0);
+            }
+            break;
+            case RUN_OUT:
+                out.write(XmlTags.RUN_OUT);
+                pop();
+                break;
+            case TEXT:
+                out.write(string());
+                break;
+            case STATE_IN: {
+                long sid = varint();
+                long nid = zigzag();
+                zigzag();
+                out.write(XmlTags.STATE_IN[0]).write(sid).write(XmlTags.STATE_IN[1]).write(nid).write(XmlTags.STATE_IN[2]);
+                push(XmlTags.STATE_OUT, 0);
+            }
+            break;
+            case STATE_OUT:
+                out.write(XmlTags.STATE_OUT);
+                pop();
+                break;
+            case VISUALIZER_IN:
+                XmlTags.tag(out, XmlTags.VISUALIZER_STATE_IN, varint());
+                push(XmlTags.VISUALIZER_STATE_OUT, 0);
+                break;
+            case VISUALIZER_OUT:
+                out.write(XmlTags.VISUALIZER_STATE_OUT);
+                pop();
+                break;
+            case ARGUMENT_IN:
+                in(XmlTags.ARGUMENT_IN, XmlTags.ARGUMENT_OUT);
+                break;
+            case ARGUMENT_OUT:
+                indent().write(XmlTags.ARGUMENT_OUT);
+                pop();
+                break;
+            case TUPLE_IN:
+                in(XmlTags.TUPLE_IN, XmlTags.TUPLE_OUT);
+                break;
+            case TUPLE_OUT:
+                indent().write(XmlTags.TUPLE_OUT);
+                pop();
+                break;
+            case COLLECTION_IN:
+                in(XmlTags.COLLECTION_IN, XmlTags.COLLECTION_OUT);
+                break;
+            case COLLECTION_OUT:
+                indent().write(XmlTags.COLLECTION_OUT);
+                pop();
+                break;
+            case INTEGER: {
+                String idx = string();
+                int pf = (int) varint();
+                long value = zigzag();
+                out.repeat('\t', pf).write(XmlTags.INTEGER[0]).write(idx).write(XmlTags.INTEGER[1]).write(value)
+                        .write(XmlTags.INTEGER[2]);
+            }
+            break;
+            case DVAR: {
+                String idx = string();
+                int pf = (int) varint();
+                out.repeat('\t', pf).write(XmlTags.DVAR[0]).write(idx).write(XmlTags.DVAR[1]);
+                values(domain());
+                out.write(XmlTags.DVAR[2]);
+            }
+            break;
+            case SINTEGER: {
+                String idx = string();
+                int pf = (int) varint();
+                out.repeat('\t', pf).write(XmlTags.SINTEGER[0]).write(idx).write(XmlTags.SINTEGER[1]);
+                values(domain());
+                out.write(XmlTags.SINTEGER[2]);
+            }
+            break;
+            case SVAR: {
+                String idx = string();
+                int pf = (int) varint();
+                out.repeat('\t', pf).write(XmlTags.SVAR[0]).write(idx).write(XmlTags.SVAR[1]);
+                values(domain());
+                out.write(XmlTags.SVAR[2]);
+                values(domain());
+                out.write(XmlTags.SVAR[3]);
+            }
+            break;
+            case BOUNDS: {
+                String idx = string();
+                int pf = (int) varint();
+                long lb = zigzag(), ub = zigzag();
+                out.repeat('\t', pf).write(XmlTags.DVAR[0]).write(idx).write(XmlTags.DVAR[1]).write(lb)
+                        .write(XmlTags.BOUNDS).write(ub).write(XmlTags.DVAR[2]);
+            }
+            break;
+            case REFERENCE:
+                in(XmlTags.STATIC, null);
+                break;
+            case TILE: {
+                String idx = string();
+                int pf = (int) varint();
+                long instantiated = varint(), size = varint(), lb = zigzag(), ub = zigzag();
+                out.repeat('\t', pf).write(XmlTags.TILE[0]).write(idx).write(XmlTags.TILE[1]).write(instantiated)
+                        .write(XmlTags.TILE[2]).write(size).write(XmlTags.TILE[3]).write(lb)
+                        .write(XmlTags.TILE[4]).write(ub).write(XmlTags.TILE[5]);
+            }
+            break;
+            case FOCUS: {
+                String idx = string(), group = string(), type = string();
+                out.repeat('\t', 3).write(XmlTags.FOCUS[0]).write(idx).write(XmlTags.FOCUS[1]).write(group)
+                        .write(XmlTags.FOCUS[2]).write(type).write(XmlTags.FOCUS[3]);
+            }
+            break;
+            case FOCUS_NO_TYPE: {
+                String idx = string(), group = string();
+                out.repeat('\t', 3).write(XmlTags.FOCUS_NO_TYPE[0]).write(idx).write(XmlTags.FOCUS_NO_TYPE[1])
+                        .write(group).write(XmlTags.FOCUS_NO_TYPE[2]);
+            }
+            break;
+            case FAILED: {
+                String idx = string(), group = string();
+                long value = zigzag();
+                out.repeat('\t', 3).write(XmlTags.FAILED[0]).write(idx).write(XmlTags.FAILED[1]).write(group)
+                        .write(XmlTags.FAILED[2]).write(value).write(XmlTags.FAILED[3]);
+            }
+            break;
+            default:
+                throw new IOException("Unknown operation " + op);
+        }
+    }
+
+    private void node(byte[][] tag) throws IOException {
+        long id = varint(), parent = varint();
+        String name = string();
+        long size = zigzag();
+        Object value = in.readUnsignedByte() == VALUE_INT ? (Object) zigzag() : string();
+        out.write(tag[0]).write(id).write(tag[1]).write(parent).write(tag[2]).write(name).write(tag[3]);
+        if (size < 0) {
+            out.write('?');
+        } else {
+            out.write(size);
+        }
+        out.write(tag[4]).write(value).write(tag[5]);
+        if (tag.length > 6) {
+            long depth = varint();
+            out.write(depth).write(tag[6]).write(varint()).write(tag[7]);
+        }
+    }
+
+    /**
+     * Write the opening tag <i>tag</i> and, unless <i>closer</i> is <tt>null</tt>, keep the element open
+     */
+    private void in(byte[][] tag, byte[] closer) throws IOException {
+        String idx = string();
+        int pf = (int) varint();
+        out.repeat('\t', pf).write(tag[0]).write(idx).write(tag[1]);
+        if (closer != null) {
+            push(closer, pf);
+        }
+    }
+
+    /**
+     * Keep an element open until its closing tag is read, called once every byte of the record is read
+     */
+    private void push(byte[] closer, int pf) {
+        if (open == closers.length) {
+            closers = Arrays.copyOf(closers, open * 2);
+            indents = Arrays.copyOf(indents, open * 2);
+        }
+        closers[open] = closer;
+        indents[open++] = pf;
+    }
+
+    private void pop() throws IOException {
+        if (open == 0) {
+            throw new IOException("Unbalanced closing tag");
+        }
+        open--;
+    }
+
+    private ByteEmitter indent() throws IOException {
+        return out.repeat('\t', (int) varint());
+    }
+
+    /**
+     * Read a domain into {@link #values}
+     *
+     * @return the size of the domain
+     */
+    private int domain() throws IOException {
+        long v = zigzag();
+        int n = 0;
+        if (in.readUnsignedByte() == BITSET) {
+            long span = varint();
+            for (long b = 0; b < span; b += 8) {
+                int bits = in.readUnsignedByte();
+                for (int k = 0; k < 8 && b + k < span; k++) {
+                    if ((bits & (1 << k)) != 0) {
+                        n = add(n, v + b + k);
+                    }
+                }
+            }
+        } else {
+            long runs = varint();
+            for (long r = 0; r < runs; r++) {
+                v += varint();
+                long len = varint() + 1;
+                for (long k = 0; k < len; k++) {
+                    n = add(n, v++);
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Write the <i>n</i> first values of {@link #values}, or their maximal intervals
+     */
+    private void values(int n) {
+        for (int k = 0, e; k < n; k = e) {
+            e = k + 1;
+            while (ranges && e < n && values[e] == values[e - 1] + 1) {
+                e++;
+            }
+            if (e - k > 2) {
+                out.write(values[k]).write('.').write('.').write(values[e - 1]).write(' ');
+            } else {
+                for (int j = k; j < e; j++) {
+                    out.write(values[j]).write(' ');
+                }
+            }
+        }
+    }
+
+    private int add(int n, long v) {
+        if (n == values.length) {
+            values = Arrays.copyOf(values, n * 3 / 2 + 1);
+        }
+        values[n] = v;
+        return n + 1;
+    }
+
+    private String string() throws IOException {
+        int ref = (int) varint();
+        if (ref < strings.size()) {
+            return strings.get(ref);
+        }
+        if (ref != strings.size()) {
+            throw new IOException("Invalid string reference " + ref);
+        }
+        byte[] bytes = new byte[(int) varint()];
+        in.readFully(bytes);
+        String s = new String(bytes, StandardCharsets.UTF_8);
+        strings.add(s);
+        return s;
+    }
+
+    private long varint() throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return v;
+            }
+        }
+        throw new IOException("Malformed variable-length integer");
+    }
+
+    private long zigzag() throws IOException {
+        long v = varint();
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /**
+     * A growable in-memory channel
+     */
+    private static final class Pending implements WritableByteChannel {
+
+        private byte[] buf = new byte[1 << 12];
+
+        private int count;
+
+        @Override
+        public int write(ByteBuffer src) {
+            int n = src.remaining();
+            if (count + n > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + n));
+            }
+            src.get(buf, count, n);
+            count += n;
+            return n;
+        }
+
+        /**
+         * Move the bytes written so far into <i>emitter</i>
+         */
+        void copyTo(ByteEmitter emitter) {
+            emitter.write(buf, 0, count);
+            count = 0;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean ranges = args.length > 0 && args[0].equals("-ranges");
+        int a = ranges ? 1 : 0;
+        if (args.length < a + 1 || args.length > a + 2) {
+            System.err.println("Usage: BinaryTraceConverter [-ranges] <binary file> [<xml file>]");
+            System.exit(1);
+        }
+        File in = new File(args[a]);
+        File out;
+        if (args.length == a + 2) {
+            out = new File(args[a + 1]);
+        } else {
+            String name = Codec.strip(in.getName());
+            if (name.endsWith(TraceFormat.BINARY.extension)) {
+                name = name.substring(0, name.length() - TraceFormat.BINARY.extension.length());
+            }
+            out = new File(in.getAbsoluteFile().getParentFile(), name + TraceFormat.XML.extension);
+        }
+        convert(in, out, ranges);
+    }
+}
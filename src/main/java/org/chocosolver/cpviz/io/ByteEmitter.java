@@ -0,0 +1,333 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * An unsynchronized UTF-8 emitter which writes pre-encoded fragments, strings and ASCII-formatted integers
+ * (or raw bytes and variable-length integers, for binary formats)
+ * into a reusable byte buffer, flushed into a channel when full.
+ * <br/>
+ * Nothing is allocated on the writing path, except for non-ASCII strings.
+ * Like a <code>PrintWriter</code>, <code>this</code> never throws: the first I/O error is kept
+ * (see {@link #checkError()}) and any further output is discarded, so is any output after {@link #close()}.
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public class ByteEmitter {
+
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private static final byte[] MIN_INT = Integer.toString(Integer.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+
+    private final byte[] buf;
+
+    private int pos;
+
+    private WritableByteChannel channel;
+
+    private IOException error;
+
+    /**
+     * Number of bytes handed over to the channel, may be read by another thread
+     */
+    private volatile long flushed;
+
+    /**
+     * Time spent writing into the channel, in nanoseconds, may be read by another thread
+     */
+    private volatile long ioNanos;
+
+    /**
+     * Create an emitter over <i>channel</i>
+     *
+     * @param channel  destination of the bytes
+     * @param capacity size of the internal buffer, in bytes
+     */
+    public ByteEmitter(WritableByteChannel channel, int capacity) {
+        if (capacity < 32) {
+            throw new IllegalArgumentException("capacity must be at least 32 bytes");
+        }
+        this.channel = channel;
+        this.buf = new byte[capacity];
+    }
+
+    /**
+     * Create an emitter writing into <i>file</i>, which is created or truncated.
+     *
+     * @param file destination file
+     * @return a new emitter
+     * @throws IOException if the file cannot be opened
+     */
+    public static ByteEmitter open(File file) throws IOException {
+        return new ByteEmitter(FileChannel.open(file.toPath(), CREATE, WRITE, TRUNCATE_EXISTING), DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create an emitter writing into <i>file</i>, which is created or truncated, compressed with <i>codec</i>.
+     *
+     * @param file  destination file
+     * @param codec compression format, <tt>null</tt> to write plain bytes
+     * @return a new emitter
+     * @throws IOException if the file cannot be opened
+     */
+    public static ByteEmitter open(File file, Codec codec) throws IOException {
+        if (codec == null) {
+            return open(file);
+        }
+        FileChannel channel = FileChannel.open(file.toPath(), CREATE, WRITE, TRUNCATE_EXISTING);
+        return new ByteEmitter(new CompressingChannel(channel, codec), DEFAULT_CAPACITY);
+    }
+
+    public final ByteEmitter write(byte[] fragment) {
+        return write(fragment, 0, fragment.length);
+    }
+
+    public final ByteEmitter write(byte[] bytes, int off, int len) {
+        while (len > buf.length - pos) {
+            int n = buf.length - pos;
+            System.arraycopy(bytes, off, buf, pos, n);
+            pos += n;
+            off += n;
+            len -= n;
+            flush();
+        }
+        System.arraycopy(bytes, off, buf, pos, len);
+        pos += len;
+        return this;
+    }
+
+    public final ByteEmitter write(char c) {
+        if (pos == buf.length) {
+            flush();
+        }
+        buf[pos++] = (byte) c;
+        return this;
+    }
+
+    /**
+     * Write <i>nb</i> times the byte <i>c</i>, typically an indentation
+     */
+    public final ByteEmitter repeat(char c, int nb) {
+        for (int i = 0; i < nb; i++) {
+            write(c);
+        }
+        return this;
+    }
+
+    /**
+     * Write <i>s</i>, UTF-8 encoded
+     */
+    public final ByteEmitter write(String s) {
+        if (s == null) {
+            s = "null";
+        }
+        int len = s.length();
+        if (len > buf.length - pos) {
+            flush();
+        }
+        if (len <= buf.length - pos) {
+            int p = pos;
+            for (int i = 0; i < len; i++) {
+                char c = s.charAt(i);
+                if (c >= 0x80) {
+                    return write(s.getBytes(StandardCharsets.UTF_8));
+                }
+                buf[p++] = (byte) c;
+            }
+            pos = p;
+            return this;
+        }
+        return write(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Write the decimal representation of <i>v</i>
+     */
+    public final ByteEmitter write(int v) {
+        if (v == Integer.MIN_VALUE) {
+            return write(MIN_INT);
+        }
+        if (buf.length - pos < 11) {
+            flush();
+        }
+        if (v < 0) {
+            buf[pos++] = '-';
+            v = -v;
+        }
+        int end = pos + digits(v);
+        int p = end;
+        do {
+            buf[--p] = (byte) ('0' + v % 10);
+            v /= 10;
+        } while (v != 0);
+        pos = end;
+        return this;
+    }
+
+    /**
+     * Write the decimal representation of <i>v</i>
+     */
+    public final ByteEmitter write(long v) {
+        if ((int) v == v) {
+            return write((int) v);
+        }
+        if (v == Long.MIN_VALUE) {
+            return write(MIN_LONG);
+        }
+        if (buf.length - pos < 20) {
+            flush();
+        }
+        if (v < 0) {
+            buf[pos++] = '-';
+            v = -v;
+        }
+        int end = pos;
+        for (long t = v; t != 0; t /= 10) {
+            end++;
+        }
+        int p = end;
+        while (v != 0) {
+            buf[--p] = (byte) ('0' + v % 10);
+            v /= 10;
+        }
+        pos = end;
+        return this;
+    }
+
+    /**
+     * Write <i>o</i>, integers are written without being turned into strings
+     */
+    public final ByteEmitter write(Object o) {
+        if (o instanceof Integer) {
+            return write(((Integer) o).intValue());
+        }
+        return write(String.valueOf(o));
+    }
+
+    /**
+     * Write the low-order byte of <i>b</i>, as is
+     */
+    public final ByteEmitter writeByte(int b) {
+        if (pos == buf.length) {
+            flush();
+        }
+        buf[pos++] = (byte) b;
+        return this;
+    }
+
+    /**
+     * Write <i>v</i> as an unsigned LEB128 variable-length integer: 7 bits per byte, low-order groups first
+     */
+    public final ByteEmitter varint(long v) {
+        if (buf.length - pos < 10) {
+            flush();
+        }
+        while ((v & ~0x7FL) != 0) {
+            buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buf[pos++] = (byte) v;
+        return this;
+    }
+
+    /**
+     * Write <i>v</i> as a zigzag-encoded variable-length integer, so that small negative values stay short
+     */
+    public final ByteEmitter zigzag(long v) {
+        return varint((v << 1) ^ (v >> 63));
+    }
+
+    /**
+     * @return number of bytes waiting in the buffer
+     */
+    public final int buffered() {
+        return pos;
+    }
+
+    /**
+     * @return number of bytes flushed so far, safe to call from any thread
+     */
+    public final long flushed() {
+        return flushed;
+    }
+
+    /**
+     * @return time spent writing into the channel so far, in nanoseconds, safe to call from any thread
+     */
+    public final long ioNanos() {
+        return ioNanos;
+    }
+
+    /**
+     * Write the buffered bytes into the channel.
+     */
+    public void flush() {
+        if (pos > 0) {
+            if (channel != null && error == null) {
+                long start = System.nanoTime();
+                try {
+                    ByteBuffer b = ByteBuffer.wrap(buf, 0, pos);
+                    while (b.hasRemaining()) {
+                        channel.write(b);
+                    }
+                } catch (IOException e) {
+                    error = e;
+                }
+                ioNanos += System.nanoTime() - start;
+            }
+            flushed += pos;
+            pos = 0;
+        }
+    }
+
+    /**
+     * Flush then close the channel. Further output is discarded.
+     */
+    public void close() {
+        flush();
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                if (error == null) {
+                    error = e;
+                }
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * @return the first I/O error met, or <tt>null</tt>
+     */
+    public final IOException checkError() {
+        return error;
+    }
+
+    private static int digits(int v) {
+        int d = 1;
+        while (v >= 10) {
+            v /= 10;
+            d++;
+        }
+        return d;
+    }
+}
@@ -0,0 +1,125 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz.io;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A compression format of the trace files.
+ * <br/>
+ * Files are compressed by independent blocks (see {@link CompressingChannel}), so a codec must produce
+ * blocks whose concatenation is a valid stream, as gzip members or zstd frames are.
+ * <br/>
+ * Besides {@link #GZIP}, codecs are plugged with {@link #register(Codec)}, for instance to wrap a zstd library;
+ * {@link #open(File)} then recognizes their files by their first bytes.
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public interface Codec {
+
+    /**
+     * Gzip, from the JDK, favouring speed over ratio
+     */
+    Codec GZIP = new GzipCodec(1);
+
+    /**
+     * @return extension appended to the names of the compressed files, such as ".gz"
+     */
+    String extension();
+
+    /**
+     * @param header the first bytes of a file
+     * @param len    number of bytes in <i>header</i>, at most 16
+     * @return <tt>true</tt> if the file is compressed with <code>this</code>
+     */
+    boolean recognizes(byte[] header, int len);
+
+    /**
+     * Compress a block of <i>len</i> bytes of <i>data</i>, starting at <i>off</i>, independently of the other blocks.
+     * May be called concurrently.
+     *
+     * @return the compressed block
+     */
+    byte[] compress(byte[] data, int off, int len) throws IOException;
+
+    /**
+     * @param in a compressed stream, made of concatenated blocks
+     * @return the decompressed stream
+     */
+    InputStream decompress(InputStream in) throws IOException;
+
+    /**
+     * Make <i>codec</i> known to {@link #open(File)}
+     */
+    static void register(Codec codec) {
+        Registry.CODECS.add(0, codec);
+    }
+
+    /**
+     * Open <i>file</i> for reading, decompressing it if it has been written with a known codec.
+     *
+     * @param file a trace file, compressed or not
+     * @return a buffered stream of the decompressed content
+     * @throws IOException if the file cannot be opened
+     */
+    static InputStream open(File file) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(Files.newInputStream(file.toPath()), 1 << 16);
+        try {
+            byte[] header = new byte[16];
+            in.mark(header.length);
+            int len = 0, n;
+            while (len < header.length && (n = in.read(header, len, header.length - len)) > 0) {
+                len += n;
+            }
+            in.reset();
+            for (Codec codec : Registry.CODECS) {
+                if (codec.recognizes(header, len)) {
+                    return new BufferedInputStream(codec.decompress(in), 1 << 16);
+                }
+            }
+            return in;
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Remove the extension of any known codec from <i>name</i>
+     */
+    static String strip(String name) {
+        for (Codec codec : Registry.CODECS) {
+            if (name.endsWith(codec.extension())) {
+                return name.substring(0, name.length() - codec.extension().length());
+            }
+        }
+        return name;
+    }
+
+    /**
+     * Known codecs, the last registered first
+     */
+    final class Registry {
+        private static final List<Codec> CODECS = new CopyOnWriteArrayList<>();
+
+        static {
+            CODECS.add(GZIP);
+        }
+
+        private Registry() {
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A channel which cuts the bytes written into fixed-size blocks, compresses each block independently
+ * on a small pool of worker threads shared by every channel, and writes the compressed blocks, in order,
+ * into another channel.
+ * <br/>
+ * The thread writing into <code>this</code> only waits when too many blocks are being compressed.
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public final class CompressingChannel implements WritableByteChannel {
+
+    private static final int BLOCK_SIZE = 1 << 20;
+
+    private static final int WORKERS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(WORKERS, r -> {
+        Thread thread = new Thread(r, "cpviz-compression");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final WritableByteChannel out;
+
+    private final Codec codec;
+
+    private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+
+    private final int blockSize;
+
+    private byte[] block;
+
+    private int pos;
+
+    private boolean open = true;
+
+    /**
+     * @param out   destination of the compressed blocks, closed with <code>this</code>
+     * @param codec compression format
+     */
+    public CompressingChannel(WritableByteChannel out, Codec codec) {
+        this(out, codec, BLOCK_SIZE);
+    }
+
+    /**
+     * @param out       destination of the compressed blocks, closed with <code>this</code>
+     * @param codec     compression format
+     * @param blockSize number of bytes compressed at once
+     */
+    public CompressingChannel(WritableByteChannel out, Codec codec, int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("blockSize must be positive");
+        }
+        this.out = out;
+        this.codec = codec;
+        this.blockSize = blockSize;
+        this.block = new byte[blockSize];
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        int n = src.remaining();
+        while (src.hasRemaining()) {
+            int len = Math.min(src.remaining(), block.length - pos);
+            src.get(block, pos, len);
+            pos += len;
+            if (pos == block.length) {
+                submit();
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Compress the last block, wait for every block to be written, then close the destination channel.
+     */
+    @Override
+    public void close() throws IOException {
+        if (open) {
+            open = false;
+            try {
+                if (pos > 0) {
+                    submit();
+                }
+                while (!pending.isEmpty()) {
+                    writeHead();
+                }
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    private void submit() throws IOException {
+        final byte[] data = block;
+        final int len = pos;
+        pending.addLast(POOL.submit(() -> codec.compress(data, 0, len)));
+        block = new byte[blockSize];
+        pos = 0;
+        while (!pending.isEmpty() && (pending.size() > 2 * WORKERS || pending.peekFirst().isDone())) {
+            writeHead();
+        }
+    }
+
+    private void writeHead() throws IOException {
+        byte[] compressed;
+        try {
+            compressed = pending.removeFirst().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+        ByteBuffer b = ByteBuffer.wrap(compressed);
+        while (b.hasRemaining()) {
+            out.write(b);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz.io;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.chocosolver.cpviz.CPVizConstant.V_STATE_TAG_IN;
+
+/**
+ * Rebuild the full states of a visualization file written with delta states
+ * (see {@link org.chocosolver.cpviz.visualizers.DeltaWriter}).
+ * <br/>
+ * The output is the visualization file that would have been written without delta states.
+ * Only the states of the current branch are kept in memory. Compressed files are read transparently.
+ * <br/>
+ * Usage: <code>DeltaDecoder delta.xml full.xml</code>
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public final class DeltaDecoder {
+
+    private static final Pattern STATE = Pattern.compile("\\s*<state id=\"(\\d+)\" tree_node=\"(-?\\d+)\"(?: parent=\"(\\d+)\")? >");
+
+    private static final Pattern SKIP = Pattern.compile("\\s*<skip count=\"(\\d+)\" />");
+
+    /**
+     * Ids and elements of the states of the current branch
+     */
+    private final List<Long> ids = new ArrayList<>();
+
+    private final List<List<String>> elements = new ArrayList<>();
+
+    private List<String> parent, current;
+
+    private int cursor;
+
+    private DeltaDecoder() {
+    }
+
+    /**
+     * Rebuild the full states of <i>in</i> into <i>out</i>
+     *
+     * @param in  a visualization file with delta states, compressed or not
+     * @param out the visualization file with full states
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void decode(File in, File out) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Codec.open(in), StandardCharsets.UTF_8));
+             BufferedWriter writer = Files.newBufferedWriter(out.toPath(), StandardCharsets.UTF_8)) {
+            decode(reader, writer);
+        }
+    }
+
+    /**
+     * Rebuild the full states read from <i>in</i> and write them into <i>out</i>
+     *
+     * @param in  a visualization, with delta states
+     * @param out the visualization, with full states
+     * @throws IOException if <i>in</i> cannot be read or <i>out</i> cannot be written
+     */
+    public static void decode(BufferedReader in, Writer out) throws IOException {
+        new DeltaDecoder().run(in, out, -1);
+    }
+
+    /**
+     * Rebuild a single state of a visualization file written with delta states
+     *
+     * @param in      a visualization file with delta states
+     * @param stateId the state to rebuild
+     * @return the full state, from its <code>state</code> tag to its closing tag, or <tt>null</tt> if not found
+     * @throws IOException if <i>in</i> cannot be read
+     */
+    public static String state(File in, long stateId) throws IOException {
+        StringWriter out = new StringWriter();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Codec.open(in), StandardCharsets.UTF_8))) {
+            if (!new DeltaDecoder().run(reader, out, stateId)) {
+                return null;
+            }
+        }
+        return out.toString();
+    }
+
+    /**
+     * @return <tt>true</tt> if the state <i>only</i> has been found, when <i>only</i> is not negative
+     */
+    private boolean run(BufferedReader in, Writer out, long only) throws IOException {
+        boolean print = only < 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            Matcher m;
+            if (line.contains("<state ") && (m = STATE.matcher(line)).lookingAt()) {
+                long id = Long.parseLong(m.group(1));
+                stateIn(id, m.group(3) == null ? -1 : Long.parseLong(m.group(3)));
+                if (only >= 0) {
+                    print = id == only;
+                }
+                if (print) {
+                    out.write(String.format(V_STATE_TAG_IN, m.group(1), m.group(2)));
+                }
+            } else if (line.contains("<skip ") && (m = SKIP.matcher(line)).lookingAt()) {
+                int n = Integer.parseInt(m.group(1));
+                if (parent == null || cursor + n > parent.size()) {
+                    throw new IOException("Inconsistent delta state: " + line);
+                }
+                for (int i = 0; i < n; i++) {
+                    String e = parent.get(cursor++);
+                    current.add(e);
+                    if (print) {
+                        out.write(e);
+                        out.write('\n');
+                    }
+                }
+            } else {
+                if (current != null && isElement(line)) {
+                    current.add(line);
+                    cursor++;
+                }
+                if (print) {
+                    out.write(line);
+                    out.write('\n');
+                }
+                if (only >= 0 && print && line.contains("</state>")) {
+                    return true;
+                }
+            }
+        }
+        return only < 0;
+    }
+
+    private void stateIn(long id, long parentId) throws IOException {
+        int p = ids.size() - 1;
+        if (parentId >= 0) {
+            while (p >= 0 && ids.get(p) != parentId) {
+                p--;
+            }
+            if (p < 0) {
+                throw new IOException("Unknown parent state " + parentId + " of state " + id);
+            }
+        } else {
+            p = -1;
+        }
+        while (ids.size() > p + 1) {
+            ids.remove(ids.size() - 1);
+            elements.remove(elements.size() - 1);
+        }
+        parent = p < 0 ? null : elements.get(p);
+        current = new ArrayList<>(parent == null ? 64 : parent.size());
+        ids.add(id);
+        elements.add(current);
+        cursor = 0;
+    }
+
+    private static boolean isElement(String line) {
+        String t = line.trim();
+        return t.startsWith("<dvar ") || t.startsWith("<integer ") || t.startsWith("<tile ")
+                || t.startsWith("<svar ") || t.startsWith("<sinteger ");
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: DeltaDecoder <delta visualization file> <full visualization file>");
+            System.exit(1);
+        }
+        decode(new File(args[0]), new File(args[1]));
+    }
+}
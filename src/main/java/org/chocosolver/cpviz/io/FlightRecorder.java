@@ -0,0 +1,169 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz.io;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A ring buffer of the last {@link TraceEvent}s of a search, which are only handed over to the <i>handler</i>
+ * when {@link #fire()} is called: events overwritten before that are lost, as in a flight recorder.
+ * <br/>
+ * The nodes of a window are consecutive, and so are the windows. A node whose parent has never been handed over
+ * is attached to the root node, so that the tree written stays well-formed.
+ * Everything runs on the search thread.
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public final class FlightRecorder implements TraceBuffer {
+
+    private final TraceEvent[] ring;
+
+    private final int mask;
+
+    private final Consumer<TraceEvent> handler;
+
+    private final TraceEvent discarded = new TraceEvent();
+
+    private long head, tail;
+
+    private boolean closed;
+
+    /**
+     * Ranges of the nodes handed over, [persisted[2k], persisted[2k+1]], in increasing order
+     */
+    private long[] persisted = new long[16];
+
+    private int nbRanges;
+
+    private long overwritten;
+
+    /**
+     * @param capacity number of events kept, rounded up to the next power of 2
+     * @param handler  consumes events, when fired
+     */
+    public FlightRecorder(int capacity, Consumer<TraceEvent> handler) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("capacity must be at least 2");
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.ring = new TraceEvent[size];
+        for (int i = 0; i < size; i++) {
+            ring[i] = new TraceEvent();
+        }
+        this.mask = size - 1;
+        this.handler = handler;
+    }
+
+    /**
+     * Claim the next slot of the ring, overwriting the oldest event if the ring is full.
+     */
+    @Override
+    public TraceEvent claim(byte kind) {
+        if (closed) {
+            discarded.reset(kind);
+            return discarded;
+        }
+        if (tail - head > mask) {
+            head++;
+            overwritten++;
+        }
+        TraceEvent event = ring[(int) (tail & mask)];
+        event.reset(kind);
+        return event;
+    }
+
+    @Override
+    public boolean acceptState(long nid) {
+        return true;
+    }
+
+    @Override
+    public void publish() {
+        if (!closed) {
+            tail++;
+        }
+    }
+
+    /**
+     * Hand the events of the ring over to the handler, in order, and empty the ring
+     */
+    public void fire() {
+        long first = -1, last = -1;
+        for (long h = head; h < tail; h++) {
+            TraceEvent event = ring[(int) (h & mask)];
+            if (event.kind == TraceEvent.TRY || event.kind == TraceEvent.FAIL || event.kind == TraceEvent.RESTART) {
+                if (first < 0) {
+                    first = event.id;
+                }
+                last = event.id;
+                if (event.parent < first && !persisted(event.parent)) {
+                    event.parent = 0;
+                }
+            }
+            handler.accept(event);
+        }
+        head = tail;
+        if (first >= 0) {
+            if (nbRanges > 0 && persisted[2 * nbRanges - 1] + 1 == first) {
+                persisted[2 * nbRanges - 1] = last;
+            } else {
+                if (2 * nbRanges == persisted.length) {
+                    persisted = Arrays.copyOf(persisted, persisted.length * 2);
+                }
+                persisted[2 * nbRanges] = first;
+                persisted[2 * nbRanges + 1] = last;
+                nbRanges++;
+            }
+        }
+    }
+
+    private boolean persisted(long node) {
+        if (node == 0) {
+            return true;
+        }
+        int lo = 0, hi = nbRanges - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (persisted[2 * mid + 1] < node) {
+                lo = mid + 1;
+            } else if (persisted[2 * mid] > node) {
+                hi = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drop the events not handed over yet
+     */
+    @Override
+    public void close() {
+        closed = true;
+        head = tail;
+    }
+
+    /**
+     * @return 0, states are never dropped on recording
+     */
+    @Override
+    public long getDroppedStates() {
+        return 0;
+    }
+
+    /**
+     * @return number of events overwritten before being handed over
+     */
+    public long getOverwritten() {
+        return overwritten;
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A {@link Codec} writing each block as a gzip member, a gzip file being a concatenation of members.
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public final class GzipCodec implements Codec {
+
+    private final int level;
+
+    /**
+     * @param level compression level, from 1 (fastest) to 9 (smallest)
+     */
+    public GzipCodec(int level) {
+        if (level < 1 || level > 9) {
+            throw new IllegalArgumentException("level must be in [1, 9]");
+        }
+        this.level = level;
+    }
+
+    @Override
+    public String extension() {
+        return ".gz";
+    }
+
+    @Override
+    public boolean recognizes(byte[] header, int len) {
+        return len >= 2 && header[0] == (byte) 0x1F && header[1] == (byte) 0x8B;
+    }
+
+    @Override
+    public byte[] compress(byte[] data, int off, int len) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(len / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes, 1 << 16) {
+            {
+                def.setLevel(level);
+            }
+        }) {
+            gzip.write(data, off, len);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public InputStream decompress(InputStream in) throws IOException {
+        return new GZIPInputStream(in, 1 << 16);
+    }
+}
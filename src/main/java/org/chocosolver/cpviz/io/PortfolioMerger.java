@@ -0,0 +1,183 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz.io;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.chocosolver.cpviz.CPVizConstant.*;
+
+/**
+ * Merge the XML trees and visualizations written by the workers of a portfolio into a single tree and
+ * a single visualization.
+ * <br/>
+ * The root node of each worker becomes a child of a new root node, named {@link org.chocosolver.cpviz.CPVizConstant#WORKER}
+ * whose value is the index of the worker, and every node of the tree is tagged with a <code>worker</code> attribute.
+ * A worker whose tree is empty, because it has never started, still gets its node.
+ * Nodes, states and visualizers are renumbered, worker after worker, so that identifiers stay unique.
+ * Compressed files are read transparently, delta states are kept as is.
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public final class PortfolioMerger {
+
+    private static final Pattern NODE = Pattern.compile("\t<(try|fail) id=\"(\\d+)\" parent=\"(\\d+)\"(.*) />");
+
+    private static final Pattern SUCC = Pattern.compile("\t<succ id=\"(\\d+)\" />");
+
+    private static final Pattern VISUALIZER = Pattern.compile("\t<visualizer id=\"(\\d+)\"(.*)");
+
+    private static final Pattern STATE = Pattern.compile("\t<state id=\"(\\d+)\" tree_node=\"(-?\\d+)\"(?: parent=\"(\\d+)\")? >");
+
+    private static final Pattern VISUALIZER_STATE = Pattern.compile("\t\t<visualizer_state id=\"(\\d+)\" >");
+
+    private PortfolioMerger() {
+    }
+
+    /**
+     * Merge the trees <i>trees</i> into <i>tree</i>, and the visualizations <i>visualizations</i>, if any,
+     * into <i>visualization</i>.
+     *
+     * @param trees          the tree of each worker
+     * @param visualizations the visualization of each worker, <tt>null</tt> if there is none
+     * @param tree           the merged tree
+     * @param visualization  the merged visualization, ignored if <i>visualizations</i> is <tt>null</tt>
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void merge(File[] trees, File[] visualizations, File tree, File visualization) throws IOException {
+        long[] bases = new long[trees.length];
+        try (BufferedWriter out = Files.newBufferedWriter(tree.toPath(), StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            out.write(T_TREE_TAG_IN);
+            out.write(T_ROOT_TAG);
+            long base = 1;
+            for (int w = 0; w < trees.length; w++) {
+                bases[w] = base;
+                base += tree(trees[w], w, trees.length, base, out) + 1;
+            }
+            out.write(T_TREE_TAG_OUT);
+        }
+        if (visualizations != null) {
+            try (BufferedWriter out = Files.newBufferedWriter(visualization.toPath(), StandardCharsets.UTF_8)) {
+                out.write(HEADER);
+                out.write(V_VISUALIZATION_TAG_IN);
+                // visualizers are declared before any state
+                int[] vbases = new int[visualizations.length];
+                for (int w = 0, vbase = 0; w < visualizations.length; w++) {
+                    vbases[w] = vbase;
+                    vbase += visualizers(visualizations[w], vbase, out);
+                }
+                for (int w = 0, sbase = 0; w < visualizations.length; w++) {
+                    sbase += states(visualizations[w], bases[w], sbase, vbases[w], out);
+                }
+                out.write(V_VISUALIZATION_TAG_OUT);
+            }
+        }
+    }
+
+    /**
+     * Copy the nodes of the tree of worker <i>w</i>, its root node being renumbered <i>base</i>
+     *
+     * @return the largest node identifier of the tree of worker <i>w</i>
+     */
+    private static long tree(File in, int w, int workers, long base, Writer out) throws IOException {
+        long max = 0;
+        // written even if the worker has never started, which leaves its tree empty
+        out.write("\t<try id=\"" + base + "\" parent=\"0\" name=\"" + WORKER + "\" size=\"" + workers
+                + "\" value=\"" + w + "\" worker=\"" + w + "\" />\n");
+        try (BufferedReader reader = reader(in)) {
+            String line;
+            Matcher m;
+            while ((line = reader.readLine()) != null) {
+                if ((m = NODE.matcher(line)).matches()) {
+                    long id = Long.parseLong(m.group(2));
+                    max = Math.max(max, id);
+                    out.write("\t<" + m.group(1) + " id=\"" + (base + id) + "\" parent=\"" + (base + Long.parseLong(m.group(3)))
+                            + "\"" + m.group(4) + " worker=\"" + w + "\" />\n");
+                } else if ((m = SUCC.matcher(line)).matches()) {
+                    out.write("\t<succ id=\"" + (base + Long.parseLong(m.group(1))) + "\" worker=\"" + w + "\" />\n");
+                }
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Copy the visualizers declared in the visualization of a worker, renumbered from <i>vbase</i> + 1
+     *
+     * @return the number of visualizers declared
+     */
+    private static int visualizers(File in, int vbase, Writer out) throws IOException {
+        int n = 0;
+        // within the declaration of a visualizer with static arguments
+        boolean statics = false;
+        try (BufferedReader reader = reader(in)) {
+            String line;
+            Matcher m;
+            while ((line = reader.readLine()) != null && !line.startsWith("\t<state ")) {
+                if ((m = VISUALIZER.matcher(line)).matches()) {
+                    int id = Integer.parseInt(m.group(1));
+                    n = Math.max(n, id);
+                    out.write("\t<visualizer id=\"" + (vbase + id) + "\"" + m.group(2) + "\n");
+                    statics = !line.endsWith("/>");
+                } else if (statics) {
+                    out.write(line);
+                    out.write('\n');
+                    statics = !line.equals("\t</visualizer>");
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Copy the states of the visualization of a worker, renumbered from <i>sbase</i> + 1
+     *
+     * @return the largest state identifier of the visualization
+     */
+    private static long states(File in, long base, long sbase, int vbase, Writer out) throws IOException {
+        long max = 0;
+        boolean inState = false;
+        try (BufferedReader reader = reader(in)) {
+            String line;
+            Matcher m;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("\t<state ") && (m = STATE.matcher(line)).matches()) {
+                    long id = Long.parseLong(m.group(1));
+                    long node = Long.parseLong(m.group(2));
+                    max = Math.max(max, id);
+                    String treeNode = Long.toString(node < 0 ? node : base + node);
+                    if (m.group(3) == null) {
+                        out.write(String.format(V_STATE_TAG_IN, sbase + id, treeNode));
+                    } else {
+                        out.write(String.format(V_STATE_DELTA_TAG_IN, sbase + id, treeNode, sbase + Long.parseLong(m.group(3))));
+                    }
+                    inState = true;
+                } else if (inState) {
+                    // the header and the visualizers have already been written
+                    if ((m = VISUALIZER_STATE.matcher(line)).matches()) {
+                        out.write(String.format(V_VISUALIZER_STATE_TAG_IN, vbase + Integer.parseInt(m.group(1))));
+                    } else if (!line.startsWith("</visualization>")) {
+                        out.write(line);
+                        out.write('\n');
+                    }
+                }
+            }
+        }
+        return max;
+    }
+
+    private static BufferedReader reader(File in) throws IOException {
+        return new BufferedReader(new InputStreamReader(Codec.open(in), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz.io;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Read the domains, and the sets, of a visualization file written as maximal intervals, such as <code>1..998 1000</code>
+ * (see {@link org.chocosolver.cpviz.visualizers.Writer#setRangeDomains(boolean)}),
+ * and rewrite them as the lists of values read by cpviz.
+ * <br/>
+ * Every other line is copied as is. Compressed files are read transparently.
+ * <br/>
+ * Usage: <code>RangeDecoder ranges.xml values.xml</code>
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public final class RangeDecoder {
+
+    /**
+     * An interval, the bounds of a bounded domain (<code>lb .. ub</code>) being left as they are
+     */
+    private static final Pattern RANGE = Pattern.compile("(-?\\d+)\\.\\.(-?\\d+)");
+
+    private RangeDecoder() {
+    }
+
+    /**
+     * Rewrite the domains and the sets of <i>in</i> as lists of values, into <i>out</i>
+     *
+     * @param in  a visualization file with intervals, compressed or not
+     * @param out the visualization file with values
+     * @throws IOException if a file cannot be read or written
+     */
+    public static void decode(File in, File out) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Codec.open(in), StandardCharsets.UTF_8));
+             BufferedWriter writer = Files.newBufferedWriter(out.toPath(), StandardCharsets.UTF_8)) {
+            decode(reader, writer);
+        }
+    }
+
+    /**
+     * Rewrite the domains and the sets read from <i>in</i> as lists of values, into <i>out</i>
+     *
+     * @param in  a visualization, with intervals
+     * @param out the visualization, with values
+     * @throws IOException if <i>in</i> cannot be read or <i>out</i> cannot be written
+     */
+    public static void decode(BufferedReader in, Writer out) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.contains("..") && isDomain(line.trim())) {
+                Matcher m = RANGE.matcher(line);
+                int last = 0;
+                while (m.find()) {
+                    out.write(line, last, m.start() - last);
+                    long a = Long.parseLong(m.group(1)), b = Long.parseLong(m.group(2));
+                    for (long v = a; v < b; v++) {
+                        out.write(Long.toString(v));
+                        out.write(' ');
+                    }
+                    out.write(Long.toString(b));
+                    last = m.end();
+                }
+                out.write(line, last, line.length() - last);
+            } else {
+                out.write(line);
+            }
+            out.write('\n');
+        }
+    }
+
+    private static boolean isDomain(String t) {
+        return t.startsWith("<dvar ") || t.startsWith("<svar ") || t.startsWith("<sinteger ");
+    }
+
+    /**
+     * Parse the <code>domain</code> attribute of a <code>dvar</code> tag: a list of values and intervals
+     * such as <code>1..998 1000</code>, or bounds such as <code>1 .. 1000</code>
+     *
+     * @param domain the value of the attribute
+     * @return the bounds of the intervals of the domain, in increasing order: [intervals[2k], intervals[2k+1]]
+     */
+    public static long[] intervals(String domain) {
+        String[] tokens = domain.replace(" .. ", "..").trim().split("\\s+");
+        long[] intervals = new long[2 * tokens.length];
+        int n = 0;
+        for (String token : tokens) {
+            if (token.isEmpty()) {
+                continue;
+            }
+            int dots = token.indexOf("..", 1);
+            long a = Long.parseLong(dots < 0 ? token : token.substring(0, dots));
+            long b = dots < 0 ? a : Long.parseLong(token.substring(dots + 2));
+            if (n > 0 && intervals[n - 1] + 1 == a) {
+                intervals[n - 1] = b;
+            } else {
+                intervals[n++] = a;
+                intervals[n++] = b;
+            }
+        }
+        return Arrays.copyOf(intervals, n);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: RangeDecoder <visualization file with intervals> <visualization file with values>");
+            System.exit(1);
+        }
+        decode(new File(args[0]), new File(args[1]));
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz.io;
+
+import org.chocosolver.cpviz.CPVizConstant;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static java.nio.file.StandardOpenOption.*;
+import static org.chocosolver.cpviz.io.SegmentedChannel.*;
+
+/**
+ * Rebuild a well-formed file from the segments left by a {@link SegmentedChannel} which has not been closed,
+ * for instance because the solver was killed.
+ * <br/>
+ * The committed bytes of the segments are concatenated, then completed with the trailer recorded in the headers,
+ * such as the closing <code>tree</code> or <code>visualization</code> tag.
+ * The configuration file, written line by line, only misses its closing tag, which is appended.
+ * <br/>
+ * Usage: <code>SegmentRecovery tree-xxx.xml [visualization-xxx.xml configuration-xxx.xml ...]</code>,
+ * the names being the ones of the files to rebuild, without the segment suffix.
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public final class SegmentRecovery {
+
+    private SegmentRecovery() {
+    }
+
+    /**
+     * Rebuild <i>file</i> from its segments, which are left untouched.
+     *
+     * @param file the file to rebuild
+     * @return the last committed node, -1 if none
+     * @throws IOException if there is no segment, a segment is corrupted, or <i>file</i> cannot be written
+     */
+    public static long recover(File file) throws IOException {
+        if (!segment(file, 0).exists()) {
+            throw new IOException("No segment found for " + file);
+        }
+        long last = -1;
+        boolean closed = false;
+        byte[] trailer = null;
+        try (FileChannel out = FileChannel.open(file.toPath(), CREATE, WRITE, TRUNCATE_EXISTING)) {
+            for (int i = 0; segment(file, i).exists(); i++) {
+                File f = segment(file, i);
+                try (FileChannel in = FileChannel.open(f.toPath(), READ)) {
+                    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                    while (header.hasRemaining()) {
+                        if (in.read(header) < 0) {
+                            throw new IOException("Truncated header in " + f);
+                        }
+                    }
+                    header.flip();
+                    byte[] magic = new byte[MAGIC.length];
+                    header.get(magic);
+                    if (!Arrays.equals(magic, MAGIC) || header.getInt() != VERSION || header.getInt(INDEX) != i) {
+                        throw new IOException("Not a segment, or a corrupted one: " + f);
+                    }
+                    if (trailer == null) {
+                        trailer = new byte[header.getInt(TRAILER_LENGTH)];
+                        header.position(TRAILER);
+                        header.get(trailer);
+                    }
+                    long committed = header.getLong(COMMITTED);
+                    if (committed > 0) {
+                        last = Math.max(last, header.getLong(LAST_NODE));
+                    }
+                    closed = header.getInt(CLOSED) != 0;
+                    long p = HEADER_SIZE, end = HEADER_SIZE + committed;
+                    while (p < end) {
+                        p += in.transferTo(p, end - p, out);
+                    }
+                }
+            }
+            if (!closed) {
+                out.write(ByteBuffer.wrap(trailer));
+            }
+        }
+        return last;
+    }
+
+    /**
+     * Append the closing tag of a configuration file left open, for instance because the solver was killed.
+     *
+     * @param file a configuration file
+     * @return <tt>true</tt> if the closing tag was missing
+     * @throws IOException if <i>file</i> cannot be read or written
+     */
+    public static boolean closeConfiguration(File file) throws IOException {
+        byte[] trailer = CPVizConstant.C_CONF_TAG_OUT.getBytes(StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(file.toPath(), READ, WRITE)) {
+            long size = channel.size();
+            if (size >= trailer.length) {
+                ByteBuffer tail = ByteBuffer.allocate(trailer.length);
+                while (tail.hasRemaining()) {
+                    if (channel.read(tail, size - trailer.length + tail.position()) < 0) {
+                        break;
+                    }
+                }
+                if (Arrays.equals(tail.array(), trailer)) {
+                    return false;
+                }
+            }
+            ByteBuffer b = ByteBuffer.wrap(trailer);
+            while (b.hasRemaining()) {
+                channel.write(b, size + b.position());
+            }
+        }
+        return true;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: SegmentRecovery <file> [<file> ...]");
+            System.exit(1);
+        }
+        for (String name : args) {
+            File file = new File(name);
+            if (file.getName().startsWith("configuration-")) {
+                System.out.println(name + (closeConfiguration(file) ? " closed" : " already closed"));
+            } else {
+                long last = recover(file);
+                System.out.println(name + " recovered up to node " + last);
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * A channel writing into fixed-size memory-mapped segment files, <i>file</i>.0, <i>file</i>.1, ...,
+ * a new segment being started when the current one is full.
+ * <br/>
+ * Each segment starts with a header which records how many of its bytes are committed and the last committed node.
+ * Bytes are committed by {@link #commit(long)}, once a node has been entirely written, so that the committed bytes
+ * always end on a node boundary. Since the segments are mapped, what has been written survives the process
+ * being killed: {@link SegmentRecovery} then rebuilds <i>file</i> from the committed bytes,
+ * completed by the <i>trailer</i> given at construction.
+ * On {@link #close()}, the segments are merged into <i>file</i> and deleted.
+ * <br/>
+ * Header layout, in big-endian order: magic "CPVS" (4 bytes), version (int), segment index (int),
+ * trailer length (int), committed bytes (long), last committed node (long), closed (int),
+ * then the trailer, up to {@link #HEADER_SIZE}.
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public final class SegmentedChannel implements WritableByteChannel {
+
+    static final byte[] MAGIC = {'C', 'P', 'V', 'S'};
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 128;
+    static final int INDEX = 8, TRAILER_LENGTH = 12, COMMITTED = 16, LAST_NODE = 24, CLOSED = 32, TRAILER = 36;
+
+    private final File file;
+
+    private final long segmentSize;
+
+    private final byte[] trailer;
+
+    /**
+     * Segments filled since the last commit, the last one being the current segment
+     */
+    private final List<MappedByteBuffer> uncommitted = new ArrayList<>();
+
+    private MappedByteBuffer current;
+
+    private int segments;
+
+    private boolean open = true;
+
+    /**
+     * @param file        the file to write, segments are named after it
+     * @param segmentSize size of a segment file, header included
+     * @param trailer     bytes to append to the committed bytes when recovering <i>file</i>
+     * @throws IOException if the first segment cannot be created
+     */
+    public SegmentedChannel(File file, long segmentSize, byte[] trailer) throws IOException {
+        if (segmentSize <= HEADER_SIZE || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("segment size must be in ]" + HEADER_SIZE + ", 2^31[");
+        }
+        if (trailer.length > HEADER_SIZE - TRAILER) {
+            throw new IllegalArgumentException("trailer is too long");
+        }
+        this.file = file;
+        this.segmentSize = segmentSize;
+        this.trailer = trailer;
+        // segments left by a previous run would be taken for ours by the recovery
+        for (int i = 0; segment(file, i).exists(); i++) {
+            segment(file, i).delete();
+        }
+        roll();
+    }
+
+    /**
+     * @return the name of the segment <i>index</i> of <i>file</i>
+     */
+    static File segment(File file, int index) {
+        return new File(file.getPath() + "." + index);
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        if (!open) {
+            throw new IOException("closed");
+        }
+        int n = src.remaining();
+        while (src.hasRemaining()) {
+            if (!current.hasRemaining()) {
+                roll();
+            }
+            if (src.remaining() <= current.remaining()) {
+                current.put(src);
+            } else {
+                ByteBuffer part = src.duplicate();
+                part.limit(part.position() + current.remaining());
+                current.put(part);
+                src.position(part.position());
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Commit every byte written so far, which ends the node <i>node</i>. Does nothing once closed.
+     */
+    public void commit(long node) {
+        if (!open) {
+            return;
+        }
+        for (int i = 0; i < uncommitted.size(); i++) {
+            MappedByteBuffer segment = uncommitted.get(i);
+            segment.putLong(LAST_NODE, node);
+            segment.putLong(COMMITTED, segment.position() - HEADER_SIZE);
+        }
+        uncommitted.clear();
+        uncommitted.add(current);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Mark the segments as closed, merge them into the file then delete them.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!open) {
+            return;
+        }
+        open = false;
+        for (int i = 0; i < uncommitted.size(); i++) {
+            MappedByteBuffer segment = uncommitted.get(i);
+            segment.putLong(COMMITTED, segment.position() - HEADER_SIZE);
+        }
+        current.putInt(CLOSED, 1);
+        uncommitted.clear();
+        long length = current.position();
+        current = null;
+        try (FileChannel out = FileChannel.open(file.toPath(), CREATE, WRITE, TRUNCATE_EXISTING)) {
+            for (int i = 0; i < segments; i++) {
+                File f = segment(file, i);
+                try (FileChannel in = FileChannel.open(f.toPath(), READ)) {
+                    long end = i == segments - 1 ? length : segmentSize;
+                    long p = HEADER_SIZE;
+                    while (p < end) {
+                        p += in.transferTo(p, end - p, out);
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < segments; i++) {
+            segment(file, i).delete();
+        }
+    }
+
+    private void roll() throws IOException {
+        try (FileChannel channel = FileChannel.open(segment(file, segments).toPath(), CREATE, READ, WRITE, TRUNCATE_EXISTING)) {
+            current = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        current.put(MAGIC).putInt(VERSION).putInt(segments).putInt(trailer.length)
+                .putLong(0).putLong(-1).putInt(0).put(trailer);
+        current.position(HEADER_SIZE);
+        uncommitted.add(current);
+        segments++;
+    }
+}
@@ -0,0 +1,48 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz.io;
+
+/**
+ * Where the search thread records {@link TraceEvent}s instead of writing them: slots are claimed, filled,
+ * then published, and handed over later to the code which formats and writes them.
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public interface TraceBuffer {
+
+    /**
+     * Claim the next slot. The slot must be published with {@link #publish()} before claiming a new one.
+     *
+     * @param kind type of event
+     * @return a cleared slot
+     */
+    TraceEvent claim(byte kind);
+
+    /**
+     * @param nid identifier of the node being claimed
+     * @return <tt>true</tt> if the visualizer states of the node should be recorded
+     */
+    boolean acceptState(long nid);
+
+    /**
+     * Make the last claimed slot available
+     */
+    void publish();
+
+    /**
+     * Stop recording, no event is claimed afterwards
+     */
+    void close();
+
+    /**
+     * @return number of visualizer states not recorded
+     */
+    long getDroppedStates();
+}
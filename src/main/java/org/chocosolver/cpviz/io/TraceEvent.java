@@ -0,0 +1,73 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz.io;
+
+import org.chocosolver.cpviz.visualizers.StateRecord;
+
+/**
+ * A slot of the {@link AsyncTraceWriter} ring buffer: one tree event and, optionally, the visualizer states attached to it.
+ * <br/>
+ * Slots are allocated once and reused, they must not be retained after being handled.
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public final class TraceEvent {
+
+    public static final byte ROOT = 0, TRY = 1, FAIL = 2, SUCC = 3, STATE = 4, RESTART = 5;
+
+    /**
+     * Type of event, one of {@link #ROOT}, {@link #TRY}, {@link #FAIL}, {@link #SUCC}, {@link #STATE}
+     * or {@link #RESTART}
+     */
+    public byte kind;
+
+    public long id;
+
+    public long parent;
+
+    /**
+     * Name of the decision variable, or neighbourhood of a restart
+     */
+    public String name;
+
+    /**
+     * Domain size of the decision variable, -1 if unknown
+     */
+    public int size;
+
+    /**
+     * Value of the decision, or index of a restart
+     */
+    public Object value;
+
+    /**
+     * Numbers of nodes and failures before a restart
+     */
+    public long nodes, fails;
+
+    /**
+     * Depth of a node and number of levels climbed since the previous node, <i>depth</i> is 0 if not written
+     */
+    public int depth, jump;
+
+    /**
+     * Visualizer states attached to this event, may be empty
+     */
+    public final StateRecord state = new StateRecord();
+
+    void reset(byte kind) {
+        this.kind = kind;
+        this.name = null;
+        this.value = null;
+        this.size = -1;
+        this.depth = 0;
+        this.state.clear();
+    }
+}
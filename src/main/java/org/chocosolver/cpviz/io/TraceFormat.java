@@ -0,0 +1,35 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz.io;
+
+/**
+ * Format of the tree and visualization files.
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public enum TraceFormat {
+    /**
+     * The XML log formats defined by Helmut Simonis, read by cpviz
+     */
+    XML(".xml"),
+    /**
+     * A compact binary format (see {@link BinaryTrace}), to be turned into XML by {@link BinaryTraceConverter}
+     */
+    BINARY(".cpvb");
+
+    /**
+     * Extension of the files
+     */
+    public final String extension;
+
+    TraceFormat(String extension) {
+        this.extension = extension;
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz.io;
+
+import org.chocosolver.cpviz.CPVizConstant;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The tags of {@link CPVizConstant}, pre-encoded in UTF-8.
+ * <br/>
+ * Each tag is split around its <code>%s</code> placeholders: a tag with <i>n</i> placeholders
+ * is made of <i>n+1</i> fragments, the arguments being written between two consecutive fragments.
+ * Leading indentation placeholders are not fragments, they are written by the caller.
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public final class XmlTags {
+
+    public static final byte[] HEADER = encode(CPVizConstant.HEADER);
+
+    public static final byte[] TREE_IN = encode(CPVizConstant.T_TREE_TAG_IN);
+    public static final byte[] TREE_OUT = encode(CPVizConstant.T_TREE_TAG_OUT);
+    public static final byte[] ROOT = encode(CPVizConstant.T_ROOT_TAG);
+    public static final byte[][] TRY = split(CPVizConstant.T_TRY_TAG);
+    public static final byte[][] FAIL = split(CPVizConstant.T_FAIL_TAG);
+    public static final byte[][] SUCC = split(CPVizConstant.T_SUCC_TAG);
+    public static final byte[][] TRY_DEPTH = split(CPVizConstant.T_TRY_DEPTH_TAG);
+    public static final byte[][] FAIL_DEPTH = split(CPVizConstant.T_FAIL_DEPTH_TAG);
+    public static final byte[][] RESTART = split(CPVizConstant.T_RESTART_TAG);
+
+    public static final byte[][] RUN_IN = split(CPVizConstant.S_RUN_TAG_IN);
+    public static final byte[] RUN_OUT = encode(CPVizConstant.S_RUN_TAG_OUT);
+
+    public static final byte[] VISUALIZATION_IN = encode(CPVizConstant.V_VISUALIZATION_TAG_IN);
+    public static final byte[] VISUALIZATION_OUT = encode(CPVizConstant.V_VISUALIZATION_TAG_OUT);
+    public static final byte[][] STATE_IN = split(CPVizConstant.V_STATE_TAG_IN);
+    public static final byte[][] STATE_DELTA_IN = split(CPVizConstant.V_STATE_DELTA_TAG_IN);
+    public static final byte[] STATE_OUT = encode(CPVizConstant.V_STATE_TAG_OUT);
+    public static final byte[][] VISUALIZER_STATE_IN = split(CPVizConstant.V_VISUALIZER_STATE_TAG_IN);
+    public static final byte[] VISUALIZER_STATE_OUT = encode(CPVizConstant.V_VISUALIZER_STATE_TAG_OUT);
+
+    public static final byte[][] ARGUMENT_IN = indented(CPVizConstant.V_ARGUMENT_TAG_IN);
+    public static final byte[] ARGUMENT_OUT = indented(CPVizConstant.V_ARGUMENT_TAG_OUT)[0];
+    public static final byte[][] COLLECTION_IN = indented(CPVizConstant.V_COLLECTION_TAG_IN);
+    public static final byte[] COLLECTION_OUT = indented(CPVizConstant.V_COLLECTION_TAG_OUT)[0];
+    public static final byte[][] TUPLE_IN = indented(CPVizConstant.V_TUPLE_TAG_IN);
+    public static final byte[] TUPLE_OUT = indented(CPVizConstant.V_TUPLE_TAG_OUT)[0];
+    public static final byte[][] DVAR = indented(CPVizConstant.V_DVAR_TAG);
+    public static final byte[][] INTEGER = indented(CPVizConstant.V_INTEGER_TAG);
+    public static final byte[][] SVAR = indented(CPVizConstant.V_SVAR_TAG);
+    public static final byte[][] SINTEGER = indented(CPVizConstant.V_SINTEGER_TAG);
+    public static final byte[][] FAILED = indented(CPVizConstant.V_FAILED_TAG);
+    public static final byte[][] FOCUS = indented(CPVizConstant.V_FOCUS_TAG);
+    public static final byte[][] FOCUS_NO_TYPE = indented(CPVizConstant.V_FOCUS_NO_TYPE_TAG);
+    public static final byte[][] SKIP = indented(CPVizConstant.V_SKIP_TAG);
+    public static final byte[][] TILE = indented(CPVizConstant.V_TILE_TAG);
+    public static final byte[][] STATIC = indented(CPVizConstant.V_STATIC_TAG);
+
+    /**
+     * Separator of the lower and upper bounds of a bounded domain
+     */
+    public static final byte[] BOUNDS = encode(" .. ");
+
+    private XmlTags() {
+    }
+
+    /**
+     * Write <i>tag</i> with one argument
+     */
+    public static ByteEmitter tag(ByteEmitter out, byte[][] tag, long a) {
+        return out.write(tag[0]).write(a).write(tag[1]);
+    }
+
+    /**
+     * Write a try or a <i>fail</i> node, an unknown domain size (<i>dsize</i> &lt; 0) is written as "?"
+     */
+    public static ByteEmitter node(ByteEmitter out, boolean fail, long id, long parent, String name, int dsize, Object value) {
+        byte[][] tag = fail ? FAIL : TRY;
+        return node(out, tag, id, parent, name, dsize, value).write(tag[5]);
+    }
+
+    /**
+     * Write a try or a <i>fail</i> node with its <i>depth</i>, and the number of levels the search climbed up,
+     * <i>jump</i>, since the previous node
+     */
+    public static ByteEmitter node(ByteEmitter out, boolean fail, long id, long parent, String name, int dsize, Object value,
+                                   long depth, long jump) {
+        byte[][] tag = fail ? FAIL_DEPTH : TRY_DEPTH;
+        return node(out, tag, id, parent, name, dsize, value).write(tag[5]).write(depth).write(tag[6]).write(jump).write(tag[7]);
+    }
+
+    private static ByteEmitter node(ByteEmitter out, byte[][] tag, long id, long parent, String name, long dsize, Object value) {
+        out.write(tag[0]).write(id).write(tag[1]).write(parent).write(tag[2]).write(name).write(tag[3]);
+        if (dsize < 0) {
+            out.write('?');
+        } else {
+            out.write(dsize);
+        }
+        return out.write(tag[4]).write(value);
+    }
+
+    /**
+     * Write the node rooting the search which follows the restart <i>restart</i>, <i>nodes</i> and <i>fails</i>
+     * being the numbers of nodes and failures of the search before the restart
+     */
+    public static ByteEmitter restart(ByteEmitter out, long id, long restart, long nodes, long fails, String neighbourhood) {
+        return out.write(RESTART[0]).write(id).write(RESTART[1]).write(CPVizConstant.RESTART).write(RESTART[2])
+                .write(restart).write(RESTART[3]).write(nodes).write(RESTART[4]).write(fails).write(RESTART[5])
+                .write(neighbourhood).write(RESTART[6]);
+    }
+
+    private static byte[] encode(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[][] split(String format) {
+        String[] parts = format.split("%s", -1);
+        byte[][] fragments = new byte[parts.length][];
+        for (int i = 0; i < parts.length; i++) {
+            fragments[i] = encode(parts[i]);
+        }
+        return fragments;
+    }
+
+    private static byte[][] indented(String format) {
+        if (!format.startsWith("%s")) {
+            throw new IllegalArgumentException(format + " is not indented");
+        }
+        return split(format.substring(2));
+    }
+}
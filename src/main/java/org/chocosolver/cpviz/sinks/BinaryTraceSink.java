@@ -0,0 +1,127 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz.sinks;
+
+import org.chocosolver.cpviz.TraceSink;
+import org.chocosolver.cpviz.io.BinaryTrace;
+import org.chocosolver.cpviz.io.ByteEmitter;
+import org.chocosolver.cpviz.visualizers.BinaryWriter;
+import org.chocosolver.cpviz.visualizers.StateRecord;
+import org.chocosolver.cpviz.visualizers.Writer;
+
+/**
+ * Write a trace in the binary format of {@link BinaryTrace},
+ * to be turned into XML with {@link org.chocosolver.cpviz.io.BinaryTraceConverter}.
+ * <br/>
+ * The headers are written on construction, the end markers on {@link #onClose()}, which also closes the emitters.
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public class BinaryTraceSink implements TraceSink {
+
+    private final ByteEmitter tree, visualization;
+
+    private final BinaryTrace binaryTree, binaryVisualization;
+
+    private final Writer writer;
+
+    /**
+     * @param tree          where to write the tree, <tt>null</tt> to ignore the tree events
+     * @param visualization where to write the visualization, <tt>null</tt> to ignore the visualizers
+     */
+    public BinaryTraceSink(ByteEmitter tree, ByteEmitter visualization) {
+        this.tree = tree;
+        this.visualization = visualization;
+        this.binaryTree = tree == null ? null : new BinaryTrace(tree, BinaryTrace.TREE);
+        this.binaryVisualization = visualization == null ? null : new BinaryTrace(visualization, BinaryTrace.VISUALIZATION);
+        this.writer = visualization == null ? null : new BinaryWriter(binaryVisualization);
+    }
+
+    @Override
+    public void onRoot() {
+        if (binaryTree != null) {
+            binaryTree.op(BinaryTrace.ROOT);
+        }
+    }
+
+    @Override
+    public void onNode(long id, long parent, String varName, int size, Object value, Status status) {
+        if (binaryTree != null) {
+            binaryTree.node(status == Status.FAIL, id, parent, varName, size, value);
+        }
+    }
+
+    @Override
+    public void onNode(long id, long parent, String varName, int size, Object value, Status status, int depth, int jump) {
+        if (binaryTree != null) {
+            binaryTree.node(status == Status.FAIL, id, parent, varName, size, value, depth, jump);
+        }
+    }
+
+    @Override
+    public void onRestart(long id, long restart, long nodes, long fails, String neighbourhood) {
+        if (binaryTree != null) {
+            binaryTree.restart(id, restart, nodes, fails, neighbourhood);
+        }
+    }
+
+    @Override
+    public void onSolution(long id) {
+        if (binaryTree != null) {
+            binaryTree.op(BinaryTrace.SUCC).varint(id);
+        }
+    }
+
+    @Override
+    public void onVisualizer(int id, String declaration) {
+        if (binaryVisualization != null) {
+            binaryVisualization.op(BinaryTrace.TEXT).string(declaration);
+        }
+    }
+
+    @Override
+    public void onVisualizerState(long stateId, long nodeId, StateRecord state) {
+        if (writer != null) {
+            writer.replay(state);
+        }
+    }
+
+    @Override
+    public void onRunStart(long run, String model) {
+        if (binaryTree != null) {
+            binaryTree.op(BinaryTrace.RUN_IN).varint(run).string(model);
+        }
+        if (binaryVisualization != null) {
+            binaryVisualization.op(BinaryTrace.RUN_IN).varint(run).string(model);
+        }
+    }
+
+    @Override
+    public void onRunEnd(long run) {
+        if (binaryTree != null) {
+            binaryTree.op(BinaryTrace.RUN_OUT);
+        }
+        if (binaryVisualization != null) {
+            binaryVisualization.op(BinaryTrace.RUN_OUT);
+        }
+    }
+
+    @Override
+    public void onClose() {
+        if (binaryTree != null) {
+            binaryTree.op(BinaryTrace.END);
+            tree.close();
+        }
+        if (binaryVisualization != null) {
+            binaryVisualization.op(BinaryTrace.END);
+            visualization.close();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz.sinks;
+
+import org.chocosolver.cpviz.CPVizConstant;
+import org.chocosolver.cpviz.TraceSink;
+import org.chocosolver.cpviz.visualizers.StateRecord;
+
+/**
+ * Count the events of a trace without writing anything, to measure the cost of the tracing itself.
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public class CountingTraceSink implements TraceSink {
+
+    private long nodes, failures, solutions, visualizers, states, runs, restarts;
+
+    private boolean closed;
+
+    @Override
+    public void onRoot() {
+        nodes++;
+    }
+
+    @Override
+    public void onNode(long id, long parent, String varName, int size, Object value, Status status) {
+        nodes++;
+        if (status == Status.FAIL) {
+            failures++;
+        }
+    }
+
+    @Override
+    public void onRestart(long id, long restart, long nodes, long fails, String neighbourhood) {
+        restarts++;
+        onNode(id, 0, CPVizConstant.RESTART, -1, restart, Status.TRY);
+    }
+
+    @Override
+    public void onSolution(long id) {
+        solutions++;
+    }
+
+    @Override
+    public void onVisualizer(int id, String declaration) {
+        visualizers++;
+    }
+
+    @Override
+    public void onVisualizerState(long stateId, long nodeId, StateRecord state) {
+        states++;
+    }
+
+    @Override
+    public void onClose() {
+        closed = true;
+    }
+
+    @Override
+    public void onRunStart(long run, String model) {
+        runs++;
+    }
+
+    /**
+     * @return number of nodes, the root node included
+     */
+    public long getNbNodes() {
+        return nodes;
+    }
+
+    public long getNbFailures() {
+        return failures;
+    }
+
+    public long getNbSolutions() {
+        return solutions;
+    }
+
+    public long getNbVisualizers() {
+        return visualizers;
+    }
+
+    public long getNbStates() {
+        return states;
+    }
+
+    /**
+     * @return number of runs started, in a {@link org.chocosolver.cpviz.TraceSession}
+     */
+    public long getNbRuns() {
+        return runs;
+    }
+
+    /**
+     * @return number of restarts, each one rooting the nodes opened until the next one
+     */
+    public long getNbRestarts() {
+        return restarts;
+    }
+
+    /**
+     * @return <tt>true</tt> once the trace is over
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+}
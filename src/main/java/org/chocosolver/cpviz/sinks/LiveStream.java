@@ -0,0 +1,373 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz.sinks;
+
+import org.chocosolver.cpviz.TraceSink;
+import org.chocosolver.cpviz.io.ByteEmitter;
+import org.chocosolver.cpviz.visualizers.StateRecord;
+import org.chocosolver.cpviz.visualizers.Writer;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publish the events of a search, as they happen, to the clients connected to a local endpoint.
+ * <br/>
+ * Each event is a JSON object, sent as a line of text with {@link Protocol#TCP},
+ * or as a text frame with {@link Protocol#WEBSOCKET}:
+ * <pre>
+ * {"event":"root","id":0}
+ * {"event":"try","id":1,"parent":0,"name":"Q[0]","size":4,"value":1}
+ * {"event":"fail","id":2,"parent":1,"name":"Q[1]","size":1,"value":3}
+ * {"event":"succ","id":3}
+ * {"event":"state","node":3,"xml":"&lt;state id=\"4\" tree_node=\"3\" &gt;..."}
+ * </pre>
+ * Each client has a bounded queue, emptied by its own thread. When a queue is full, its oldest event is dropped:
+ * a slow client never slows the search down. Nothing is built when no client is connected.
+ * <br/>
+ * The endpoint only listens on the loopback address. WebSocket clients are not read from once connected.
+ * The endpoint is not closed with the trace, but by {@link #close()}.
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public final class LiveStream implements TraceSink, Closeable {
+
+    public enum Protocol {
+        /**
+         * Newline-delimited JSON over a plain socket
+         */
+        TCP,
+        /**
+         * JSON text frames over a WebSocket
+         */
+        WEBSOCKET
+    }
+
+    private static final String WS_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    private final ServerSocket server;
+
+    private final Protocol protocol;
+
+    private final int capacity;
+
+    private final List<Client> clients = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final StringBuilder json = new StringBuilder(256);
+
+    /**
+     * Writes the states published, into <i>bytes</i>
+     */
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 12);
+
+    private final ByteEmitter emitter = new ByteEmitter(Channels.newChannel(bytes), 1 << 12);
+
+    private final Writer writer = new Writer(emitter);
+
+    /**
+     * Open the endpoint and start accepting clients.
+     *
+     * @param port     port to listen to on the loopback address, 0 for any free port
+     * @param protocol how the events are sent
+     * @param capacity number of events each client queue can hold
+     * @throws IOException if the port cannot be bound
+     */
+    public LiveStream(int port, Protocol protocol, int capacity) throws IOException {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.protocol = protocol;
+        this.capacity = capacity;
+        this.server = new ServerSocket(port, 8, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::accept, "cpviz-live-" + server.getLocalPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * @return the port <code>this</code> listens to
+     */
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * @return number of connected clients
+     */
+    public int getNbClients() {
+        return clients.size();
+    }
+
+    /**
+     * @return <tt>true</tt> if there is at least one client to publish to
+     */
+    public boolean hasClients() {
+        return !clients.isEmpty();
+    }
+
+    /**
+     * @return number of events dropped, over every client, because a queue was full
+     */
+    public long getDroppedEvents() {
+        return dropped.get();
+    }
+
+    @Override
+    public void onRoot() {
+        if (hasClients()) {
+            json.setLength(0);
+            json.append("{\"event\":\"root\",\"id\":0}");
+            publish();
+        }
+    }
+
+    @Override
+    public void onNode(long id, long parent, String varName, int size, Object value, Status status) {
+        if (hasClients()) {
+            json.setLength(0);
+            json.append("{\"event\":\"").append(status == Status.FAIL ? "fail" : "try").append("\",\"id\":").append(id)
+                    .append(",\"parent\":").append(parent).append(",\"name\":");
+            string(varName);
+            json.append(",\"size\":").append(size).append(",\"value\":");
+            if (value instanceof Number) {
+                json.append(value);
+            } else {
+                string(String.valueOf(value));
+            }
+            json.append('}');
+            publish();
+        }
+    }
+
+    @Override
+    public void onSolution(long id) {
+        if (hasClients()) {
+            json.setLength(0);
+            json.append("{\"event\":\"succ\",\"id\":").append(id).append('}');
+            publish();
+        }
+    }
+
+    @Override
+    public void onVisualizer(int id, String declaration) {
+    }
+
+    /**
+     * Publish a state of the tree node <i>nodeId</i>, as written in the visualization file
+     */
+    @Override
+    public void onVisualizerState(long stateId, long nodeId, StateRecord state) {
+        if (hasClients()) {
+            writer.replay(state);
+            emitter.flush();
+            json.setLength(0);
+            json.append("{\"event\":\"state\",\"node\":").append(nodeId).append(",\"xml\":");
+            string(new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+            bytes.reset();
+            json.append('}');
+            publish();
+        }
+    }
+
+    @Override
+    public void onClose() {
+    }
+
+    @Override
+    public void onRunStart(long run, String model) {
+        if (hasClients()) {
+            json.setLength(0);
+            json.append("{\"event\":\"run\",\"id\":").append(run).append(",\"model\":");
+            string(model);
+            json.append('}');
+            publish();
+        }
+    }
+
+    private void string(CharSequence s) {
+        json.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+
+    private void publish() {
+        byte[] message = json.toString().getBytes(StandardCharsets.UTF_8);
+        for (Client client : clients) {
+            client.offer(message);
+        }
+    }
+
+    /**
+     * Stop accepting clients and disconnect the connected ones
+     */
+    @Override
+    public void close() throws IOException {
+        server.close();
+        for (Client client : clients) {
+            client.close();
+        }
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                Client client = new Client(socket);
+                Thread thread = new Thread(client, "cpviz-live-client");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                // the server socket has been closed
+            }
+        }
+    }
+
+    private final class Client implements Runnable {
+
+        private final Socket socket;
+
+        private final ArrayBlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(capacity);
+
+        private volatile Thread thread;
+
+        Client(Socket socket) {
+            this.socket = socket;
+        }
+
+        void offer(byte[] message) {
+            while (!queue.offer(message)) {
+                if (queue.poll() != null) {
+                    dropped.incrementAndGet();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            thread = Thread.currentThread();
+            try (Socket s = socket) {
+                OutputStream out = new BufferedOutputStream(s.getOutputStream(), 1 << 14);
+                if (protocol == Protocol.WEBSOCKET) {
+                    handshake(s.getInputStream(), out);
+                }
+                // registered once the client is ready to receive events
+                clients.add(this);
+                while (!s.isClosed()) {
+                    byte[] message = queue.take();
+                    do {
+                        send(out, message);
+                    } while ((message = queue.poll()) != null);
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // the client has gone
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                clients.remove(this);
+            }
+        }
+
+        private void send(OutputStream out, byte[] message) throws IOException {
+            if (protocol == Protocol.WEBSOCKET) {
+                // a final text frame, not masked
+                out.write(0x81);
+                if (message.length < 126) {
+                    out.write(message.length);
+                } else if (message.length < 1 << 16) {
+                    out.write(126);
+                    out.write(message.length >>> 8);
+                    out.write(message.length);
+                } else {
+                    out.write(127);
+                    for (int i = 7; i >= 0; i--) {
+                        out.write((int) ((long) message.length >>> (8 * i)));
+                    }
+                }
+                out.write(message);
+            } else {
+                out.write(message);
+                out.write('\n');
+            }
+        }
+
+        private void handshake(InputStream in, OutputStream out) throws IOException {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.ISO_8859_1));
+            String key = null;
+            String line;
+            while ((line = reader.readLine()) != null && !line.isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Sec-WebSocket-Key")) {
+                    key = line.substring(colon + 1).trim();
+                }
+            }
+            if (key == null) {
+                throw new IOException("Not a WebSocket handshake");
+            }
+            String accept;
+            try {
+                byte[] sha1 = MessageDigest.getInstance("SHA-1").digest((key + WS_GUID).getBytes(StandardCharsets.ISO_8859_1));
+                accept = Base64.getEncoder().encodeToString(sha1);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IOException(e);
+            }
+            out.write(("HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                    + "Sec-WebSocket-Accept: " + accept + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // already closed
+            }
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+    }
+}
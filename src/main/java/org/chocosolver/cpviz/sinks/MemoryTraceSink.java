@@ -0,0 +1,62 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz.sinks;
+
+import org.chocosolver.cpviz.io.ByteEmitter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+
+/**
+ * Keep the XML tree and visualization in memory, for tests or for an embedding application.
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public class MemoryTraceSink extends XmlTraceSink {
+
+    private final ByteArrayOutputStream treeBytes, visualizationBytes;
+
+    private final ByteEmitter tree, visualization;
+
+    public MemoryTraceSink() {
+        this(new ByteArrayOutputStream(1 << 12), new ByteArrayOutputStream(1 << 12));
+    }
+
+    private MemoryTraceSink(ByteArrayOutputStream treeBytes, ByteArrayOutputStream visualizationBytes) {
+        this(treeBytes, visualizationBytes,
+                new ByteEmitter(Channels.newChannel(treeBytes), 1 << 12),
+                new ByteEmitter(Channels.newChannel(visualizationBytes), 1 << 12));
+    }
+
+    private MemoryTraceSink(ByteArrayOutputStream treeBytes, ByteArrayOutputStream visualizationBytes,
+                            ByteEmitter tree, ByteEmitter visualization) {
+        super(tree, visualization);
+        this.treeBytes = treeBytes;
+        this.visualizationBytes = visualizationBytes;
+        this.tree = tree;
+        this.visualization = visualization;
+    }
+
+    /**
+     * @return the tree written so far
+     */
+    public byte[] getTree() {
+        tree.flush();
+        return treeBytes.toByteArray();
+    }
+
+    /**
+     * @return the visualization written so far
+     */
+    public byte[] getVisualization() {
+        visualization.flush();
+        return visualizationBytes.toByteArray();
+    }
+}
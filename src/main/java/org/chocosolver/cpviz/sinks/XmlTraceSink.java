@@ -0,0 +1,131 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz.sinks;
+
+import org.chocosolver.cpviz.TraceSink;
+import org.chocosolver.cpviz.io.ByteEmitter;
+import org.chocosolver.cpviz.io.XmlTags;
+import org.chocosolver.cpviz.visualizers.StateRecord;
+import org.chocosolver.cpviz.visualizers.Writer;
+
+/**
+ * Write a trace in the XML format of the tree and the visualization files.
+ * <br/>
+ * The headers are written on construction, the closing tags on {@link #onClose()}, which also closes the emitters.
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public class XmlTraceSink implements TraceSink {
+
+    private final ByteEmitter tree;
+
+    private final ByteEmitter visualization;
+
+    private final Writer writer;
+
+    /**
+     * @param tree          where to write the tree, <tt>null</tt> to ignore the tree events
+     * @param visualization where to write the visualization, <tt>null</tt> to ignore the visualizers
+     */
+    public XmlTraceSink(ByteEmitter tree, ByteEmitter visualization) {
+        this.tree = tree;
+        this.visualization = visualization;
+        if (tree != null) {
+            tree.write(XmlTags.HEADER).write(XmlTags.TREE_IN);
+        }
+        if (visualization != null) {
+            visualization.write(XmlTags.HEADER).write(XmlTags.VISUALIZATION_IN);
+            writer = new Writer(visualization);
+        } else {
+            writer = null;
+        }
+    }
+
+    @Override
+    public void onRoot() {
+        if (tree != null) {
+            tree.write(XmlTags.ROOT);
+        }
+    }
+
+    @Override
+    public void onNode(long id, long parent, String varName, int size, Object value, Status status) {
+        if (tree != null) {
+            XmlTags.node(tree, status == Status.FAIL, id, parent, varName, size, value);
+        }
+    }
+
+    @Override
+    public void onNode(long id, long parent, String varName, int size, Object value, Status status, int depth, int jump) {
+        if (tree != null) {
+            XmlTags.node(tree, status == Status.FAIL, id, parent, varName, size, value, depth, jump);
+        }
+    }
+
+    @Override
+    public void onRestart(long id, long restart, long nodes, long fails, String neighbourhood) {
+        if (tree != null) {
+            XmlTags.restart(tree, id, restart, nodes, fails, neighbourhood);
+        }
+    }
+
+    @Override
+    public void onSolution(long id) {
+        if (tree != null) {
+            XmlTags.tag(tree, XmlTags.SUCC, id);
+        }
+    }
+
+    @Override
+    public void onVisualizer(int id, String declaration) {
+        if (visualization != null) {
+            visualization.write(declaration);
+        }
+    }
+
+    @Override
+    public void onVisualizerState(long stateId, long nodeId, StateRecord state) {
+        if (writer != null) {
+            writer.replay(state);
+        }
+    }
+
+    @Override
+    public void onRunStart(long run, String model) {
+        if (tree != null) {
+            tree.write(XmlTags.RUN_IN[0]).write(run).write(XmlTags.RUN_IN[1]).write(model).write(XmlTags.RUN_IN[2]);
+        }
+        if (visualization != null) {
+            visualization.write(XmlTags.RUN_IN[0]).write(run).write(XmlTags.RUN_IN[1]).write(model).write(XmlTags.RUN_IN[2]);
+        }
+    }
+
+    @Override
+    public void onRunEnd(long run) {
+        if (tree != null) {
+            tree.write(XmlTags.RUN_OUT);
+        }
+        if (visualization != null) {
+            visualization.write(XmlTags.RUN_OUT);
+        }
+    }
+
+    @Override
+    public void onClose() {
+        if (tree != null) {
+            tree.write(XmlTags.TREE_OUT);
+            tree.close();
+        }
+        if (visualization != null) {
+            visualization.write(XmlTags.VISUALIZATION_OUT);
+            visualization.close();
+        }
+    }
+}
@@ -24,6 +24,8 @@ public class BinPacking extends Visualizer {
 
     private static final String type = "bin_packing";
 
+    private static final String[] STATICS = {"sizes"};
+
     final IntVar[] items;
 
     final int[] sizes;
@@ -78,10 +80,20 @@ public class BinPacking extends Visualizer {
         this.bins = bins;
     }
 
+    @Override
+    protected String[] staticArguments() {
+        return STATICS;
+    }
+
+    @Override
+    protected void printStatic(String idx) {
+        writer.argumentIn("sizes", 3).array(sizes, 4).argumentOut(3);
+    }
+
     @Override
     protected void print(boolean focus, Decision decision) {
         writer.argumentIn("items", 3).arrayDvar(items, 4).argumentOut(3);
-        writer.argumentIn("sizes", 3).array(sizes, 4).argumentOut(3);
+        staticArgument("sizes");
         writer.argumentIn("bins", 3).arrayDvar(bins, 4).argumentOut(3);
     }
 }
@@ -0,0 +1,176 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz.visualizers;
+
+import org.chocosolver.cpviz.io.BinaryTrace;
+import org.chocosolver.solver.variables.IntVar;
+import org.chocosolver.solver.variables.SetVar;
+
+/**
+ * A {@link Writer} which writes the states of the visualizers in the compact binary format
+ * described in {@link BinaryTrace}.
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public class BinaryWriter extends Writer {
+
+    private final BinaryTrace trace;
+
+    public BinaryWriter(BinaryTrace trace) {
+        super(trace.out());
+        this.trace = trace;
+    }
+
+    @Override
+    public Writer stateIn(long sid, long nid, long parent) {
+        trace.op(BinaryTrace.STATE_IN).varint(sid).zigzag(nid).zigzag(parent);
+        return this;
+    }
+
+    @Override
+    public Writer stateOut() {
+        trace.op(BinaryTrace.STATE_OUT);
+        return this;
+    }
+
+    @Override
+    public Writer visualizerIn(int id) {
+        trace.op(BinaryTrace.VISUALIZER_IN).varint(id);
+        return this;
+    }
+
+    @Override
+    public Writer visualizerOut() {
+        trace.op(BinaryTrace.VISUALIZER_OUT);
+        return this;
+    }
+
+    @Override
+    protected Writer ivar(IntVar ivar, String idx, int pf) {
+        if (ivar.isInstantiated()) {
+            return integer(ivar.getValue(), idx, pf);
+        } else if (!ivar.hasEnumeratedDomain()) {
+            return bounds(idx, pf, ivar.getLB(), ivar.getUB());
+        }
+        DomainSnapshot domain = snapshot(ivar);
+        return intervals(idx, pf, domain.intervals, 0, domain.nbIntervals);
+    }
+
+    @Override
+    protected Writer intervals(String idx, int pf, int[] intervals, int from, int n) {
+        trace.op(BinaryTrace.DVAR).string(idx).varint(pf).intervals(intervals, from, n);
+        return this;
+    }
+
+    @Override
+    protected Writer svar(SetVar svar, String idx, int pf) {
+        DomainSnapshot[] set = snapshot(svar);
+        if (svar.isInstantiated()) {
+            return sinteger(idx, pf, set[0].intervals, 0, set[0].nbIntervals);
+        }
+        return svar(idx, pf, set[0].intervals, 0, set[0].nbIntervals, set[1].intervals, 0, set[1].nbIntervals);
+    }
+
+    @Override
+    protected Writer sinteger(String idx, int pf, int[] intervals, int from, int n) {
+        trace.op(BinaryTrace.SINTEGER).string(idx).varint(pf).intervals(intervals, from, n);
+        return this;
+    }
+
+    @Override
+    protected Writer svar(String idx, int pf, int[] kernel, int kFrom, int nk, int[] envelope, int eFrom, int ne) {
+        trace.op(BinaryTrace.SVAR).string(idx).varint(pf).intervals(kernel, kFrom, nk).intervals(envelope, eFrom, ne);
+        return this;
+    }
+
+    @Override
+    protected Writer dvar(String idx, int pf, int[] values, int from, int n) {
+        trace.op(BinaryTrace.DVAR).string(idx).varint(pf).domain(values, from, n);
+        return this;
+    }
+
+    @Override
+    protected Writer bounds(String idx, int pf, int lb, int ub) {
+        trace.op(BinaryTrace.BOUNDS).string(idx).varint(pf).zigzag(lb).zigzag(ub);
+        return this;
+    }
+
+    @Override
+    protected Writer integer(int value, String idx, int pf) {
+        trace.op(BinaryTrace.INTEGER).string(idx).varint(pf).zigzag(value);
+        return this;
+    }
+
+    @Override
+    protected Writer tile(String idx, int pf, int instantiated, int size, int lb, int ub) {
+        trace.op(BinaryTrace.TILE).string(idx).varint(pf).varint(instantiated).varint(size).zigzag(lb).zigzag(ub);
+        return this;
+    }
+
+    @Override
+    public Writer reference(String idx, int pf) {
+        return in(BinaryTrace.REFERENCE, idx, pf);
+    }
+
+    @Override
+    protected Writer argumentIn(String idx, int pf) {
+        return in(BinaryTrace.ARGUMENT_IN, idx, pf);
+    }
+
+    @Override
+    protected Writer argumentOut(int pf) {
+        return out(BinaryTrace.ARGUMENT_OUT, pf);
+    }
+
+    @Override
+    protected Writer tupleIn(String idx, int pf) {
+        return in(BinaryTrace.TUPLE_IN, idx, pf);
+    }
+
+    @Override
+    protected Writer tupleOut(int pf) {
+        return out(BinaryTrace.TUPLE_OUT, pf);
+    }
+
+    @Override
+    protected Writer collectionIn(String idx, int pf) {
+        return in(BinaryTrace.COLLECTION_IN, idx, pf);
+    }
+
+    @Override
+    protected Writer collectionOut(int pf) {
+        return out(BinaryTrace.COLLECTION_OUT, pf);
+    }
+
+    @Override
+    protected void focus(String idx, String group, String type) {
+        trace.op(BinaryTrace.FOCUS).string(idx).string(group).string(type);
+    }
+
+    @Override
+    protected void focus(String idx, String group) {
+        trace.op(BinaryTrace.FOCUS_NO_TYPE).string(idx).string(group);
+    }
+
+    @Override
+    protected void fail(String idx, String group, int value) {
+        trace.op(BinaryTrace.FAILED).string(idx).string(group).zigzag(value);
+    }
+
+    private Writer in(int op, String idx, int pf) {
+        trace.op(op).string(idx).varint(pf);
+        return this;
+    }
+
+    private Writer out(int op, int pf) {
+        trace.op(op).varint(pf);
+        return this;
+    }
+}
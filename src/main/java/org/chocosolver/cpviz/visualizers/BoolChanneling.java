@@ -12,6 +12,7 @@ import org.chocosolver.cpviz.Visualizer;
 import org.chocosolver.solver.search.strategy.decision.Decision;
 import org.chocosolver.solver.variables.BoolVar;
 import org.chocosolver.solver.variables.IntVar;
+import org.chocosolver.solver.variables.Variable;
 
 /**
  * A specialized visualizer for the boolean channeling constraint.
@@ -25,6 +26,8 @@ public final class BoolChanneling extends Visualizer {
 
     private static final String type = "bool_channeling";
 
+    private static final String[] STATICS = {Writer._3};
+
     final IntVar var;
 
     final BoolVar[] bool;
@@ -119,11 +122,33 @@ public final class BoolChanneling extends Visualizer {
         this.offset = var.getLB();
     }
 
+    /**
+     * @return the domain variable, then the boolean variables
+     */
+    @Override
+    protected Variable[] decisionVariables() {
+        Variable[] vars = new Variable[bool.length + 1];
+        vars[0] = var;
+        System.arraycopy(bool, 0, vars, 1, bool.length);
+        return vars;
+    }
+
+    @Override
+    protected String[] staticArguments() {
+        return STATICS;
+    }
+
+    @Override
+    protected void printStatic(String idx) {
+        writer.argumentIn(Writer._3, 3).integer(offset, Writer._3, 4).argumentOut(3);
+    }
+
     @Override
     protected void print(boolean focus, Decision decision) {
         writer.argumentIn(Writer._1, 3).ivar(var, Writer._1, 4).argumentOut(3);
 
-        if (decision != null && decision.getDecisionVariable() == var) {
+        int k = locate(decision);
+        if (k == 0) {
             if (focus) {
                 writer.focus(Writer._1 + Writer._S + Integer.toString(1), group, type);
             } else {
@@ -133,19 +158,13 @@ public final class BoolChanneling extends Visualizer {
 
         writer.argumentIn(Writer._2, 3).arrayDvar(bool, 4).argumentOut(3);
 
-        if (decision != null) {
-            for (int i = 0; i < bool.length; i++) {
-                if (decision.getDecisionVariable() == bool[i]) {
-                    if (focus) {
-                        writer.focus(Writer._3 + Writer._S + Integer.toString(i + 1), group, type);
-                        break;
-                    } else {
-                        writer.fail(Writer._3 + Writer._S + Integer.toString(i + 1), group, (Integer) decision.getDecisionValue());
-                        break;
-                    }
-                }
+        if (k > 0) {
+            if (focus) {
+                writer.focus(Writer._3 + Writer._S + Integer.toString(k), group, type);
+            } else {
+                writer.fail(Writer._3 + Writer._S + Integer.toString(k), group, (Integer) decision.getDecisionValue());
             }
         }
-        writer.argumentIn(Writer._3, 3).integer(offset, Writer._3, 4).argumentOut(3);
+        staticArgument(Writer._3);
     }
 }
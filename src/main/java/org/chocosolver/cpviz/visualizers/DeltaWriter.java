@@ -0,0 +1,148 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz.visualizers;
+
+import org.chocosolver.cpviz.io.ByteEmitter;
+
+import java.util.Arrays;
+
+import static org.chocosolver.cpviz.io.XmlTags.*;
+
+/**
+ * A {@link Writer} which writes the state of a node as a delta of the state of its parent node.
+ * <br/>
+ * Each element (an integer or a domain) is compared, through a fingerprint, with the element at the same position
+ * in the parent state: runs of unchanged elements are replaced by a single <code>skip</code> tag.
+ * Since domains can only shrink along a branch, a domain with the same size as in the parent state is unchanged.
+ * <br/>
+ * The states of the ancestors of the current node are kept in a stack.
+ * A state whose parent state is unknown (the root, or a state dropped in asynchronous mode) is written in full.
+ * Full states can be rebuilt with {@link org.chocosolver.cpviz.io.DeltaDecoder}.
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public class DeltaWriter extends Writer {
+
+    /**
+     * Tree node, state id and fingerprints of the states on the current branch, the last one being the current state
+     */
+    private long[] nids = new long[16];
+
+    private long[] sids = new long[16];
+
+    private long[][] prints = new long[16][64];
+
+    private int[] sizes = new int[16];
+
+    private int depth;
+
+    /**
+     * Position of the current state in the stack, -1 if none
+     */
+    private int current = -1;
+
+    /**
+     * Number of elements skipped and not yet written, and indentation of the first one
+     */
+    private int skipped, skipPf;
+
+    public DeltaWriter(ByteEmitter visualization) {
+        super(visualization);
+    }
+
+    @Override
+    public Writer stateIn(long sid, long nid, long parent) {
+        int p = depth - 1;
+        if (parent >= 0) {
+            while (p >= 0 && nids[p] != parent) {
+                p--;
+            }
+        } else {
+            p = -1;
+        }
+        depth = p + 1;
+        push(sid, nid);
+        if (p < 0) {
+            return super.stateIn(sid, nid, parent);
+        }
+        visualization.write(STATE_DELTA_IN[0]).write(sid).write(STATE_DELTA_IN[1]).write(nid)
+                .write(STATE_DELTA_IN[2]).write(sids[p]).write(STATE_DELTA_IN[3]);
+        return this;
+    }
+
+    @Override
+    public Writer stateOut() {
+        flushSkip();
+        return super.stateOut();
+    }
+
+    @Override
+    public Writer visualizerOut() {
+        flushSkip();
+        return super.visualizerOut();
+    }
+
+    @Override
+    protected boolean unchanged(long print, int pf) {
+        int c = current;
+        int i = sizes[c];
+        if (i == prints[c].length) {
+            prints[c] = Arrays.copyOf(prints[c], i * 3 / 2 + 1);
+        }
+        prints[c][i] = print;
+        sizes[c]++;
+        if (c > 0 && i < sizes[c - 1] && prints[c - 1][i] == print) {
+            if (skipped++ == 0) {
+                skipPf = pf;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    protected void layoutChanged() {
+        // the ancestors are forgotten: the rest of the current state is written in full
+        for (int p = 0; p < current; p++) {
+            sizes[p] = 0;
+        }
+    }
+
+    @Override
+    protected ByteEmitter line(int pf) {
+        flushSkip();
+        return super.line(pf);
+    }
+
+    private void push(long sid, long nid) {
+        if (depth == nids.length) {
+            int n = depth * 3 / 2 + 1;
+            nids = Arrays.copyOf(nids, n);
+            sids = Arrays.copyOf(sids, n);
+            sizes = Arrays.copyOf(sizes, n);
+            prints = Arrays.copyOf(prints, n);
+        }
+        if (prints[depth] == null) {
+            prints[depth] = new long[depth > 0 ? sizes[depth - 1] : 64];
+        }
+        nids[depth] = nid;
+        sids[depth] = sid;
+        sizes[depth] = 0;
+        current = depth++;
+    }
+
+    private void flushSkip() {
+        if (skipped > 0) {
+            int n = skipped;
+            skipped = 0;
+            super.line(skipPf).write(SKIP[0]).write(n).write(SKIP[1]);
+        }
+    }
+}
@@ -10,12 +10,18 @@ package org.chocosolver.cpviz.visualizers;
 
 import org.chocosolver.cpviz.Visualizer;
 import org.chocosolver.solver.search.strategy.decision.Decision;
+import org.chocosolver.solver.variables.IntVar;
 import org.chocosolver.solver.variables.Variable;
 
 /**
  * ,
  * A specialized visualizer for a matrix of domain variables
  * <br/>
+ * For large matrices, cells can be aggregated into tiles (see {@link #setTiles(int, int)}):
+ * each tile is written as a <code>tile</code> tag summarizing its cells, and the cells of a region of interest
+ * (see {@link #setDetail(int, int, int, int)}) are written one by one, as usual.
+ * With delta states, a tile is only written when its summary differs from the one of the parent state.
+ * <br/>
  *
  * @author Charles Prud'homme
  * @since 14/12/10
@@ -24,8 +30,33 @@ public class DomainMatrix extends Visualizer {
 
     private static final String type = "domain_matrix";
 
+    /**
+     * Type of the focus located on a tile
+     */
+    public static final String TILE = "tile";
+
     final Variable[][] vars;
 
+    /**
+     * Number of rows and columns of a tile, 0 if cells are not aggregated
+     */
+    private int tileRows, tileCols;
+
+    /**
+     * Region of interest, as {first row, first column, last row, last column} (exclusive), <tt>null</tt> if none
+     */
+    private volatile int[] detail;
+
+    /**
+     * Region of interest of the last state printed
+     */
+    private int[] printed;
+
+    /**
+     * Row and column of each cell, indexed as in {@link #decisionVariables()}
+     */
+    private int[] rows, cols;
+
     /**
      * Build a visualizer for a matrix of domain variables
      *
@@ -67,25 +98,161 @@ public class DomainMatrix extends Visualizer {
         this.vars = vars;
     }
 
+    /**
+     * Aggregate the cells of <code>this</code> into tiles of <i>rows</i> x <i>cols</i> cells.
+     * A tile is written with the number of its instantiated cells, their mean domain size (rounded up),
+     * their smallest lower bound and their largest upper bound.
+     * Tiles are indexed by row and column, starting at 1, like cells.
+     * To be called before <code>this</code> is added to a visualization.
+     *
+     * @param rows number of rows of a tile
+     * @param cols number of columns of a tile
+     */
+    public void setTiles(int rows, int cols) {
+        if (rows <= 0 || cols <= 0) {
+            throw new IllegalArgumentException("invalid tile size " + rows + "x" + cols);
+        }
+        for (Variable[] row : vars) {
+            for (Variable var : row) {
+                if (!(var instanceof IntVar)) {
+                    throw new IllegalArgumentException("tiles only summarize integer variables, not " + var.getName());
+                }
+            }
+        }
+        this.tileRows = rows;
+        this.tileCols = cols;
+    }
+
+    /**
+     * Write the cells of the region of interest one by one, when cells are aggregated into tiles.
+     * Tiles lying within the region are not written anymore.
+     * The region can be moved during the search: the next states take it into account.
+     * An empty region removes the region of interest.
+     *
+     * @param row    first row of the region, from 0
+     * @param col    first column of the region, from 0
+     * @param nbRows number of rows of the region
+     * @param nbCols number of columns of the region
+     */
+    public void setDetail(int row, int col, int nbRows, int nbCols) {
+        if (row < 0 || col < 0 || nbRows < 0 || nbCols < 0) {
+            throw new IllegalArgumentException("invalid region " + row + "," + col + " " + nbRows + "x" + nbCols);
+        }
+        detail = nbRows == 0 || nbCols == 0 ? null : new int[]{row, col, row + nbRows, col + nbCols};
+    }
+
     @Override
-    protected void print(boolean focus, Decision decision) {
+    protected String options() {
+        String options = super.options();
+        if (tileRows > 0) {
+            options += " tiles=\"" + tileRows + " " + tileCols + "\"";
+        }
+        return options;
+    }
+
+    /**
+     * @return the variables, row by row
+     */
+    @Override
+    protected Variable[] decisionVariables() {
+        int n = 0;
+        for (int i = 0; i < vars.length; i++) {
+            n += vars[i].length;
+        }
+        Variable[] flat = new Variable[n];
+        rows = new int[n];
+        cols = new int[n];
+        n = 0;
         for (int i = 0; i < vars.length; i++) {
-            for (int j = 0; j < vars[i].length; j++) {
-                writer.var(vars[i][j], (i + 1) + " " + (j + 1), 3);
+            for (int j = 0; j < vars[i].length; j++, n++) {
+                flat[n] = vars[i][j];
+                rows[n] = i;
+                cols[n] = j;
             }
         }
-        if (decision != null) {
+        return flat;
+    }
+
+    @Override
+    protected void print(boolean focus, Decision decision) {
+        int[] region = null;
+        if (tileRows > 0) {
+            region = detail;
+            if (region != printed) {
+                printed = region;
+                writer.layoutChanged();
+            }
+            printTiles(region);
+            if (region != null) {
+                for (int i = region[0]; i < Math.min(region[2], vars.length); i++) {
+                    for (int j = region[1]; j < Math.min(region[3], vars[i].length); j++) {
+                        writer.var(vars[i][j], (i + 1) + " " + (j + 1), 3);
+                    }
+                }
+            }
+        } else {
             for (int i = 0; i < vars.length; i++) {
                 for (int j = 0; j < vars[i].length; j++) {
-                    if (decision.getDecisionVariable()== vars[i][j]) {
-                        if (focus) {
-                            writer.focus((i + 1) + Writer._S + (j + 1), group);
-                        } else {
-                            writer.fail((i + 1) + Writer._S + (j + 1), group, (Integer)decision.getDecisionValue());
+                    writer.var(vars[i][j], (i + 1) + " " + (j + 1), 3);
+                }
+            }
+        }
+        // every cell of the variable, as it may appear more than once
+        for (int k : locateAll(decision)) {
+            int i = rows[k], j = cols[k];
+            if (tileRows > 0 && !within(region, i, j)) {
+                String idx = (i / tileRows + 1) + Writer._S + (j / tileCols + 1);
+                if (focus) {
+                    writer.focus(idx, group, TILE);
+                } else {
+                    writer.fail(idx, group, (Integer) decision.getDecisionValue());
+                }
+            } else if (focus) {
+                writer.focus((i + 1) + Writer._S + (j + 1), group);
+            } else {
+                writer.fail((i + 1) + Writer._S + (j + 1), group, (Integer) decision.getDecisionValue());
+            }
+        }
+    }
+
+    /**
+     * Write the summary of each tile, except the ones lying within <i>region</i>
+     */
+    private void printTiles(int[] region) {
+        for (int i0 = 0; i0 < vars.length; i0 += tileRows) {
+            int i1 = Math.min(i0 + tileRows, vars.length);
+            int width = 0;
+            for (int i = i0; i < i1; i++) {
+                width = Math.max(width, vars[i].length);
+            }
+            for (int j0 = 0; j0 < width; j0 += tileCols) {
+                int j1 = Math.min(j0 + tileCols, width);
+                if (region != null && region[0] <= i0 && i1 <= region[2] && region[1] <= j0 && j1 <= region[3]) {
+                    continue;
+                }
+                int n = 0, instantiated = 0, lb = Integer.MAX_VALUE, ub = Integer.MIN_VALUE;
+                long size = 0;
+                for (int i = i0; i < i1; i++) {
+                    for (int j = j0; j < Math.min(j1, vars[i].length); j++) {
+                        IntVar var = (IntVar) vars[i][j];
+                        n++;
+                        if (var.isInstantiated()) {
+                            instantiated++;
                         }
+                        size += var.getDomainSize();
+                        lb = Math.min(lb, var.getLB());
+                        ub = Math.max(ub, var.getUB());
                     }
                 }
+                if (n > 0) {
+                    writer.tile((i0 / tileRows + 1) + Writer._S + (j0 / tileCols + 1), 3,
+                            instantiated, (int) ((size + n - 1) / n), lb, ub);
+                }
             }
         }
     }
+
+    private static boolean within(int[] region, int i, int j) {
+        return region != null && region[0] <= i && i < region[2] && region[1] <= j && j < region[3];
+    }
 }
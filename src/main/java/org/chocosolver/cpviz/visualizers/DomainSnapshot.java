@@ -0,0 +1,257 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz.visualizers;
+
+import org.chocosolver.solver.variables.IntVar;
+import org.chocosolver.util.objects.setDataStructures.ISet;
+import org.chocosolver.util.objects.setDataStructures.ISetIterator;
+
+import java.util.Arrays;
+
+/**
+ * A copy of the domain of an enumerated variable, as a list of intervals, together with its encoding
+ * in the visualization file: the values separated by spaces, or the maximal intervals, such as <code>1..998 1000</code>.
+ * The encoding is only built when asked for, by {@link #encode(boolean)}.
+ * <br/>
+ * {@link #update(IntVar)} only rebuilds the copy and its encoding when the domain has changed since the last call.
+ * The domain is known to be unchanged when its size and its bounds are the same, and each interval of the copy
+ * is still in the domain, which costs a couple of calls per interval instead of a walk over every value.
+ * <br/>
+ * A snapshot can also hold a set, the kernel or the envelope of a set variable (see {@link #update(ISet)}):
+ * sets are copied element by element, so that the cost does not depend on the range of their values.
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+final class DomainSnapshot {
+
+    /**
+     * Separator of the bounds of an interval, written as two dots
+     */
+    private static final char RANGE = '.';
+
+    private int size = -1, lb, ub;
+
+    /**
+     * Bounds of the intervals of the domain, in increasing order: [intervals[2k], intervals[2k+1]]
+     */
+    int[] intervals = new int[8];
+
+    int nbIntervals;
+
+    /**
+     * Encoding of the domain, <i>length</i> first bytes of <i>bytes</i>
+     */
+    byte[] bytes = new byte[64];
+
+    int length;
+
+    /**
+     * Kind of the encoding in <i>bytes</i>: 0 if out of date, 1 for values, 2 for intervals
+     */
+    private int encoded;
+
+    /**
+     * Elements of the last set copied, when they are not iterated in increasing order
+     */
+    private int[] elements;
+
+    /**
+     * Bring <code>this</code> up to date with the domain of <i>var</i>
+     *
+     * @return <tt>true</tt> if the domain has changed since the last call
+     */
+    boolean update(IntVar var) {
+        if (matches(var)) {
+            return false;
+        }
+        size = var.getDomainSize();
+        lb = var.getLB();
+        ub = var.getUB();
+        nbIntervals = 0;
+        encoded = 0;
+        int a = lb;
+        while (true) {
+            int b = var.nextValueOut(a) - 1;
+            if (2 * nbIntervals + 2 > intervals.length) {
+                intervals = Arrays.copyOf(intervals, intervals.length * 2);
+            }
+            intervals[2 * nbIntervals] = a;
+            intervals[2 * nbIntervals + 1] = b;
+            nbIntervals++;
+            if (b >= ub) {
+                break;
+            }
+            a = var.nextValue(b);
+        }
+        return true;
+    }
+
+    private boolean matches(IntVar var) {
+        if (size != var.getDomainSize() || lb != var.getLB() || ub != var.getUB()) {
+            return false;
+        }
+        // same size: the domain is equal to the copy if it contains each of its intervals
+        for (int k = 0; k < nbIntervals; k++) {
+            int a = intervals[2 * k], b = intervals[2 * k + 1];
+            if (!var.contains(a) || (b > a && var.nextValueOut(a) <= b)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Bring <code>this</code> up to date with <i>set</i>
+     *
+     * @return <tt>true</tt> if the set has changed since the last call
+     */
+    boolean update(ISet set) {
+        int n = set.size();
+        if (n == size && containedIn(set)) {
+            return false;
+        }
+        size = n;
+        nbIntervals = 0;
+        encoded = 0;
+        ISetIterator it = set.iterator();
+        int prev = Integer.MIN_VALUE;
+        boolean sorted = true;
+        while (it.hasNext()) {
+            int v = it.nextInt();
+            if (nbIntervals > 0 && v <= prev) {
+                sorted = false;
+                break;
+            }
+            add(v);
+            prev = v;
+        }
+        if (!sorted) {
+            // a set with no order: sort a copy of its elements
+            if (elements == null || elements.length < n) {
+                elements = new int[Math.max(n, 16)];
+            }
+            int k = 0;
+            it = set.iterator();
+            while (it.hasNext()) {
+                elements[k++] = it.nextInt();
+            }
+            Arrays.sort(elements, 0, n);
+            nbIntervals = 0;
+            for (k = 0; k < n; k++) {
+                add(elements[k]);
+            }
+        }
+        if (nbIntervals > 0) {
+            lb = intervals[0];
+            ub = intervals[2 * nbIntervals - 1];
+        }
+        return true;
+    }
+
+    /**
+     * @return <tt>true</tt> if each value of the copy is in <i>set</i>
+     */
+    private boolean containedIn(ISet set) {
+        for (int k = 0; k < nbIntervals; k++) {
+            for (int v = intervals[2 * k]; v <= intervals[2 * k + 1]; v++) {
+                if (!set.contains(v)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Add <i>v</i>, greater than any value of the copy
+     */
+    private void add(int v) {
+        if (nbIntervals > 0 && intervals[2 * nbIntervals - 1] == v - 1) {
+            intervals[2 * nbIntervals - 1] = v;
+            return;
+        }
+        if (2 * nbIntervals + 2 > intervals.length) {
+            intervals = Arrays.copyOf(intervals, intervals.length * 2);
+        }
+        intervals[2 * nbIntervals] = v;
+        intervals[2 * nbIntervals + 1] = v;
+        nbIntervals++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Build the encoding of the domain, if not done yet
+     *
+     * @param ranges <tt>true</tt> to encode the domain as intervals, <tt>false</tt> as values
+     */
+    void encode(boolean ranges) {
+        int kind = ranges ? 2 : 1;
+        if (encoded != kind) {
+            encoded = kind;
+            length = 0;
+            append(ranges, intervals, 0, nbIntervals);
+        }
+    }
+
+    /**
+     * Replace the encoding by the one of the <i>n</i> intervals of <i>intervals</i> starting at <i>from</i>,
+     * which are not the domain of <code>this</code>
+     */
+    void encode(boolean ranges, int[] intervals, int from, int n) {
+        encoded = 0;
+        length = 0;
+        append(ranges, intervals, from, n);
+    }
+
+    private void append(boolean ranges, int[] intervals, int from, int n) {
+        for (int k = from; k < from + 2 * n; k += 2) {
+            int a = intervals[k], b = intervals[k + 1];
+            if (ranges && b > a + 1) {
+                append(a, RANGE);
+                append(b, ' ');
+            } else {
+                for (int v = a; v <= b; v++) {
+                    append(v, ' ');
+                }
+            }
+        }
+    }
+
+    /**
+     * Append <i>v</i> followed by <i>separator</i> to the encoding
+     */
+    private void append(int v, char separator) {
+        if (length + 13 > bytes.length) {
+            bytes = Arrays.copyOf(bytes, bytes.length * 2);
+        }
+        long u = v;
+        if (u < 0) {
+            bytes[length++] = '-';
+            u = -u;
+        }
+        int start = length;
+        do {
+            bytes[length++] = (byte) ('0' + u % 10);
+            u /= 10;
+        } while (u > 0);
+        for (int i = start, j = length - 1; i < j; i++, j--) {
+            byte t = bytes[i];
+            bytes[i] = bytes[j];
+            bytes[j] = t;
+        }
+        if (separator == RANGE) {
+            bytes[length++] = '.';
+        }
+        bytes[length++] = (byte) separator;
+    }
+}
@@ -11,6 +11,7 @@ package org.chocosolver.cpviz.visualizers;
 import org.chocosolver.cpviz.Visualizer;
 import org.chocosolver.solver.search.strategy.decision.Decision;
 import org.chocosolver.solver.variables.IntVar;
+import org.chocosolver.solver.variables.Variable;
 
 /**
  * A specialized visualizer for a vector the element constraint.
@@ -23,6 +24,8 @@ public final class Element extends Visualizer {
 
     private static final String type = "element";
 
+    private static final String[] STATICS = {Writer._2};
+
     final IntVar index;
     final int[] values;
     final IntVar value;
@@ -67,21 +70,37 @@ public final class Element extends Visualizer {
         this.value = value;
     }
 
+    @Override
+    protected Variable[] decisionVariables() {
+        return new Variable[]{index, value};
+    }
+
+    @Override
+    protected String[] staticArguments() {
+        return STATICS;
+    }
+
+    @Override
+    protected void printStatic(String idx) {
+        writer.argumentIn(Writer._2, 3).array(values, 4).argumentOut(3);
+    }
+
     @Override
     protected void print(boolean focus, Decision decision) {
         writer.argumentIn(Writer._1, 3).ivar(index, Writer._1, 4).argumentOut(3);
 
-        if (decision != null && decision.getDecisionVariable() == index) {
+        int k = locate(decision);
+        if (k == 0) {
             if (focus) {
                 writer.focus(Writer._1 + Writer._S + Integer.toString(1), group, type);
             } else {
                 writer.fail(Writer._1 + Writer._S + Integer.toString(1), group, (Integer) decision.getDecisionValue());
             }
         }
-        writer.argumentIn(Writer._2, 3).array(values, 4).argumentOut(3);
+        staticArgument(Writer._2);
 
         writer.argumentIn(Writer._3, 3).ivar(value, Writer._3, 4).argumentOut(3);
-        if (decision != null && decision.getDecisionVariable() == value) {
+        if (k == 1) {
             if (focus) {
                 writer.focus(Writer._3 + Writer._S + Integer.toString(3), group, type);
             } else {
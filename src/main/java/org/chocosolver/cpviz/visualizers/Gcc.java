@@ -24,6 +24,8 @@ public class Gcc extends Visualizer {
 
     private static final String type = "gcc";
 
+    private static final String[] STATICS = {"1"};
+
     final IntVar[] vars;
     final int[] values, low, high;
 
@@ -71,7 +73,12 @@ public class Gcc extends Visualizer {
     }
 
     @Override
-    protected void print(boolean focus, Decision decision) {
+    protected String[] staticArguments() {
+        return STATICS;
+    }
+
+    @Override
+    protected void printStatic(String idx) {
         writer.argumentIn("1", 3);
         for (int i = 0; i < values.length; i++) {
             writer.tupleIn(Integer.toString(i + 1), 4)
@@ -81,6 +88,11 @@ public class Gcc extends Visualizer {
                     .tupleOut(4);
         }
         writer.argumentOut(3);
+    }
+
+    @Override
+    protected void print(boolean focus, Decision decision) {
+        staticArgument("1");
 
         writer.argumentIn("2", 3).arrayDvar(vars, 4).argumentOut(3);
     }
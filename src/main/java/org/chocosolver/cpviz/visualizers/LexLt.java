@@ -12,6 +12,7 @@ import org.slf4j.Logger;
 import org.chocosolver.cpviz.Visualizer;
 import org.chocosolver.solver.search.strategy.decision.Decision;
 import org.chocosolver.solver.variables.IntVar;
+import org.chocosolver.solver.variables.Variable;
 
 /**
  * A specialized visualizer for the lex less than constraint.
@@ -61,30 +62,30 @@ public class LexLt extends Visualizer {
         this.Y = Y;
     }
 
+    /**
+     * @return the variables of X, then the variables of Y
+     */
+    @Override
+    protected Variable[] decisionVariables() {
+        Variable[] vars = new Variable[X.length + Y.length];
+        System.arraycopy(X, 0, vars, 0, X.length);
+        System.arraycopy(Y, 0, vars, X.length, Y.length);
+        return vars;
+    }
+
     @Override
     protected void print(boolean focus, Decision decision) {
         writer.argumentIn(Writer._1, 3).arrayDvar(X, 4).argumentOut(3);
         writer.argumentIn(Writer._2, 3).arrayDvar(Y, 4).argumentOut(3);
 
-        /*if (decision != null) {
-            for (int x = 0; x < X.length; x++) {
-                if (decision.getBranchingObject() == X[x]) {
-                    if (focus) {
-                        writer.focus(1 + "," + Integer.toString(x + 1), group, type);
-                    } else {
-                        writer.fail(1 + "," + Integer.toString(x + 1), group, decision.getBranchingValue());
-                    }
-                }
-            }
-            for (int y = 0; y < Y.length; y++) {
-                if (decision.getBranchingObject() == Y[y]) {
-                    if (focus) {
-                        writer.focus(2 + "," + Integer.toString(y + 1), group, type);
-                    } else {
-                        writer.fail(2 + "," + Integer.toString(y + 1), group, decision.getBranchingValue());
-                    }
-                }
+        int k = locate(decision);
+        if (k >= 0) {
+            String idx = k < X.length ? Writer._1 + Writer._S + (k + 1) : Writer._2 + Writer._S + (k - X.length + 1);
+            if (focus) {
+                writer.focus(idx, group, type);
+            } else {
+                writer.fail(idx, group, (Integer) decision.getDecisionValue());
             }
-        }*/
+        }
     }
 }
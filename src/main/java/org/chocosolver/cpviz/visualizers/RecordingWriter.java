@@ -0,0 +1,208 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz.visualizers;
+
+import org.chocosolver.solver.variables.IntVar;
+import org.chocosolver.solver.variables.SetVar;
+
+/**
+ * A {@link Writer} which does not format anything but stores the calls into a {@link StateRecord}.
+ * <br/>
+ * Domains, and the kernels and envelopes of set variables, are captured as plain integers,
+ * their size followed by their intervals, so that the record stays valid once the search has moved on.
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public class RecordingWriter extends Writer {
+
+    private StateRecord record;
+
+    public RecordingWriter() {
+        super(null);
+    }
+
+    /**
+     * Set the record to fill with the next calls
+     *
+     * @param record a record, cleared by the caller if needed
+     */
+    public void setRecord(StateRecord record) {
+        this.record = record;
+    }
+
+    @Override
+    public Writer stateIn(long sid, long nid, long parent) {
+        record.put(StateRecord.STATE_IN);
+        record.put(sid);
+        record.put(nid);
+        record.put(parent);
+        return this;
+    }
+
+    @Override
+    public Writer stateOut() {
+        record.put(StateRecord.STATE_OUT);
+        return this;
+    }
+
+    @Override
+    public Writer visualizerIn(int id) {
+        record.put(StateRecord.VISUALIZER_IN);
+        record.put(id);
+        return this;
+    }
+
+    @Override
+    public Writer visualizerOut() {
+        record.put(StateRecord.VISUALIZER_OUT);
+        return this;
+    }
+
+    @Override
+    protected Writer ivar(IntVar ivar, String idx, int pf) {
+        if (ivar.isInstantiated()) {
+            return integer(ivar.getValue(), idx, pf);
+        } else if (ivar.hasEnumeratedDomain()) {
+            record.put(StateRecord.DVAR);
+            record.ref(idx);
+            record.put(pf);
+            DomainSnapshot domain = snapshot(ivar);
+            record.put(domain.size());
+            record.put(domain.nbIntervals);
+            record.put(domain);
+        } else {
+            record.put(StateRecord.BOUNDS);
+            record.ref(idx);
+            record.put(pf);
+            record.put(ivar.getLB());
+            record.put(ivar.getUB());
+        }
+        return this;
+    }
+
+    @Override
+    protected Writer svar(SetVar svar, String idx, int pf) {
+        DomainSnapshot[] set = snapshot(svar);
+        if (svar.isInstantiated()) {
+            record.put(StateRecord.SINTEGER);
+            record.ref(idx);
+            record.put(pf);
+            record.put(set[0].size());
+            record.put(set[0].nbIntervals);
+            record.put(set[0]);
+        } else {
+            record.put(StateRecord.SVAR);
+            record.ref(idx);
+            record.put(pf);
+            record.put(set[0].size());
+            record.put(set[1].size());
+            record.put(set[0].nbIntervals);
+            record.put(set[0]);
+            record.put(set[1].nbIntervals);
+            record.put(set[1]);
+        }
+        return this;
+    }
+
+    @Override
+    protected Writer integer(int value, String idx, int pf) {
+        record.put(StateRecord.INTEGER);
+        record.ref(idx);
+        record.put(pf);
+        record.put(value);
+        return this;
+    }
+
+    @Override
+    protected Writer tile(String idx, int pf, int instantiated, int size, int lb, int ub) {
+        record.put(StateRecord.TILE);
+        record.ref(idx);
+        record.put(pf);
+        record.put(instantiated);
+        record.put(size);
+        record.put(lb);
+        record.put(ub);
+        return this;
+    }
+
+    @Override
+    protected void layoutChanged() {
+        record.put(StateRecord.LAYOUT);
+    }
+
+    @Override
+    public Writer reference(String idx, int pf) {
+        return in(StateRecord.REFERENCE, idx, pf);
+    }
+
+    @Override
+    protected Writer argumentIn(String idx, int pf) {
+        return in(StateRecord.ARGUMENT_IN, idx, pf);
+    }
+
+    @Override
+    protected Writer argumentOut(int pf) {
+        return out(StateRecord.ARGUMENT_OUT, pf);
+    }
+
+    @Override
+    protected Writer tupleIn(String idx, int pf) {
+        return in(StateRecord.TUPLE_IN, idx, pf);
+    }
+
+    @Override
+    protected Writer tupleOut(int pf) {
+        return out(StateRecord.TUPLE_OUT, pf);
+    }
+
+    @Override
+    protected Writer collectionIn(String idx, int pf) {
+        return in(StateRecord.COLLECTION_IN, idx, pf);
+    }
+
+    @Override
+    protected Writer collectionOut(int pf) {
+        return out(StateRecord.COLLECTION_OUT, pf);
+    }
+
+    @Override
+    protected void focus(String idx, String group, String type) {
+        record.put(StateRecord.FOCUS);
+        record.ref(idx);
+        record.ref(group);
+        record.ref(type);
+    }
+
+    @Override
+    protected void focus(String idx, String group) {
+        focus(idx, group, null);
+    }
+
+    @Override
+    protected void fail(String idx, String group, int value) {
+        record.put(StateRecord.FAIL);
+        record.ref(idx);
+        record.ref(group);
+        record.put(value);
+    }
+
+    private Writer in(int op, String idx, int pf) {
+        record.put(op);
+        record.ref(idx);
+        record.put(pf);
+        return this;
+    }
+
+    private Writer out(int op, int pf) {
+        record.put(op);
+        record.put(pf);
+        return this;
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * This file is part of choco-cpviz, https://github.com/chocoteam/choco-cpviz
+ *
+ * Copyright (c) 2017-09-08T13:48:05Z, IMT Atlantique. All rights reserved.
+ *
+ * Licensed under the BSD 4-clause license.
+ * See LICENSE file in the project root for full license information.
+ */
+package org.chocosolver.cpviz.visualizers;
+
+import java.util.Arrays;
+
+/**
+ * A compact, reusable record of the calls made to a {@link Writer} while printing a state.
+ * <br/>
+ * Calls are stored as a stream of int codes and operands, strings (indices, groups, types) are kept by reference.
+ * A record is filled by a {@link RecordingWriter} on the search thread and replayed later,
+ * by {@link Writer#replay(StateRecord)}, on the thread that actually writes the log file.
+ * <br/>
+ *
+ * @since 17/10/26
+ */
+public final class StateRecord {
+
+    static final int STATE_IN = 1, STATE_OUT = 2, VISUALIZER_IN = 3, VISUALIZER_OUT = 4,
+            ARGUMENT_IN = 5, ARGUMENT_OUT = 6, TUPLE_IN = 7, TUPLE_OUT = 8, COLLECTION_IN = 9, COLLECTION_OUT = 10,
+            INTEGER = 11, DVAR = 12, BOUNDS = 13, FOCUS = 14, FAIL = 15, TILE = 16, LAYOUT = 17,
+            REFERENCE = 18, SINTEGER = 19, SVAR = 20;
+
+    int[] ops = new int[256];
+
+    int size;
+
+    Object[] refs = new Object[32];
+
+    int nbRefs;
+
+    /**
+     * Empty <code>this</code>, the internal arrays are kept for reuse.
+     */
+    public void clear() {
+        size = 0;
+        Arrays.fill(refs, 0, nbRefs, null);
+        nbRefs = 0;
+    }
+
+    /**
+     * @return <tt>true</tt> if nothing has been recorded since the last {@link #clear()}
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return identifier of the recorded state, -1 if none
+     */
+    public long stateId() {
+        return size > 0 && ops[0] == STATE_IN ? getLong(1) : -1;
+    }
+
+    /**
+     * @return identifier of the tree node of the recorded state
+     */
+    public long nodeId() {
+        return size > 0 && ops[0] == STATE_IN ? getLong(3) : -1;
+    }
+
+    void put(int v) {
+        if (size == ops.length) {
+            ops = Arrays.copyOf(ops, size * 3 / 2 + 1);
+        }
+        ops[size++] = v;
+    }
+
+    void put(long v) {
+        put((int) (v >>> 32));
+        put((int) v);
+    }
+
+    /**
+     * Put the bounds of the intervals of <i>domain</i>
+     */
+    void put(DomainSnapshot domain) {
+        int n = 2 * domain.nbIntervals;
+        if (size + n > ops.length) {
+            ops = Arrays.copyOf(ops, Math.max(size + n, size * 3 / 2 + 1));
+        }
+        System.arraycopy(domain.intervals, 0, ops, size, n);
+        size += n;
+    }
+
+    void ref(Object o) {
+        if (nbRefs == refs.length) {
+            refs = Arrays.copyOf(refs, nbRefs * 3 / 2 + 1);
+        }
+        refs[nbRefs] = o;
+        put(nbRefs++);
+    }
+
+    long getLong(int i) {
+        return ((long) ops[i] << 32) | (ops[i + 1] & 0xFFFFFFFFL);
+    }
+}
@@ -65,16 +65,20 @@ public class Vector extends Visualizer {
         this.variables = vars;
     }
 
+    @Override
+    protected Variable[] decisionVariables() {
+        return variables;
+    }
+
     @Override
     protected void print(boolean focus, Decision decision) {
         writer.arrayDvar(variables, 3);
-        for (int i = 0; i < variables.length; i++) {
-            if (decision != null && decision == variables[i]) {
-                if (focus) {
-                    writer.focus(Integer.toString(i + 1), group, type);
-                } else {
-                    writer.fail(Integer.toString(i + 1), group, (Integer) decision.getDecisionValue());
-                }
+        int i = locate(decision);
+        if (i >= 0) {
+            if (focus) {
+                writer.focus(Integer.toString(i + 1), group, type);
+            } else {
+                writer.fail(Integer.toString(i + 1), group, (Integer) decision.getDecisionValue());
             }
         }
     }
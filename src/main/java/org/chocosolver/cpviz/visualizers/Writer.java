@@ -8,16 +8,29 @@
  */
 package org.chocosolver.cpviz.visualizers;
 
-import org.chocosolver.cpviz.CPVizConstant;
+import org.chocosolver.cpviz.io.ByteEmitter;
 import org.chocosolver.solver.variables.IntVar;
 import org.chocosolver.solver.variables.SetVar;
 import org.chocosolver.solver.variables.Variable;
-import org.chocosolver.util.iterators.DisposableIntIterator;
-import org.chocosolver.util.iterators.DisposableValueIterator;
 
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.IdentityHashMap;
+
+import static org.chocosolver.cpviz.io.XmlTags.*;
 
 /**
+ * Write the states of the visualizers in the visualization file.
+ * <br/>
+ * Tags are written, as pre-encoded fragments, through a {@link ByteEmitter}: no format string is parsed
+ * and integers are not boxed.
+ * The encoding of the domain of each enumerated variable is cached (see {@link DomainSnapshot}),
+ * and only rebuilt when the domain has changed; so are the kernel and the envelope of each set variable.
+ * Domains are written value by value, or as maximal intervals once {@link #setRangeDomains(boolean)} is called.
  * <br/>
  *
  * @author Charles Prud'homme
@@ -27,17 +40,113 @@ public class Writer {
 
     private static final String[] PREFIX = {"", "\t", "\t\t", "\t\t\t", "\t\t\t\t", "\t\t\t\t\t", "\t\t\t\t\t\t"};
 
+    private static final int ADAPTER_CAPACITY = 1 << 12;
+
     public static final String _1 = "1", _2 = "2", _3 = "3", _S = " ";
 
-    PrintWriter visualization;
+    private static final String[] INDICES = new String[1024];
 
-    private StringBuilder _st = new StringBuilder();
+    static {
+        for (int i = 0; i < INDICES.length; i++) {
+            INDICES[i] = Integer.toString(i);
+        }
+    }
 
+    ByteEmitter visualization;
 
-    public Writer(PrintWriter visualization) {
+    /**
+     * Last known domain of each enumerated variable written
+     */
+    private final IdentityHashMap<IntVar, DomainSnapshot> domains = new IdentityHashMap<>();
+
+    /**
+     * Last known kernel and envelope of each set variable written
+     */
+    private final IdentityHashMap<SetVar, DomainSnapshot[]> sets = new IdentityHashMap<>();
+
+    /**
+     * Encoding of the domains replayed from a record
+     */
+    private final DomainSnapshot replayed = new DomainSnapshot();
+
+    private boolean ranges;
+
+    public Writer(ByteEmitter visualization) {
         this.visualization = visualization;
     }
 
+    /**
+     * Create a writer over a character stream.
+     * The states are encoded into an internal buffer, handed over to <i>visualization</i>
+     * when the buffer is full and on {@link #flush()}.
+     *
+     * @param visualization destination of the states
+     * @deprecated use {@link #Writer(ByteEmitter)}, which writes the bytes without decoding them
+     */
+    @Deprecated
+    public Writer(PrintWriter visualization) {
+        this(new ByteEmitter(new CharChannel(visualization), ADAPTER_CAPACITY));
+    }
+
+    /**
+     * Hand the buffered states over to the underlying channel or stream
+     */
+    public void flush() {
+        visualization.flush();
+    }
+
+    /**
+     * Write the enumerated domains as lists of maximal intervals, such as <code>1..998 1000</code>,
+     * instead of lists of values. An interval of two values is written as two values.
+     *
+     * @param ranges <tt>true</tt> to write intervals
+     */
+    public void setRangeDomains(boolean ranges) {
+        this.ranges = ranges;
+    }
+
+    /**
+     * Return the string representation of <i>i</i>, cached for small values
+     *
+     * @param i a positive index
+     * @return <i>i</i> as a string
+     */
+    public static String index(int i) {
+        return i >= 0 && i < INDICES.length ? INDICES[i] : Integer.toString(i);
+    }
+
+    /**
+     * Open a new state of the visualization
+     *
+     * @param sid    state identifier
+     * @param nid    tree node identifier
+     * @param parent identifier of the parent tree node, -1 if none
+     */
+    public Writer stateIn(long sid, long nid, long parent) {
+        visualization.write(STATE_IN[0]).write(sid).write(STATE_IN[1]).write(nid).write(STATE_IN[2]);
+        return this;
+    }
+
+    public Writer stateOut() {
+        visualization.write(STATE_OUT);
+        return this;
+    }
+
+    /**
+     * Open the state of the visualizer <i>id</i>, within the current state
+     *
+     * @param id visualizer identifier
+     */
+    public Writer visualizerIn(int id) {
+        visualization.write(VISUALIZER_STATE_IN[0]).write(id).write(VISUALIZER_STATE_IN[1]);
+        return this;
+    }
+
+    public Writer visualizerOut() {
+        visualization.write(VISUALIZER_STATE_OUT);
+        return this;
+    }
+
     protected Writer var(Variable var, String idx, int pf) {
         if (var instanceof IntVar) {
             IntVar _ivar = (IntVar) var;
@@ -51,124 +160,406 @@ public class Writer {
 
     protected Writer ivar(IntVar ivar, String idx, int pf) {
         if (ivar.isInstantiated()) {
-            visualization.printf(CPVizConstant.V_INTEGER_TAG, prefix(pf), idx, ivar.getValue());
-        } else {
-            _st.setLength(0);
-            if (ivar.hasEnumeratedDomain()) {
-                DisposableValueIterator it = ivar.getValueIterator(true);
-                while (it.hasNext()) {
-                    _st.append(it.next()).append(' ');
-                }
-                it.dispose();
-            } else {
-                _st.append(ivar.getLB()).append(" .. ").append(ivar.getUB());
-            }
+            return integer(ivar.getValue(), idx, pf);
+        }
+        if (unchanged(domainPrint(ivar.getDomainSize()), pf)) {
+            return this;
+        }
+        if (!ivar.hasEnumeratedDomain()) {
+            return bounds(idx, pf, ivar.getLB(), ivar.getUB());
+        }
+        DomainSnapshot domain = snapshot(ivar);
+        domain.encode(ranges);
+        dvarIn(idx, pf);
+        visualization.write(domain.bytes, 0, domain.length);
+        return dvarOut();
+    }
 
-            visualization.printf(CPVizConstant.V_DVAR_TAG, prefix(pf), idx, _st.toString());
+    /**
+     * Return the domain of the enumerated variable <i>ivar</i>, brought up to date
+     */
+    DomainSnapshot snapshot(IntVar ivar) {
+        DomainSnapshot domain = domains.get(ivar);
+        if (domain == null) {
+            domain = new DomainSnapshot();
+            domains.put(ivar, domain);
         }
-        return this;
+        domain.update(ivar);
+        return domain;
+    }
+
+    /**
+     * Write an enumerated domain made of the <i>n</i> values of <i>values</i> starting at <i>from</i>,
+     * in increasing order
+     */
+    protected Writer dvar(String idx, int pf, int[] values, int from, int n) {
+        dvarIn(idx, pf);
+        for (int k = 0; k < n; k++) {
+            visualization.write(values[from + k]).write(' ');
+        }
+        return dvarOut();
+    }
+
+    /**
+     * Write an enumerated domain made of the <i>n</i> intervals of <i>intervals</i> starting at <i>from</i>,
+     * in increasing order, each one as its two bounds
+     */
+    protected Writer intervals(String idx, int pf, int[] intervals, int from, int n) {
+        replayed.encode(ranges, intervals, from, n);
+        dvarIn(idx, pf);
+        visualization.write(replayed.bytes, 0, replayed.length);
+        return dvarOut();
+    }
+
+    /**
+     * Write a bounded domain [<i>lb</i>, <i>ub</i>]
+     */
+    protected Writer bounds(String idx, int pf, int lb, int ub) {
+        dvarIn(idx, pf);
+        visualization.write(lb).write(BOUNDS).write(ub);
+        return dvarOut();
     }
 
     protected Writer integer(int value, String idx, int pf) {
-        visualization.printf(CPVizConstant.V_INTEGER_TAG, prefix(pf), idx, value);
+        if (unchanged(integerPrint(value), pf)) {
+            return this;
+        }
+        line(pf).write(INTEGER[0]).write(idx).write(INTEGER[1]).write(value).write(INTEGER[2]);
+        return this;
+    }
+
+    /**
+     * Write the summary of a tile of cells
+     *
+     * @param instantiated number of instantiated cells
+     * @param size         mean domain size of the cells, rounded up
+     * @param lb           smallest lower bound of the cells
+     * @param ub           largest upper bound of the cells
+     */
+    protected Writer tile(String idx, int pf, int instantiated, int size, int lb, int ub) {
+        if (unchanged(tilePrint(instantiated, size, lb, ub), pf)) {
+            return this;
+        }
+        line(pf).write(TILE[0]).write(idx).write(TILE[1]).write(instantiated).write(TILE[2]).write(size)
+                .write(TILE[3]).write(lb).write(TILE[4]).write(ub).write(TILE[5]);
         return this;
     }
 
     protected Writer svar(SetVar svar, String idx, int pf) {
+        if (unchanged(setPrint(svar.getLB().size(), svar.getUB().size()), pf)) {
+            return this;
+        }
+        DomainSnapshot[] set = snapshot(svar);
+        DomainSnapshot kernel = set[0];
+        kernel.encode(ranges);
         if (svar.isInstantiated()) {
-            //visualization.printf(CPVizConstant.V_SINTEGER_TAG, new Object[]{prefix(pf), idx, domain(svar.getDomain().getKernelIterator())});
+            line(pf).write(SINTEGER[0]).write(idx).write(SINTEGER[1]);
+            visualization.write(kernel.bytes, 0, kernel.length).write(SINTEGER[2]);
         } else {
-            //visualization.printf(CPVizConstant.V_SVAR_TAG, new Object[]{prefix(pf), idx, domain(svar.getDomain().getKernelIterator()),
-            //        domain(svar.getDomain().getEnveloppeIterator())});
+            DomainSnapshot envelope = set[1];
+            envelope.encode(ranges);
+            line(pf).write(SVAR[0]).write(idx).write(SVAR[1]);
+            visualization.write(kernel.bytes, 0, kernel.length).write(SVAR[2]);
+            visualization.write(envelope.bytes, 0, envelope.length).write(SVAR[3]);
+        }
+        return this;
+    }
+
+    /**
+     * Return the kernel and the envelope of <i>svar</i>, brought up to date;
+     * the envelope is only brought up to date when <i>svar</i> is not instantiated
+     */
+    DomainSnapshot[] snapshot(SetVar svar) {
+        DomainSnapshot[] set = sets.get(svar);
+        if (set == null) {
+            set = new DomainSnapshot[]{new DomainSnapshot(), new DomainSnapshot()};
+            sets.put(svar, set);
         }
-        throw new UnsupportedOperationException();
-        //return this;
+        set[0].update(svar.getLB());
+        if (!svar.isInstantiated()) {
+            set[1].update(svar.getUB());
+        }
+        return set;
+    }
+
+    /**
+     * Write an instantiated set variable, whose value is made of the <i>n</i> intervals of <i>intervals</i>
+     * starting at <i>from</i>, in increasing order, each one as its two bounds
+     */
+    protected Writer sinteger(String idx, int pf, int[] intervals, int from, int n) {
+        replayed.encode(ranges, intervals, from, n);
+        line(pf).write(SINTEGER[0]).write(idx).write(SINTEGER[1]);
+        visualization.write(replayed.bytes, 0, replayed.length).write(SINTEGER[2]);
+        return this;
+    }
+
+    /**
+     * Write a set variable whose kernel is made of the <i>nk</i> intervals of <i>kernel</i> starting at <i>kFrom</i>
+     * and whose envelope is made of the <i>ne</i> intervals of <i>envelope</i> starting at <i>eFrom</i>,
+     * in increasing order, each one as its two bounds
+     */
+    protected Writer svar(String idx, int pf, int[] kernel, int kFrom, int nk, int[] envelope, int eFrom, int ne) {
+        replayed.encode(ranges, kernel, kFrom, nk);
+        line(pf).write(SVAR[0]).write(idx).write(SVAR[1]);
+        visualization.write(replayed.bytes, 0, replayed.length).write(SVAR[2]);
+        replayed.encode(ranges, envelope, eFrom, ne);
+        visualization.write(replayed.bytes, 0, replayed.length).write(SVAR[3]);
+        return this;
     }
 
     protected Writer arrayDvar(Variable[] vars, int pf) {
         for (int i = 0; i < vars.length; i++) {
-            var(vars[i], Integer.toString(i + 1), pf);
+            var(vars[i], index(i + 1), pf);
         }
         return this;
     }
 
     protected Writer arrayDvar(IntVar[] vars, int pf) {
         for (int i = 0; i < vars.length; i++) {
-            ivar(vars[i], Integer.toString(i + 1), pf);
+            ivar(vars[i], index(i + 1), pf);
         }
         return this;
     }
 
     protected Writer arrayDvar(SetVar[] vars, int pf) {
         for (int i = 0; i < vars.length; i++) {
-            svar(vars[i], Integer.toString(i + 1), pf);
+            svar(vars[i], index(i + 1), pf);
         }
         return this;
     }
 
-    private String domain(DisposableIntIterator it) {
-        _st.setLength(0);
-        while (it.hasNext()) {
-            _st.append(it.next()).append(' ');
-        }
-        it.dispose();
-
-        return _st.toString();
-    }
-
     protected Writer array(int[] values, int pf) {
         for (int i = 0; i < values.length; i++) {
-            visualization.printf(CPVizConstant.V_INTEGER_TAG, prefix(pf), (i + 1), values[i]);
+            integer(values[i], index(i + 1), pf);
         }
         return this;
     }
 
+    /**
+     * Write a reference to the static argument <i>idx</i>, declared with the visualizer
+     */
+    public Writer reference(String idx, int pf) {
+        line(pf).write(STATIC[0]).write(idx).write(STATIC[1]);
+        return this;
+    }
+
     protected Writer argumentIn(String idx, int pf) {
-        visualization.printf(CPVizConstant.V_ARGUMENT_TAG_IN, prefix(pf), idx);
+        line(pf).write(ARGUMENT_IN[0]).write(idx).write(ARGUMENT_IN[1]);
         return this;
     }
 
     protected Writer argumentOut(int pf) {
-        visualization.printf(CPVizConstant.V_ARGUMENT_TAG_OUT, prefix(pf));
+        line(pf).write(ARGUMENT_OUT);
         return this;
     }
 
     protected Writer tupleIn(String idx, int pf) {
-        visualization.printf(CPVizConstant.V_TUPLE_TAG_IN, prefix(pf), idx);
+        line(pf).write(TUPLE_IN[0]).write(idx).write(TUPLE_IN[1]);
         return this;
     }
 
     protected Writer tupleOut(int pf) {
-        visualization.printf(CPVizConstant.V_TUPLE_TAG_OUT, prefix(pf));
+        line(pf).write(TUPLE_OUT);
         return this;
     }
 
     protected Writer collectionIn(String idx, int pf) {
-        visualization.printf(CPVizConstant.V_COLLECTION_TAG_IN, prefix(pf), idx);
+        line(pf).write(COLLECTION_IN[0]).write(idx).write(COLLECTION_IN[1]);
         return this;
     }
 
     protected Writer collectionOut(int pf) {
-        visualization.printf(CPVizConstant.V_COLLECTION_TAG_OUT, prefix(pf));
+        line(pf).write(COLLECTION_OUT);
         return this;
     }
 
     protected void focus(String idx, String group, String type) {
-        visualization.printf(CPVizConstant.V_FOCUS_TAG, prefix(3), idx, group, type);
+        line(3).write(FOCUS[0]).write(idx).write(FOCUS[1]).write(group).write(FOCUS[2]).write(type).write(FOCUS[3]);
     }
 
     protected void focus(String idx, String group) {
-        visualization.printf(CPVizConstant.V_FOCUS_NO_TYPE_TAG, prefix(3), idx, group);
+        line(3).write(FOCUS_NO_TYPE[0]).write(idx).write(FOCUS_NO_TYPE[1]).write(group).write(FOCUS_NO_TYPE[2]);
     }
 
     protected void fail(String idx, String group, int value) {
-        visualization.printf(CPVizConstant.V_FAILED_TAG, prefix(3), idx, group, value);
+        line(3).write(FAILED[0]).write(idx).write(FAILED[1]).write(group).write(FAILED[2]).write(value).write(FAILED[3]);
+    }
+
+    /**
+     * Write the calls stored in <i>record</i>, as if they were made on <code>this</code>.
+     *
+     * @param record calls to write
+     */
+    public Writer replay(StateRecord record) {
+        final int[] ops = record.ops;
+        final Object[] refs = record.refs;
+        int i = 0;
+        while (i < record.size) {
+            switch (ops[i++]) {
+                case StateRecord.STATE_IN:
+                    stateIn(record.getLong(i), record.getLong(i + 2), record.getLong(i + 4));
+                    i += 6;
+                    break;
+                case StateRecord.STATE_OUT:
+                    stateOut();
+                    break;
+                case StateRecord.VISUALIZER_IN:
+                    visualizerIn(ops[i++]);
+                    break;
+                case StateRecord.VISUALIZER_OUT:
+                    visualizerOut();
+                    break;
+                case StateRecord.ARGUMENT_IN:
+                    argumentIn((String) refs[ops[i]], ops[i + 1]);
+                    i += 2;
+                    break;
+                case StateRecord.ARGUMENT_OUT:
+                    argumentOut(ops[i++]);
+                    break;
+                case StateRecord.TUPLE_IN:
+                    tupleIn((String) refs[ops[i]], ops[i + 1]);
+                    i += 2;
+                    break;
+                case StateRecord.TUPLE_OUT:
+                    tupleOut(ops[i++]);
+                    break;
+                case StateRecord.COLLECTION_IN:
+                    collectionIn((String) refs[ops[i]], ops[i + 1]);
+                    i += 2;
+                    break;
+                case StateRecord.COLLECTION_OUT:
+                    collectionOut(ops[i++]);
+                    break;
+                case StateRecord.INTEGER:
+                    integer(ops[i + 2], (String) refs[ops[i]], ops[i + 1]);
+                    i += 3;
+                    break;
+                case StateRecord.DVAR: {
+                    int n = ops[i + 3];
+                    if (!unchanged(domainPrint(ops[i + 2]), ops[i + 1])) {
+                        intervals((String) refs[ops[i]], ops[i + 1], ops, i + 4, n);
+                    }
+                    i += 4 + 2 * n;
+                }
+                break;
+                case StateRecord.SINTEGER: {
+                    int n = ops[i + 3];
+                    if (!unchanged(setPrint(ops[i + 2], ops[i + 2]), ops[i + 1])) {
+                        sinteger((String) refs[ops[i]], ops[i + 1], ops, i + 4, n);
+                    }
+                    i += 4 + 2 * n;
+                }
+                break;
+                case StateRecord.SVAR: {
+                    int nk = ops[i + 4], ne = ops[i + 5 + 2 * nk];
+                    if (!unchanged(setPrint(ops[i + 2], ops[i + 3]), ops[i + 1])) {
+                        svar((String) refs[ops[i]], ops[i + 1], ops, i + 5, nk, ops, i + 6 + 2 * nk, ne);
+                    }
+                    i += 6 + 2 * nk + 2 * ne;
+                }
+                break;
+                case StateRecord.BOUNDS:
+                    if (!unchanged(domainPrint(ops[i + 3] - ops[i + 2] + 1), ops[i + 1])) {
+                        bounds((String) refs[ops[i]], ops[i + 1], ops[i + 2], ops[i + 3]);
+                    }
+                    i += 4;
+                    break;
+                case StateRecord.TILE:
+                    tile((String) refs[ops[i]], ops[i + 1], ops[i + 2], ops[i + 3], ops[i + 4], ops[i + 5]);
+                    i += 6;
+                    break;
+                case StateRecord.LAYOUT:
+                    layoutChanged();
+                    break;
+                case StateRecord.REFERENCE:
+                    reference((String) refs[ops[i]], ops[i + 1]);
+                    i += 2;
+                    break;
+                case StateRecord.FOCUS: {
+                    String type = (String) refs[ops[i + 2]];
+                    if (type == null) {
+                        focus((String) refs[ops[i]], (String) refs[ops[i + 1]]);
+                    } else {
+                        focus((String) refs[ops[i]], (String) refs[ops[i + 1]], type);
+                    }
+                    i += 3;
+                }
+                break;
+                case StateRecord.FAIL:
+                    fail((String) refs[ops[i]], (String) refs[ops[i + 1]], ops[i + 2]);
+                    i += 3;
+                    break;
+                default:
+                    throw new IllegalStateException("unknown operation " + ops[i - 1]);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Called before writing an element (an integer or a domain) of a visualizer state.
+     * Returning <tt>true</tt> means the element is not written.
+     *
+     * @param print fingerprint of the element, see {@link #domainPrint(int)} and {@link #integerPrint(int)}
+     * @param pf    indentation of the element
+     * @return <tt>false</tt>, every element is written
+     */
+    protected boolean unchanged(long print, int pf) {
+        return false;
+    }
+
+    /**
+     * Called when a visualizer changes the positions of the elements of its state, within the current state:
+     * the next elements cannot be compared with the elements at the same position in the parent state anymore.
+     */
+    protected void layoutChanged() {
+    }
+
+    /**
+     * Fingerprint of a domain of size <i>size</i>.
+     * Along a branch domains can only shrink, so two domains of a variable with the same size are equal.
+     */
+    protected static long domainPrint(int size) {
+        return (1L << 32) | size;
+    }
+
+    /**
+     * Fingerprint of a set variable whose kernel has <i>kernel</i> elements and envelope <i>envelope</i> elements.
+     * Along a branch kernels can only grow and envelopes only shrink, so the difference of the sizes can only increase:
+     * two such sets with the same difference are equal. The difference is computed on <tt>long</tt>,
+     * it cannot overflow whatever the sizes.
+     */
+    protected static long setPrint(long kernel, long envelope) {
+        return (1L << 61) | ((kernel - envelope) & ((1L << 61) - 1));
+    }
+
+    /**
+     * Fingerprint of the integer <i>value</i>
+     */
+    protected static long integerPrint(int value) {
+        return value & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Fingerprint of the summary of a tile.
+     * Along a branch, the number of instantiated cells and the smallest lower bound can only increase,
+     * the mean domain size and the largest upper bound can only decrease:
+     * two summaries of a tile with the same fingerprint are equal.
+     */
+    protected static long tilePrint(int instantiated, int size, int lb, int ub) {
+        return (1L << 62) | (((long) instantiated - size + lb - ub) & ((1L << 62) - 1));
     }
 
+    /**
+     * Return <i>nb</i> tabulations, as a string
+     *
+     * @deprecated the states are written through a {@link ByteEmitter}, use {@link #line(int)}
+     */
+    @Deprecated
     protected String prefix(int nb) {
-        if (nb >= 0 && nb <= PREFIX.length) {
+        if (nb >= 0 && nb < PREFIX.length) {
             return PREFIX[nb];
-        } else if (nb > PREFIX.length) {
+        } else if (nb >= PREFIX.length) {
             final StringBuilder st = new StringBuilder();
             for (int i = 0; i < nb; i++) {
                 st.append(PREFIX[1]);
@@ -176,7 +567,72 @@ public class Writer {
             return st.toString();
         }
         return PREFIX[0];
+    }
+
+    /**
+     * Start a new line, indented with <i>pf</i> tabulations
+     */
+    protected ByteEmitter line(int pf) {
+        return visualization.repeat('\t', pf);
+    }
+
+    private void dvarIn(String idx, int pf) {
+        line(pf).write(DVAR[0]).write(idx).write(DVAR[1]);
+    }
+
+    private Writer dvarOut() {
+        visualization.write(DVAR[2]);
+        return this;
+    }
+
+    /**
+     * Decode the UTF-8 bytes handed over by an emitter into a character stream;
+     * a character split between two flushes is kept until its last bytes come.
+     */
+    private static final class CharChannel implements WritableByteChannel {
+
+        private final PrintWriter out;
+
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+
+        private final ByteBuffer bytes = ByteBuffer.allocate(ADAPTER_CAPACITY + 4);
+
+        private final CharBuffer chars = CharBuffer.allocate(ADAPTER_CAPACITY);
+
+        CharChannel(PrintWriter out) {
+            this.out = out;
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            int n = 0;
+            while (src.hasRemaining()) {
+                int k = Math.min(src.remaining(), bytes.remaining());
+                ByteBuffer part = src.duplicate();
+                part.limit(part.position() + k);
+                bytes.put(part);
+                src.position(src.position() + k);
+                n += k;
+                bytes.flip();
+                decoder.decode(bytes, chars, false);
+                chars.flip();
+                out.append(chars);
+                chars.clear();
+                bytes.compact();
+            }
+            out.flush();
+            return n;
+        }
 
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+            out.flush();
+        }
     }
 
 }
@@ -8,13 +8,70 @@
  */
 package org.chocosolver.cpviz;
 
+import org.chocosolver.cpviz.io.AsyncTraceWriter;
+import org.chocosolver.cpviz.io.Backpressure;
+import org.chocosolver.cpviz.io.ByteEmitter;
+import org.chocosolver.cpviz.io.BinaryTraceConverter;
+import org.chocosolver.cpviz.io.Codec;
+import org.chocosolver.cpviz.io.CompressingChannel;
+import org.chocosolver.cpviz.io.DeltaDecoder;
+import org.chocosolver.cpviz.io.RangeDecoder;
+import org.chocosolver.cpviz.io.SegmentRecovery;
+import org.chocosolver.cpviz.io.SegmentedChannel;
+import org.chocosolver.cpviz.io.TraceEvent;
+import org.chocosolver.cpviz.io.TraceFormat;
+import org.chocosolver.cpviz.sinks.CountingTraceSink;
+import org.chocosolver.cpviz.sinks.LiveStream;
+import org.chocosolver.cpviz.sinks.MemoryTraceSink;
 import org.chocosolver.cpviz.visualizers.*;
 import org.chocosolver.solver.Model;
+import org.chocosolver.solver.ParallelPortfolio;
 import org.chocosolver.solver.Solver;
+import org.chocosolver.solver.constraints.extension.Tuples;
+import org.chocosolver.solver.search.limits.FailCounter;
+import org.chocosolver.solver.search.loop.lns.INeighborFactory;
+import org.chocosolver.solver.search.loop.monitors.IMonitorDownBranch;
+import org.chocosolver.solver.search.strategy.Search;
 import org.chocosolver.solver.variables.BoolVar;
 import org.chocosolver.solver.variables.IntVar;
+import org.chocosolver.solver.variables.SetVar;
 import org.chocosolver.util.tools.ArrayUtils;
+import org.testng.Assert;
 import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * <br/>
@@ -78,6 +135,1152 @@ public class CPVizTest {
 
     }
 
+    @Test(groups = "1s")
+    public void testFocus() throws IOException {
+        int n = 4;
+
+        Model m = new Model();
+        Solver s = m.getSolver();
+        IntVar[] Q = m.intVarArray("Q", n, 1, n, false);
+        m.allDifferent(Q).post();
+        s.setSearch(Search.inputOrderLBSearch(Q));
+
+        Visualization visu = new Visualization("Focus", s, dir);
+        visu.createTree();
+        visu.createViz();
+        visu.addVisualizer(new Vector(Q, "expanded", n, n));
+        visu.addVisualizer(new DomainMatrix(new IntVar[][]{{Q[0], Q[1]}, {Q[2]}, {Q[3]}}, "expanded", n, n));
+        visu.addVisualizer(new LexLe(new IntVar[]{Q[0], Q[1]}, new IntVar[]{Q[2], Q[3]}, "expanded", n, n));
+        s.findSolution();
+
+        String viz = new String(Files.readAllBytes(new File(dir, "visualization-Focus.xml").toPath()));
+        Assert.assertTrue(viz.contains("<focus index=\"1\" group=\"\" type=\"vector\"/>"));
+        Assert.assertTrue(viz.contains("<focus index=\"1 2\" group=\"\" />"));
+        Assert.assertTrue(viz.contains("<focus index=\"2 1\" group=\"\" />"));
+        Assert.assertTrue(viz.contains("<focus index=\"2 1\" group=\"\" type=\"lex_le\"/>"));
+    }
+
+    @Test(groups = "1s")
+    public void testDomainSnapshot() throws IOException {
+        for (Backpressure backpressure : new Backpressure[]{null, Backpressure.BLOCK}) {
+            Model m = new Model();
+            Solver s = m.getSolver();
+            IntVar Y = m.intVar("Y", 1, 2, false);
+            IntVar X = m.intVar("X", 1, 5, false);
+            // same size and same bounds, but different domains, in the two branches
+            m.ifThen(m.arithm(Y, "=", 1), m.arithm(X, "!=", 2));
+            m.ifThen(m.arithm(Y, "=", 2), m.arithm(X, "!=", 3));
+            // the branch Y = 1 is only refuted by the search
+            IntVar Z = m.intVar("Z", 1, 2, false);
+            IntVar W = m.intVar("W", 1, 2, false);
+            Tuples tuples = new Tuples(true);
+            tuples.add(2, 1, 1);
+            tuples.add(2, 2, 2);
+            m.table(new IntVar[]{Y, Z, W}, tuples, "FC").post();
+            s.setSearch(Search.inputOrderLBSearch(Y, Z, W, X));
+
+            String name = backpressure == null ? "Snapshot" : "AsyncSnapshot";
+            Visualization visu = new Visualization(name, s, dir);
+            if (backpressure != null) {
+                visu.enableAsync(backpressure);
+            }
+            visu.createTree();
+            visu.createViz();
+            visu.addVisualizer(new Vector(new IntVar[]{X}, "expanded", 5, 5));
+            s.findSolution();
+
+            String viz = new String(Files.readAllBytes(new File(dir, "visualization-" + name + ".xml").toPath()));
+            Assert.assertTrue(viz.contains("domain=\"1 3 4 5 \""));
+            Assert.assertTrue(viz.contains("domain=\"1 2 4 5 \""));
+        }
+    }
+
+    @Test(groups = "1s")
+    public void testAsync() throws IOException {
+        for (Backpressure backpressure : new Backpressure[]{null, Backpressure.BLOCK}) {
+            int n = 6;
+
+            Model m = new Model();
+            Solver s = m.getSolver();
+            IntVar[] Q = m.intVarArray("Q", n, 1, n, false);
+            for (int i = 0; i < n; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    int k = j - i;
+                    m.post(m.arithm(Q[i], "!=", Q[j]));
+                    m.post(m.arithm(Q[i], "!=", Q[j], "+", k));
+                    m.post(m.arithm(Q[i], "!=", Q[j], "-", k));
+                }
+            }
+            Visualization visu = new Visualization(backpressure == null ? "Sync" : "Async", s, dir);
+            if (backpressure != null) {
+                visu.enableAsync(8, backpressure, 4);
+            }
+            visu.createTree();
+            visu.createViz();
+            Vector vector = new Vector(Q, "expanded", n, n);
+            vector.setMinMax(1, n);
+            visu.addVisualizer(vector);
+            s.findAllSolutions();
+        }
+        for (String file : new String[]{"tree-", "visualization-"}) {
+            Assert.assertEquals(
+                    Files.readAllBytes(new File(dir, file + "Async.xml").toPath()),
+                    Files.readAllBytes(new File(dir, file + "Sync.xml").toPath()));
+        }
+    }
+
+    @Test(groups = "1s")
+    public void testPrintWriterAdapter() {
+        StringWriter chars = new StringWriter();
+        Writer adapted = new Writer(new PrintWriter(chars));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ByteEmitter emitter = new ByteEmitter(Channels.newChannel(bytes), 64);
+        Writer direct = new Writer(emitter);
+        for (Writer writer : new Writer[]{adapted, direct}) {
+            writer.stateIn(1, 0, -1).visualizerIn(1);
+            for (int i = 0; i < 1000; i++) {
+                writer.reference("\u00e9" + i, 3);
+            }
+            writer.visualizerOut().stateOut();
+            writer.flush();
+        }
+        Assert.assertEquals(chars.toString(), new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test(groups = "1s")
+    public void testAsyncFailure() {
+        AsyncTraceWriter writer = new AsyncTraceWriter("cpviz-failure", 4, Backpressure.BLOCK, 1, event -> {
+            throw new IllegalStateException("event " + event.id);
+        });
+        for (int i = 0; i < 3; i++) {
+            writer.claim(TraceEvent.TRY).id = i;
+            writer.publish();
+        }
+        try {
+            writer.close();
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertEquals(e.getMessage(), "event 0");
+            Assert.assertEquals(e.getSuppressed().length, 2);
+        }
+    }
+
+    @Test(groups = "1s")
+    public void testDeltaStates() throws IOException {
+        for (String name : new String[]{"Full", "Delta", "AsyncDelta"}) {
+            int n = 8;
+
+            Model m = new Model();
+            Solver s = m.getSolver();
+            IntVar[] Q = m.intVarArray("Q", n, 1, n, false);
+            for (int i = 0; i < n; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    int k = j - i;
+                    m.post(m.arithm(Q[i], "!=", Q[j]));
+                    m.post(m.arithm(Q[i], "!=", Q[j], "+", k));
+                    m.post(m.arithm(Q[i], "!=", Q[j], "-", k));
+                }
+            }
+            Visualization visu = new Visualization(name, s, dir);
+            if (name.startsWith("Async")) {
+                visu.enableAsync(Backpressure.BLOCK);
+            }
+            visu.createTree();
+            visu.createViz();
+            if (name.endsWith("Delta")) {
+                visu.enableDeltaStates();
+            }
+            Vector vector = new Vector(Q, "expanded", n, n);
+            vector.setMinMax(1, n);
+            visu.addVisualizer(vector);
+            visu.addVisualizer(new AllDifferent(Q, "expanded", n, n));
+            s.findAllSolutions();
+        }
+        File full = new File(dir, "visualization-Full.xml");
+        for (String name : new String[]{"Delta", "AsyncDelta"}) {
+            File delta = new File(dir, "visualization-" + name + ".xml");
+            File decoded = new File(dir, "visualization-" + name + "Decoded.xml");
+            Assert.assertTrue(delta.length() < full.length());
+            DeltaDecoder.decode(delta, decoded);
+            Assert.assertEquals(Files.readAllBytes(decoded.toPath()), Files.readAllBytes(full.toPath()));
+        }
+        String state = DeltaDecoder.state(new File(dir, "visualization-Delta.xml"), 5);
+        Assert.assertNotNull(state);
+        Assert.assertTrue(new String(Files.readAllBytes(full.toPath()), "UTF-8").contains(state));
+    }
+
+    @Test(groups = "1s")
+    public void testBinaryFormat() throws IOException {
+        for (String name : new String[]{"Xml", "Binary", "AsyncBinary"}) {
+            int n = 8;
+
+            Model m = new Model();
+            Solver s = m.getSolver();
+            IntVar[] Q = m.intVarArray("Q", n, 1, n, false);
+            IntVar[] B = m.intVarArray("B", 2, -50, 1000, true);
+            for (int i = 0; i < n; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    int k = j - i;
+                    m.post(m.arithm(Q[i], "!=", Q[j]));
+                    m.post(m.arithm(Q[i], "!=", Q[j], "+", k));
+                    m.post(m.arithm(Q[i], "!=", Q[j], "-", k));
+                }
+            }
+            m.arithm(B[0], "<", B[1]).post();
+            m.arithm(B[0], "=", Q[0], "*", 7).post();
+            Visualization visu = new Visualization(name, s, dir,
+                    name.endsWith("Binary") ? TraceFormat.BINARY : TraceFormat.XML);
+            if (name.startsWith("Async")) {
+                visu.enableAsync(Backpressure.BLOCK);
+            }
+            visu.createTree();
+            visu.createViz();
+            Vector vector = new Vector(Q, "expanded", n, n);
+            vector.setMinMax(1, n);
+            visu.addVisualizer(vector);
+            visu.addVisualizer(new AllDifferent(Q, "expanded", n, n));
+            visu.addVisualizer(new Vector(B, "expanded", 2, 2));
+            s.findSolution();
+        }
+        for (String file : new String[]{"tree-", "visualization-"}) {
+            File xml = new File(dir, file + "Xml.xml");
+            for (String name : new String[]{"Binary", "AsyncBinary"}) {
+                File binary = new File(dir, file + name + TraceFormat.BINARY.extension);
+                File converted = new File(dir, file + name + ".xml");
+                Assert.assertTrue(binary.length() < xml.length());
+                BinaryTraceConverter.convert(binary, converted);
+                Assert.assertEquals(Files.readAllBytes(converted.toPath()), Files.readAllBytes(xml.toPath()));
+            }
+        }
+    }
+
+    @Test(groups = "1s")
+    public void testTruncatedBinary() throws Exception {
+        int n = 4;
+        Model m = new Model();
+        Solver s = m.getSolver();
+        IntVar[] Q = m.intVarArray("Q", n, 1, n, false);
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                int k = j - i;
+                m.post(m.arithm(Q[i], "!=", Q[j]));
+                m.post(m.arithm(Q[i], "!=", Q[j], "+", k));
+                m.post(m.arithm(Q[i], "!=", Q[j], "-", k));
+            }
+        }
+        Visualization visu = new Visualization("Truncated", s, dir, TraceFormat.BINARY);
+        visu.createTree();
+        visu.createViz();
+        visu.addVisualizer(new Vector(Q, "expanded", n, n));
+        visu.addVisualizer(new AllDifferent(Q, "expanded", n, n));
+        s.findSolution();
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        for (String file : new String[]{"tree-", "visualization-"}) {
+            byte[] binary = Files.readAllBytes(new File(dir, file + "Truncated" + TraceFormat.BINARY.extension).toPath());
+            int elements = 0;
+            // cut the trace at every byte, within nodes, states and their elements
+            for (int cut = 6; cut <= binary.length; cut++) {
+                ByteArrayOutputStream xml = new ByteArrayOutputStream();
+                ByteEmitter emitter = new ByteEmitter(Channels.newChannel(xml), 64);
+                BinaryTraceConverter.convert(new ByteArrayInputStream(binary, 0, cut), emitter);
+                emitter.flush();
+                Document doc = factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml.toByteArray()));
+                int count = doc.getElementsByTagName("*").getLength();
+                Assert.assertTrue(count >= elements);
+                elements = count;
+            }
+        }
+    }
+
+    @Test(groups = "1s")
+    public void testRecordingPolicy() throws Exception {
+        RecordingPolicy[] policies = {null, RecordingPolicy.maxDepth(2), RecordingPolicy.everyKth(3),
+                RecordingPolicy.firstNodes(5), RecordingPolicy.failureReservoir(2, 0), RecordingPolicy.byteBudget(4000)};
+        int full = 0;
+        for (int p = 0; p < policies.length; p++) {
+            int n = 8;
+
+            Model m = new Model();
+            Solver s = m.getSolver();
+            IntVar[] Q = m.intVarArray("Q", n, 1, n, false);
+            for (int i = 0; i < n; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    int k = j - i;
+                    m.post(m.arithm(Q[i], "!=", Q[j]));
+                    m.post(m.arithm(Q[i], "!=", Q[j], "+", k));
+                    m.post(m.arithm(Q[i], "!=", Q[j], "-", k));
+                }
+            }
+            s.setSearch(Search.inputOrderLBSearch(Q));
+            Visualization visu = new Visualization("Policy" + p, s, dir);
+            visu.setRecordingPolicy(policies[p]);
+            visu.createTree();
+            visu.createViz();
+            visu.addVisualizer(new Vector(Q, "expanded", n, n));
+            s.findSolution();
+
+            Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                    .parse(new File(dir, "tree-Policy" + p + ".xml"));
+            Set<String> ids = new HashSet<>();
+            ids.add("0");
+            int nodes = 0, summaries = 0;
+            NodeList list = doc.getDocumentElement().getChildNodes();
+            for (int i = 0; i < list.getLength(); i++) {
+                if (list.item(i) instanceof org.w3c.dom.Element) {
+                    org.w3c.dom.Element e = (org.w3c.dom.Element) list.item(i);
+                    if (e.hasAttribute("parent")) {
+                        Assert.assertTrue(ids.contains(e.getAttribute("parent")), e.getAttribute("parent"));
+                        ids.add(e.getAttribute("id"));
+                        if (CPVizConstant.SUMMARY.equals(e.getAttribute("name"))) {
+                            summaries++;
+                            nodes += Integer.parseInt(e.getAttribute("size"));
+                        } else {
+                            nodes++;
+                        }
+                    }
+                }
+            }
+            if (p == 0) {
+                full = nodes;
+                Assert.assertEquals(summaries, 0);
+            } else {
+                Assert.assertTrue(summaries > 0);
+                Assert.assertEquals(nodes, full);
+            }
+        }
+        // the budget counts the buffered bytes too
+        int last = policies.length - 1;
+        long written = new File(dir, "tree-Policy" + last + ".xml").length()
+                + new File(dir, "visualization-Policy" + last + ".xml").length();
+        Assert.assertTrue(written < 8000, Long.toString(written));
+        // every policy is asked, whatever the order
+        long[] asked = new long[1];
+        RecordingPolicy counting = (id, depth, failed, bytes) -> asked[0]++ >= 0;
+        RecordingPolicy both = RecordingPolicy.all(RecordingPolicy.firstNodes(1), counting);
+        Assert.assertTrue(both.accept(1, 1, false, 0));
+        Assert.assertFalse(both.accept(2, 1, false, 0));
+        Assert.assertFalse(both.accept(3, 1, false, 0));
+        Assert.assertEquals(asked[0], 3);
+    }
+
+    @Test(groups = "1s")
+    public void testCompression() throws IOException {
+        for (String name : new String[]{"Plain", "Gzip", "GzipBinary"}) {
+            int n = 8;
+
+            Model m = new Model();
+            Solver s = m.getSolver();
+            IntVar[] Q = m.intVarArray("Q", n, 1, n, false);
+            for (int i = 0; i < n; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    int k = j - i;
+                    m.post(m.arithm(Q[i], "!=", Q[j]));
+                    m.post(m.arithm(Q[i], "!=", Q[j], "+", k));
+                    m.post(m.arithm(Q[i], "!=", Q[j], "-", k));
+                }
+            }
+            Visualization visu = new Visualization(name, s, dir,
+                    name.endsWith("Binary") ? TraceFormat.BINARY : TraceFormat.XML);
+            if (name.startsWith("Gzip")) {
+                visu.setCodec(Codec.GZIP);
+            }
+            visu.createTree();
+            visu.createViz();
+            visu.addVisualizer(new Vector(Q, "expanded", n, n));
+            s.findAllSolutions();
+        }
+        for (String file : new String[]{"tree-", "visualization-"}) {
+            byte[] plain = Files.readAllBytes(new File(dir, file + "Plain.xml").toPath());
+            try (InputStream in = Codec.open(new File(dir, file + "Gzip.xml.gz"))) {
+                Assert.assertEquals(readAll(in), plain);
+            }
+            File converted = new File(dir, file + "GzipBinary.xml");
+            BinaryTraceConverter.convert(new File(dir, file + "GzipBinary.cpvb.gz"), converted);
+            Assert.assertEquals(Files.readAllBytes(converted.toPath()), plain);
+        }
+        // many small blocks, compressed concurrently
+        byte[] data = new byte[100_000];
+        new java.util.Random(0).nextBytes(data);
+        for (int i = 0; i < data.length; i += 3) {
+            data[i] = 'a';
+        }
+        File file = new File(dir, "blocks.gz");
+        try (CompressingChannel channel = new CompressingChannel(
+                FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING), Codec.GZIP, 1000)) {
+            for (int i = 0; i < data.length; i += 777) {
+                channel.write(ByteBuffer.wrap(data, i, Math.min(777, data.length - i)));
+            }
+        }
+        try (InputStream in = Codec.open(file)) {
+            Assert.assertEquals(readAll(in), data);
+        }
+        Assert.assertTrue(file.delete());
+    }
+
+    @Test(groups = "1s")
+    public void testSegments() throws Exception {
+        for (String name : new String[]{"Unsegmented", "Segmented"}) {
+            int n = 8;
+
+            Model m = new Model();
+            Solver s = m.getSolver();
+            IntVar[] Q = m.intVarArray("Q", n, 1, n, false);
+            for (int i = 0; i < n; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    int k = j - i;
+                    m.post(m.arithm(Q[i], "!=", Q[j]));
+                    m.post(m.arithm(Q[i], "!=", Q[j], "+", k));
+                    m.post(m.arithm(Q[i], "!=", Q[j], "-", k));
+                }
+            }
+            Visualization visu = new Visualization(name, s, dir);
+            if (name.equals("Segmented")) {
+                visu.enableSegments(1000);
+            }
+            visu.createTree();
+            visu.createViz();
+            visu.addVisualizer(new Vector(Q, "expanded", n, n));
+            s.findAllSolutions();
+        }
+        for (String file : new String[]{"tree-", "visualization-"}) {
+            Assert.assertEquals(
+                    Files.readAllBytes(new File(dir, file + "Segmented.xml").toPath()),
+                    Files.readAllBytes(new File(dir, file + "Unsegmented.xml").toPath()));
+            Assert.assertFalse(new File(dir, file + "Segmented.xml.0").exists());
+        }
+        // a channel never closed, as if the solver was killed
+        File file = new File(dir, "killed.xml");
+        SegmentedChannel channel = new SegmentedChannel(file, 200, "</end>".getBytes("UTF-8"));
+        StringBuilder committed = new StringBuilder("<start>");
+        channel.write(ByteBuffer.wrap("<start>".getBytes("UTF-8")));
+        for (int i = 0; i < 50; i++) {
+            String node = "<node id=\"" + i + "\" />";
+            channel.write(ByteBuffer.wrap(node.getBytes("UTF-8")));
+            channel.commit(i);
+            committed.append(node);
+        }
+        channel.write(ByteBuffer.wrap("<node id=\"50".getBytes("UTF-8")));
+        Assert.assertEquals(SegmentRecovery.recover(file), 49);
+        Assert.assertEquals(new String(Files.readAllBytes(file.toPath()), "UTF-8"), committed + "</end>");
+        channel.close();
+        Assert.assertTrue(file.delete());
+        // a visualization never closed: its configuration is complete but for the closing tag
+        Model m = new Model();
+        Solver s = m.getSolver();
+        IntVar[] Q = m.intVarArray("Q", 4, 1, 4, false);
+        Visualization visu = new Visualization("Killed", s, dir);
+        visu.enableSegments(1000);
+        visu.createTree();
+        visu.createViz();
+        visu.addVisualizer(new Vector(Q, "expanded", 4, 4));
+        File conf = new File(dir, "configuration-Killed.xml");
+        Assert.assertTrue(SegmentRecovery.closeConfiguration(conf));
+        Assert.assertFalse(SegmentRecovery.closeConfiguration(conf));
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(conf);
+        NodeList tools = doc.getElementsByTagName("tool");
+        Assert.assertEquals(tools.getLength(), 2);
+        Assert.assertEquals(((org.w3c.dom.Element) tools.item(1)).getAttribute("fileroot"), "visualization-Killed");
+        // release the files
+        s.solve();
+    }
+
+    @Test(groups = "1s")
+    public void testSearchTreeIndex() {
+        int n = 6;
+
+        Model m = new Model();
+        Solver s = m.getSolver();
+        IntVar[] Q = m.intVarArray("Q", n, 1, n, false);
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                int k = j - i;
+                m.post(m.arithm(Q[i], "!=", Q[j]));
+                m.post(m.arithm(Q[i], "!=", Q[j], "+", k));
+                m.post(m.arithm(Q[i], "!=", Q[j], "-", k));
+            }
+        }
+        s.setSearch(Search.inputOrderLBSearch(Q));
+        SearchTreeIndex index = new SearchTreeIndex(s);
+        s.findAllSolutions();
+
+        // refutations are nodes too
+        Assert.assertTrue(index.size() > s.getNodeCount());
+        Assert.assertEquals(index.subtreeSize(0), index.size());
+        Assert.assertEquals(index.nbSolutions(), 4);
+        long fails = 0;
+        for (long f : index.failuresPerVariable().values()) {
+            fails += f;
+        }
+        Assert.assertEquals(fails, s.getFailCount());
+        long nodes = 0;
+        for (long d : index.depthHistogram()) {
+            nodes += d;
+        }
+        Assert.assertEquals(nodes, index.size());
+        for (int k = 0; k < index.nbSolutions(); k++) {
+            int[] path = index.pathToSolution(k);
+            Assert.assertEquals(path[0], 0);
+            Assert.assertEquals(index.status(path[path.length - 1]), SearchTreeIndex.SUCC);
+            for (int i = 1; i < path.length; i++) {
+                Assert.assertEquals(index.parent(path[i]), path[i - 1]);
+                Assert.assertEquals(index.depth(path[i]), i);
+                Assert.assertTrue(index.subtreeSize(path[i - 1]) > index.subtreeSize(path[i]));
+            }
+        }
+    }
+
+    @Test(groups = "1s")
+    public void testPortfolio() throws Exception {
+        int n = 8;
+        ParallelPortfolio portfolio = new ParallelPortfolio();
+        for (int w = 0; w < 3; w++) {
+            Model m = new Model();
+            IntVar[] Q = m.intVarArray("Q", n, 1, n, false);
+            for (int i = 0; i < n; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    int k = j - i;
+                    m.post(m.arithm(Q[i], "!=", Q[j]));
+                    m.post(m.arithm(Q[i], "!=", Q[j], "+", k));
+                    m.post(m.arithm(Q[i], "!=", Q[j], "-", k));
+                }
+            }
+            m.getSolver().setSearch(w == 0 ? Search.inputOrderLBSearch(Q) :
+                    w == 1 ? Search.inputOrderUBSearch(Q) : Search.minDomLBSearch(Q));
+            portfolio.addModel(m);
+        }
+        PortfolioVisualization visu = new PortfolioVisualization("Portfolio", portfolio, dir,
+                PortfolioVisualization.Mode.COMBINED, (model, v) -> {
+            v.createTree();
+            v.createViz();
+            v.addVisualizer(new Vector(model.retrieveIntVars(true), "expanded", n, n));
+        });
+        Assert.assertTrue(portfolio.solve());
+
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new File(dir, "tree-Portfolio.xml"));
+        Set<String> ids = new HashSet<>();
+        ids.add("0");
+        Set<String> workers = new HashSet<>();
+        NodeList list = doc.getDocumentElement().getChildNodes();
+        for (int i = 0; i < list.getLength(); i++) {
+            if (list.item(i) instanceof org.w3c.dom.Element) {
+                org.w3c.dom.Element e = (org.w3c.dom.Element) list.item(i);
+                if (e.hasAttribute("parent")) {
+                    Assert.assertTrue(ids.contains(e.getAttribute("parent")), e.getAttribute("parent"));
+                    Assert.assertTrue(ids.add(e.getAttribute("id")), e.getAttribute("id"));
+                    if (CPVizConstant.WORKER.equals(e.getAttribute("name"))) {
+                        Assert.assertEquals(e.getAttribute("parent"), "0");
+                        workers.add(e.getAttribute("worker"));
+                    }
+                }
+                if (!e.getTagName().equals("root")) {
+                    Assert.assertTrue(e.hasAttribute("worker"));
+                }
+            }
+        }
+        Assert.assertEquals(workers.size(), visu.getNbWorkers());
+
+        doc = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new File(dir, "visualization-Portfolio.xml"));
+        Assert.assertEquals(doc.getElementsByTagName("visualizer").getLength(), visu.getNbWorkers());
+        list = doc.getElementsByTagName("state");
+        Set<String> states = new HashSet<>();
+        for (int i = 0; i < list.getLength(); i++) {
+            org.w3c.dom.Element e = (org.w3c.dom.Element) list.item(i);
+            Assert.assertTrue(states.add(e.getAttribute("id")));
+            Assert.assertTrue(e.getAttribute("tree_node").equals("-1") || ids.contains(e.getAttribute("tree_node")));
+        }
+        for (int w = 0; w < visu.getNbWorkers(); w++) {
+            Assert.assertFalse(new File(dir, "tree-Portfolio-w" + w + ".xml").exists());
+        }
+        Assert.assertTrue(new File(dir, "configuration-Portfolio.xml").exists());
+    }
+
+    @Test(groups = "1s")
+    public void testLiveStream() throws Exception {
+        for (LiveStream.Protocol protocol : LiveStream.Protocol.values()) {
+            int n = 6;
+            Model m = new Model();
+            Solver s = m.getSolver();
+            IntVar[] Q = m.intVarArray("Q", n, 1, n, false);
+            for (int i = 0; i < n; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    int k = j - i;
+                    m.post(m.arithm(Q[i], "!=", Q[j]));
+                    m.post(m.arithm(Q[i], "!=", Q[j], "+", k));
+                    m.post(m.arithm(Q[i], "!=", Q[j], "-", k));
+                }
+            }
+            try (LiveStream live = new LiveStream(0, protocol, 1 << 16);
+                 Socket client = new Socket(InetAddress.getLoopbackAddress(), live.getPort())) {
+                client.setSoTimeout(5000);
+                DataInputStream in = new DataInputStream(client.getInputStream());
+                if (protocol == LiveStream.Protocol.WEBSOCKET) {
+                    client.getOutputStream().write(("GET / HTTP/1.1\r\nHost: localhost\r\nUpgrade: websocket\r\n"
+                            + "Connection: Upgrade\r\nSec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n"
+                            + "Sec-WebSocket-Version: 13\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                    StringBuilder response = new StringBuilder();
+                    while (response.indexOf("\r\n\r\n") < 0) {
+                        response.append((char) in.readUnsignedByte());
+                    }
+                    Assert.assertTrue(response.toString().contains("Sec-WebSocket-Accept: s3pPLMBiTxaQ9kYGzzhZRbK+xOo="));
+                }
+                long start = System.currentTimeMillis();
+                while (live.getNbClients() == 0 && System.currentTimeMillis() - start < 5000) {
+                    Thread.sleep(5);
+                }
+                Assert.assertEquals(live.getNbClients(), 1);
+
+                Visualization visu = new Visualization("Live", s, dir);
+                visu.addSink(live);
+                visu.createTree();
+                visu.createViz();
+                visu.addVisualizer(new Vector(Q, "expanded", n, n));
+                s.findSolution();
+
+                List<String> events = new ArrayList<>();
+                do {
+                    if (protocol == LiveStream.Protocol.WEBSOCKET) {
+                        Assert.assertEquals(in.readUnsignedByte(), 0x81);
+                        int len = in.readUnsignedByte();
+                        if (len == 126) {
+                            len = in.readUnsignedShort();
+                        }
+                        byte[] frame = new byte[len];
+                        in.readFully(frame);
+                        events.add(new String(frame, StandardCharsets.UTF_8));
+                    } else {
+                        StringBuilder line = new StringBuilder();
+                        for (int c; (c = in.read()) != '\n'; ) {
+                            line.append((char) c);
+                        }
+                        events.add(line.toString());
+                    }
+                } while (!events.get(events.size() - 1).startsWith("{\"event\":\"succ\""));
+                Assert.assertEquals(events.get(0), "{\"event\":\"root\",\"id\":0}");
+                Assert.assertTrue(events.get(1).startsWith("{\"event\":\"state\",\"node\":-1,\"xml\":\"\\t<state id=\\\"1\\\""));
+                Assert.assertTrue(events.stream().anyMatch(e -> e.startsWith("{\"event\":\"try\",\"id\":1,\"parent\":0,")));
+                Assert.assertEquals(live.getDroppedEvents(), 0);
+            }
+        }
+    }
+
+    @Test(groups = "1s")
+    public void testTraceSink() throws IOException {
+        for (String name : new String[]{"Plain", "Sync", "Async"}) {
+            int n = 8;
+            Model m = new Model();
+            Solver s = m.getSolver();
+            IntVar[] Q = m.intVarArray("Q", n, 1, n, false);
+            for (int i = 0; i < n; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    int k = j - i;
+                    m.post(m.arithm(Q[i], "!=", Q[j]));
+                    m.post(m.arithm(Q[i], "!=", Q[j], "+", k));
+                    m.post(m.arithm(Q[i], "!=", Q[j], "-", k));
+                }
+            }
+            Visualization visu = new Visualization("Sink" + name, s, dir);
+            if (name.equals("Async")) {
+                visu.enableAsync(Backpressure.BLOCK);
+            }
+            visu.createTree();
+            visu.createViz();
+            visu.addVisualizer(new Vector(Q, "expanded", n, n));
+            if (name.equals("Plain")) {
+                s.findSolution();
+                continue;
+            }
+            // added after the visualizer, which is declared at once
+            MemoryTraceSink memory = new MemoryTraceSink();
+            CountingTraceSink counting = new CountingTraceSink();
+            visu.addSink(memory);
+            visu.addSink(counting);
+            s.findSolution();
+            Assert.assertEquals(memory.getTree(), Files.readAllBytes(new File(dir, "tree-Sink" + name + ".xml").toPath()));
+            Assert.assertEquals(memory.getVisualization(),
+                    Files.readAllBytes(new File(dir, "visualization-Sink" + name + ".xml").toPath()));
+            // the file is the one written without sink
+            Assert.assertEquals(memory.getVisualization(),
+                    Files.readAllBytes(new File(dir, "visualization-SinkPlain.xml").toPath()));
+            Assert.assertTrue(counting.isClosed());
+            Assert.assertEquals(counting.getNbNodes(), s.getNodeCount());
+            Assert.assertEquals(counting.getNbFailures(), s.getFailCount());
+            Assert.assertEquals(counting.getNbSolutions(), 1);
+            Assert.assertEquals(counting.getNbVisualizers(), 1);
+            Assert.assertEquals(counting.getNbStates(), s.getNodeCount() + 1);
+        }
+        // no file at all
+        Model m = new Model();
+        Solver s = m.getSolver();
+        IntVar[] X = m.intVarArray("X", 4, 1, 4, false);
+        m.allDifferent(X).post();
+        CountingTraceSink counting = new CountingTraceSink();
+        Visualization visu = new Visualization(s, TraceSink.fanOut(TraceSink.NULL, counting));
+        visu.addVisualizer(new Vector(X, "expanded", 4, 4));
+        s.findAllSolutions();
+        Assert.assertEquals(counting.getNbSolutions(), 24);
+        Assert.assertEquals(counting.getNbStates(), s.getNodeCount() + 1);
+    }
+
+    @Test(groups = "1s")
+    public void testSession() throws IOException {
+        for (String name : new String[]{"SessionXml", "SessionBinary", "SessionRoll"}) {
+            TraceSession session = new TraceSession(name, dir,
+                    name.endsWith("Binary") ? TraceFormat.BINARY : TraceFormat.XML, name.endsWith("Roll") ? 1 : 0);
+            for (int r = 0; r < 5; r++) {
+                int n = 4 + r;
+                Model m = new Model("Q" + n);
+                IntVar[] Q = m.intVarArray("Q", n, 1, n, false);
+                m.allDifferent(Q).post();
+                Visualization visu = session.newRun(m.getSolver());
+                visu.addVisualizer(new Vector(Q, "expanded", n, n));
+                m.getSolver().findSolution();
+            }
+            session.close();
+            Assert.assertEquals(session.getNbRuns(), 5);
+            Assert.assertEquals(session.getNbParts(), name.endsWith("Roll") ? 5 : 1);
+        }
+        String tree = new String(Files.readAllBytes(new File(dir, "tree-SessionXml-0.xml").toPath()), StandardCharsets.UTF_8);
+        Assert.assertEquals(tree.split("<run ").length, 6);
+        Assert.assertEquals(tree.split("<root ").length, 6);
+        Assert.assertTrue(tree.contains("<run id=\"5\" model=\"Q8\" >"));
+        for (String file : new String[]{"tree-", "visualization-"}) {
+            File converted = new File(dir, file + "SessionBinary-0.xml");
+            BinaryTraceConverter.convert(new File(dir, file + "SessionBinary-0" + TraceFormat.BINARY.extension), converted);
+            Assert.assertEquals(Files.readAllBytes(converted.toPath()),
+                    Files.readAllBytes(new File(dir, file + "SessionXml-0.xml").toPath()));
+        }
+        String last = new String(Files.readAllBytes(new File(dir, "tree-SessionRoll-4.xml").toPath()), StandardCharsets.UTF_8);
+        Assert.assertEquals(last.split("<run ").length, 2);
+        Assert.assertTrue(last.contains("<run id=\"5\" model=\"Q8\" >"));
+
+        // the events of a run which has ended are ignored
+        CountingTraceSink counting = new CountingTraceSink();
+        TraceSession session = new TraceSession(counting);
+        Model m = new Model();
+        IntVar[] Q = m.intVarArray("Q", 4, 1, 4, false);
+        m.allDifferent(Q).post();
+        session.newRun(m.getSolver());
+        session.newRun(new Model().getSolver());
+        m.getSolver().findSolution();
+        session.close();
+        Assert.assertEquals(counting.getNbRuns(), 2);
+        Assert.assertEquals(counting.getNbNodes(), 0);
+        Assert.assertTrue(counting.isClosed());
+
+        // a solver reused from one run to the next only keeps the visualization of the current run
+        counting = new CountingTraceSink();
+        session = new TraceSession(counting);
+        m = new Model();
+        Q = m.intVarArray("Q", 4, 1, 4, false);
+        m.allDifferent(Q).post();
+        Solver s = m.getSolver();
+        Visualization first = session.newRun(s);
+        Visualization second = session.newRun(s);
+        Assert.assertFalse(s.getSearchMonitors().contains(first));
+        Assert.assertTrue(s.getSearchMonitors().contains(second));
+        s.findSolution();
+        session.close();
+        Assert.assertFalse(s.getSearchMonitors().contains(second));
+        Assert.assertEquals(counting.getNbNodes(), s.getNodeCount());
+    }
+
+    @Test(groups = "1s")
+    public void testRestarts() throws IOException {
+        Pattern node = Pattern.compile("\t<(?:try|fail) id=\"(\\d+)\" parent=\"(\\d+)\" name=\"([^\"]*)\".*");
+        for (String name : new String[]{"Restarts", "AsyncRestarts", "RestartsBinary", "CollapsedRestarts", "Lns"}) {
+            int n = 10;
+            Model m = new Model();
+            Solver s = m.getSolver();
+            IntVar[] Q = m.intVarArray("Q", n, 1, n, false);
+            for (int i = 0; i < n; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    int k = j - i;
+                    m.post(m.arithm(Q[i], "!=", Q[j]));
+                    m.post(m.arithm(Q[i], "!=", Q[j], "+", k));
+                    m.post(m.arithm(Q[i], "!=", Q[j], "-", k));
+                }
+            }
+            s.setSearch(Search.randomSearch(Q, 0));
+            IntVar cost = m.intVar("cost", 0, n * n * n);
+            m.scalar(Q, new int[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10}, "=", cost).post();
+            if (name.equals("Lns")) {
+                s.setLNS(INeighborFactory.random(Q), new FailCounter(m, 5));
+            } else {
+                s.setLubyRestart(2, new FailCounter(m, 1), 1000);
+            }
+            s.limitNode(400);
+            Visualization visu = new Visualization(name, s, dir,
+                    name.endsWith("Binary") ? TraceFormat.BINARY : TraceFormat.XML);
+            if (name.startsWith("Async")) {
+                visu.enableAsync(Backpressure.BLOCK);
+            } else if (name.startsWith("Collapsed")) {
+                visu.setRestartPolicy(RestartPolicy.NONE);
+            } else if (name.equals("Restarts")) {
+                visu.enableStats();
+            }
+            List<String> neighbourhoods = new ArrayList<>();
+            CountingTraceSink counting = new CountingTraceSink() {
+                @Override
+                public void onRestart(long id, long restart, long nodes, long fails, String neighbourhood) {
+                    super.onRestart(id, restart, nodes, fails, neighbourhood);
+                    neighbourhoods.add(neighbourhood);
+                }
+            };
+            visu.addSink(counting);
+            visu.createTree();
+            visu.createViz();
+            visu.addVisualizer(new Vector(Q, "expanded", n, n));
+            if (name.equals("Lns")) {
+                // the files are closed with the first solution, the sink keeps counting
+                s.findOptimalSolution(cost, false);
+            } else {
+                s.findSolution();
+            }
+            Assert.assertTrue(s.getRestartCount() > 0);
+            Assert.assertEquals(counting.getNbRestarts(), s.getRestartCount());
+            if (name.equals("Lns")) {
+                Assert.assertTrue(neighbourhoods.stream().anyMatch(h -> h.startsWith("Q[")), neighbourhoods.toString());
+                continue;
+            } else if (name.endsWith("Binary")) {
+                continue;
+            }
+            // once restarted, the nodes hang from the node of the last restart
+            Set<Long> restarts = new HashSet<>();
+            for (String line : Files.readAllLines(new File(dir, "tree-" + name + ".xml").toPath())) {
+                Matcher matcher = node.matcher(line);
+                if (!matcher.matches()) {
+                    continue;
+                }
+                long parent = Long.parseLong(matcher.group(2));
+                if (matcher.group(3).equals(CPVizConstant.RESTART)) {
+                    Assert.assertEquals(parent, 0);
+                    Assert.assertTrue(line.contains(" value=\"" + (restarts.size() + 1) + "\" nodes=\""));
+                    restarts.add(Long.parseLong(matcher.group(1)));
+                } else if (!restarts.isEmpty()) {
+                    Assert.assertNotEquals(parent, 0L);
+                    if (name.startsWith("Collapsed")) {
+                        Assert.assertEquals(matcher.group(3), CPVizConstant.SUMMARY);
+                        Assert.assertTrue(restarts.contains(parent));
+                    }
+                }
+            }
+            Assert.assertEquals(restarts.size(), s.getRestartCount());
+            if (name.equals("Restarts")) {
+                // restart nodes are counted apart from the other try nodes
+                String tree = new String(Files.readAllBytes(new File(dir, "tree-Restarts.xml").toPath()), StandardCharsets.UTF_8);
+                Assert.assertEquals(visu.getStats().getCount(TraceStats.Tag.RESTART), s.getRestartCount());
+                Assert.assertEquals(visu.getStats().getCount(TraceStats.Tag.TRY),
+                        tree.split("<try ", -1).length - 1 - s.getRestartCount());
+            }
+        }
+        File tree = new File(dir, "tree-Restarts.xml");
+        File converted = new File(dir, "tree-RestartsBinary.xml");
+        BinaryTraceConverter.convert(new File(dir, "tree-RestartsBinary" + TraceFormat.BINARY.extension), converted);
+        for (File file : new File[]{new File(dir, "tree-AsyncRestarts.xml"), converted}) {
+            Assert.assertEquals(Files.readAllBytes(file.toPath()), Files.readAllBytes(tree.toPath()));
+        }
+    }
+
+    @Test(groups = "1s")
+    public void testDepths() throws IOException {
+        for (String name : new String[]{"Shallow", "Depths", "AsyncDepths", "DepthsBinary"}) {
+            int n = 10;
+            Model m = new Model();
+            Solver s = m.getSolver();
+            IntVar[] Q = m.intVarArray("Q", n, 1, n, false);
+            for (int i = 0; i < n; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    int k = j - i;
+                    m.post(m.arithm(Q[i], "!=", Q[j]));
+                    m.post(m.arithm(Q[i], "!=", Q[j], "+", k));
+                    m.post(m.arithm(Q[i], "!=", Q[j], "-", k));
+                }
+            }
+            s.setSearch(Search.inputOrderLBSearch(Q));
+            Visualization visu = new Visualization(name, s, dir,
+                    name.endsWith("Binary") ? TraceFormat.BINARY : TraceFormat.XML);
+            if (!name.equals("Shallow")) {
+                visu.enableDepths();
+            }
+            if (name.startsWith("Async")) {
+                visu.enableAsync(Backpressure.BLOCK);
+            }
+            visu.createTree();
+            visu.createViz();
+            visu.addVisualizer(new Vector(Q, "expanded", n, n));
+            s.solve();
+        }
+        File tree = new File(dir, "tree-Depths.xml");
+        String depths = new String(Files.readAllBytes(tree.toPath()), StandardCharsets.UTF_8);
+        // the depths are extra attributes of the same tree
+        Assert.assertEquals(depths.replaceAll(" depth=\"\\d+\" jump=\"\\d+\"", ""),
+                new String(Files.readAllBytes(new File(dir, "tree-Shallow.xml").toPath()), StandardCharsets.UTF_8));
+        Pattern node = Pattern.compile("\t<(?:try|fail) id=\"(\\d+)\" parent=\"(\\d+)\" .* depth=\"(\\d+)\" jump=\"(\\d+)\" />");
+        Map<Long, Integer> depthOf = new HashMap<>();
+        depthOf.put(0L, 0);
+        int previous = 0, nodes = 0, maxJump = 0;
+        for (String line : depths.split("\n")) {
+            Matcher matcher = node.matcher(line);
+            if (!matcher.matches()) {
+                continue;
+            }
+            int depth = Integer.parseInt(matcher.group(3)), jump = Integer.parseInt(matcher.group(4));
+            Assert.assertEquals(depth, depthOf.get(Long.parseLong(matcher.group(2))) + 1);
+            Assert.assertEquals(jump, Math.max(0, previous + 1 - depth));
+            depthOf.put(Long.parseLong(matcher.group(1)), depth);
+            previous = depth;
+            maxJump = Math.max(maxJump, jump);
+            nodes++;
+        }
+        Assert.assertTrue(nodes > 0);
+        Assert.assertTrue(maxJump > 1);
+        File converted = new File(dir, "tree-DepthsBinary.xml");
+        BinaryTraceConverter.convert(new File(dir, "tree-DepthsBinary" + TraceFormat.BINARY.extension), converted);
+        for (File file : new File[]{new File(dir, "tree-AsyncDepths.xml"), converted}) {
+            Assert.assertEquals(Files.readAllBytes(file.toPath()), Files.readAllBytes(tree.toPath()));
+        }
+    }
+
+    @Test(groups = "1s")
+    public void testActivation() throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        long[] nodes = new long[2];
+        for (int t = 0; t < 2; t++) {
+            int n = 8;
+            Model m = new Model();
+            Solver s = m.getSolver();
+            IntVar[] Q = m.intVarArray("Q", n, 1, n, false);
+            for (int i = 0; i < n; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    int k = j - i;
+                    m.post(m.arithm(Q[i], "!=", Q[j]));
+                    m.post(m.arithm(Q[i], "!=", Q[j], "+", k));
+                    m.post(m.arithm(Q[i], "!=", Q[j], "-", k));
+                }
+            }
+            s.setSearch(Search.inputOrderLBSearch(Q));
+            // disabled: nothing plugged, nothing opened
+            new Visualization("Disabled", s, dir);
+            Assert.assertFalse(new File(dir, "configuration-Disabled.xml").exists());
+            Visualization visu = new Visualization("Activation" + t, s, dir);
+            visu.createTree();
+            visu.createViz();
+            visu.addVisualizer(new Vector(Q, "expanded", n, n));
+            CountingTraceSink counting = new CountingTraceSink();
+            visu.addSink(counting);
+            if (t == 1) {
+                visu.activateWhen(() -> s.getNodeCount() >= 10);
+                Assert.assertFalse(s.getSearchMonitors().contains(visu));
+            }
+            s.findSolution();
+            Assert.assertTrue(s.getSearchMonitors().contains(visu));
+            nodes[t] = counting.getNbNodes();
+
+            Document tree = factory.newDocumentBuilder().parse(new File(dir, "tree-Activation" + t + ".xml"));
+            NodeList tries = tree.getElementsByTagName("try");
+            NodeList fails = tree.getElementsByTagName("fail");
+            Assert.assertEquals(tree.getElementsByTagName("root").getLength(), 1);
+            Assert.assertEquals(tree.getElementsByTagName("succ").getLength(), 1);
+            Assert.assertEquals(((org.w3c.dom.Element) tries.item(0)).getAttribute("id"), "1");
+            Assert.assertEquals(((org.w3c.dom.Element) tries.item(0)).getAttribute("parent"), "0");
+            Document viz = factory.newDocumentBuilder().parse(new File(dir, "visualization-Activation" + t + ".xml"));
+            Assert.assertEquals(viz.getElementsByTagName("state").getLength(), tries.getLength() + fails.getLength() + 2);
+        }
+        Assert.assertTrue(nodes[1] < nodes[0]);
+
+        // fired by a failure: the first node is written as such
+        Model m1 = new Model();
+        Solver s1 = m1.getSolver();
+        IntVar[] X = m1.intVarArray("X", 4, 1, 4, false);
+        for (int i = 0; i < 4; i++) {
+            for (int j = i + 1; j < 4; j++) {
+                m1.post(m1.arithm(X[i], "!=", X[j]));
+                m1.post(m1.arithm(X[i], "!=", X[j], "+", j - i));
+                m1.post(m1.arithm(X[i], "!=", X[j], "-", j - i));
+            }
+        }
+        s1.setSearch(Search.inputOrderLBSearch(X));
+        Visualization failing = new Visualization("ActivationFail", s1, dir);
+        failing.createTree();
+        failing.createViz();
+        failing.addVisualizer(new Vector(X, "expanded", 4, 4));
+        failing.activateWhen(() -> s1.getFailCount() > 0);
+        s1.findSolution();
+        Document tree = factory.newDocumentBuilder().parse(new File(dir, "tree-ActivationFail.xml"));
+        Assert.assertEquals(((org.w3c.dom.Element) tree.getElementsByTagName("fail").item(0)).getAttribute("id"), "1");
+        Assert.assertEquals(((org.w3c.dom.Element) tree.getElementsByTagName("fail").item(0)).getAttribute("parent"), "0");
+
+        // never fired: the files are closed empty
+        Model m2 = new Model();
+        Solver s2 = m2.getSolver();
+        m2.allDifferent(m2.intVarArray("X", 3, 1, 3, false)).post();
+        Visualization never = new Visualization("Never", s2, dir);
+        never.activateWhen(() -> false);
+        never.createTree();
+        s2.findAllSolutions();
+        Assert.assertEquals(factory.newDocumentBuilder().parse(new File(dir, "tree-Never.xml"))
+                .getElementsByTagName("try").getLength(), 0);
+    }
+
+    @Test(groups = "1s")
+    public void testStats() throws Exception {
+        int n = 8;
+        Model m = new Model();
+        Solver s = m.getSolver();
+        IntVar[] Q = m.intVarArray("Q", n, 1, n, false);
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                int k = j - i;
+                m.post(m.arithm(Q[i], "!=", Q[j]));
+                m.post(m.arithm(Q[i], "!=", Q[j], "+", k));
+                m.post(m.arithm(Q[i], "!=", Q[j], "-", k));
+            }
+        }
+        s.setSearch(Search.inputOrderLBSearch(Q));
+        Visualization visu = new Visualization("Stats", s, dir);
+        visu.createTree();
+        visu.createViz();
+        visu.addVisualizer(new Vector(Q, "expanded", n, n));
+        visu.addVisualizer(new VectorSize(Q, "expanded", n, n));
+        ObjectName name = visu.registerStats();
+        try {
+            s.findSolution();
+            TraceStats stats = visu.getStats();
+            Assert.assertEquals(stats.getCalls(TraceStats.Phase.INITIALIZE), 2);
+            Assert.assertEquals(stats.getCalls(TraceStats.Phase.SOLUTION), 1);
+            Assert.assertEquals(stats.getCalls(TraceStats.Phase.CLOSE), 1);
+            Assert.assertTrue(stats.getNanos(TraceStats.Phase.DOWN_BRANCH) > 0);
+
+            String tree = new String(Files.readAllBytes(new File(dir, "tree-Stats.xml").toPath()), StandardCharsets.UTF_8);
+            String viz = new String(Files.readAllBytes(new File(dir, "visualization-Stats.xml").toPath()), StandardCharsets.UTF_8);
+            Assert.assertEquals(stats.getCount(TraceStats.Tag.TRY), tree.split("<try ", -1).length - 1);
+            Assert.assertEquals(stats.getCount(TraceStats.Tag.FAIL), tree.split("<fail ", -1).length - 1);
+            Assert.assertEquals(stats.getCount(TraceStats.Tag.STATE), viz.split("<state ", -1).length - 1);
+            long treeBytes = 0;
+            for (TraceStats.Tag tag : new TraceStats.Tag[]{TraceStats.Tag.ROOT, TraceStats.Tag.TRY, TraceStats.Tag.FAIL, TraceStats.Tag.SUCC}) {
+                treeBytes += stats.getBytes(tag);
+            }
+            Assert.assertEquals(treeBytes, tree.length() - CPVizConstant.HEADER.length()
+                    - CPVizConstant.T_TREE_TAG_IN.length() - CPVizConstant.T_TREE_TAG_OUT.length());
+            Assert.assertEquals(stats.getNbVisualizers(), 2);
+            Assert.assertTrue(stats.getVisualizerBytes(1) > 0 && stats.getVisualizerBytes(2) > 0);
+            Assert.assertTrue(stats.getVisualizerBytes(1) + stats.getVisualizerBytes(2) < stats.getBytes(TraceStats.Tag.STATE));
+
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            Assert.assertTrue(server.isRegistered(name));
+            Assert.assertEquals(((CompositeData) ((TabularData) server.getAttribute(name, "TagCounts"))
+                    .get(new Object[]{"TRY"})).get("value"), stats.getCount(TraceStats.Tag.TRY));
+        } finally {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        }
+    }
+
+    @Test(groups = "1s")
+    public void testTimeline() throws IOException {
+        int n = 8;
+        Model m = new Model();
+        Solver s = m.getSolver();
+        IntVar[] Q = m.intVarArray("Q", n, 1, n, false);
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                int k = j - i;
+                m.post(m.arithm(Q[i], "!=", Q[j]));
+                m.post(m.arithm(Q[i], "!=", Q[j], "+", k));
+                m.post(m.arithm(Q[i], "!=", Q[j], "-", k));
+            }
+        }
+        IntVar obj = m.intVar("obj", 0, 100);
+        m.scalar(new IntVar[]{Q[0], Q[1], Q[2]}, new int[]{9, 3, 1}, "=", obj).post();
+        s.setSearch(Search.inputOrderLBSearch(Q));
+        File file = new File(dir, "timeline-Timeline.csv");
+        file.delete();
+        Visualization visu = new Visualization("Timeline", s, dir);
+        SolutionTimeline timeline = visu.createTimeline();
+        s.findOptimalSolution(obj, Model.MAXIMIZE);
+        Assert.assertFalse(new File(dir, "tree-Timeline.xml").exists());
+        int k = timeline.getNbSolutions();
+        Assert.assertEquals(k, s.getSolutionCount());
+        Assert.assertTrue(k > 1);
+        for (int i = 1; i < k; i++) {
+            Assert.assertTrue(timeline.getObjective(i) > timeline.getObjective(i - 1));
+            Assert.assertTrue(timeline.getNodes(i) >= timeline.getNodes(i - 1));
+            Assert.assertTrue(timeline.getNanos(i) >= timeline.getNanos(i - 1));
+        }
+        Assert.assertTrue(timeline.getBound(k - 1) >= timeline.getObjective(k - 1));
+        List<String> lines = Files.readAllLines(file.toPath());
+        Assert.assertEquals(lines.size(), k + 1);
+        Assert.assertEquals(lines.get(0), SolutionTimeline.HEADER);
+        Assert.assertEquals(lines.get(k), timeline.getNanos(k - 1) + "," + timeline.getNodes(k - 1) + ","
+                + timeline.getFails(k - 1) + "," + (long) timeline.getObjective(k - 1) + "," + (long) timeline.getBound(k - 1));
+    }
+
+    @Test(groups = "1s")
+    public void testFlightRecorder() throws Exception {
+        FlightTrigger[] triggers = {FlightTrigger.onSolution(), FlightTrigger.failureDepth(5), FlightTrigger.nodeRange(10, 12)};
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        for (int t = 0; t < triggers.length; t++) {
+            int n = 8;
+            Model m = new Model();
+            Solver s = m.getSolver();
+            IntVar[] Q = m.intVarArray("Q", n, 1, n, false);
+            for (int i = 0; i < n; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    int k = j - i;
+                    m.post(m.arithm(Q[i], "!=", Q[j]));
+                    m.post(m.arithm(Q[i], "!=", Q[j], "+", k));
+                    m.post(m.arithm(Q[i], "!=", Q[j], "-", k));
+                }
+            }
+            s.setSearch(Search.inputOrderLBSearch(Q));
+            Visualization visu = new Visualization("Flight" + t, s, dir);
+            visu.enableFlightRecorder(4, triggers[t]);
+            visu.createTree();
+            visu.createViz();
+            visu.addVisualizer(new Vector(Q, "expanded", n, n));
+            s.findSolution();
+
+            Document tree = factory.newDocumentBuilder().parse(new File(dir, "tree-Flight" + t + ".xml"));
+            NodeList nodes = tree.getDocumentElement().getChildNodes();
+            Set<String> written = new HashSet<>();
+            written.add("0");
+            int nbNodes = 0;
+            for (int i = 0; i < nodes.getLength(); i++) {
+                if (nodes.item(i) instanceof org.w3c.dom.Element) {
+                    org.w3c.dom.Element node = (org.w3c.dom.Element) nodes.item(i);
+                    if (node.getTagName().equals("try") || node.getTagName().equals("fail")) {
+                        Assert.assertTrue(written.contains(node.getAttribute("parent")), node.getAttribute("id"));
+                        written.add(node.getAttribute("id"));
+                        nbNodes++;
+                    }
+                }
+            }
+            Assert.assertTrue(nbNodes > 0);
+            Assert.assertEquals(tree.getElementsByTagName("succ").getLength(), t == 0 ? 1 : 0);
+            if (t == 0) {
+                // the last 4 events: 3 nodes and the solution
+                Assert.assertEquals(nbNodes, 3);
+            }
+            if (t == 2) {
+                Assert.assertTrue(written.contains("9") && written.contains("12") && !written.contains("13"));
+            }
+            Document viz = factory.newDocumentBuilder().parse(new File(dir, "visualization-Flight" + t + ".xml"));
+            Assert.assertEquals(viz.getElementsByTagName("state").getLength(), nbNodes + 2);
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = in.read(buf)) > 0) {
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+
     @Test(groups = "1s")
     public void testVectorSize() {
         int n = 13;
@@ -212,6 +1415,143 @@ public class CPVizTest {
         s.findSolution();
     }
 
+    @Test(groups = "1s")
+    public void testStaticArguments() throws IOException {
+        for (String name : new String[]{"Constants", "Statics", "StaticsBinary", "AsyncStatics"}) {
+            Model m = new Model();
+            Solver s = m.getSolver();
+            int[] values = new int[40];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = (i * 7) % 13;
+            }
+            IntVar index = m.intVar("index", 0, values.length - 1, false);
+            IntVar value = m.intVar("value", 0, 12, false);
+            m.post(m.element(value, values, index, 0));
+            Visualization visu = new Visualization(name, s, dir,
+                    name.endsWith("Binary") ? TraceFormat.BINARY : TraceFormat.XML);
+            if (name.startsWith("Async")) {
+                visu.enableAsync(Backpressure.BLOCK);
+            }
+            visu.createTree();
+            visu.createViz();
+            if (!name.equals("Constants")) {
+                visu.enableStaticArguments();
+            }
+            visu.addVisualizer(new Element(index, values, value, "expanded", 13, 40));
+            visu.addVisualizer(new Vector(new IntVar[]{index, value}, "expanded", 2, 2));
+            s.findAllSolutions();
+        }
+        File constants = new File(dir, "visualization-Constants.xml");
+        File statics = new File(dir, "visualization-Statics.xml");
+        Assert.assertTrue(statics.length() * 2 < constants.length());
+        String xml = new String(Files.readAllBytes(statics.toPath()), StandardCharsets.UTF_8);
+        // the argument written in the declaration, in place of each reference, gives back the constants
+        int from = xml.indexOf("<visualizer id=\"1\"");
+        int start = xml.indexOf('\n', from) + 1;
+        int end = xml.indexOf("\t</visualizer>\n", start);
+        String expanded = xml.substring(0, from) + xml.substring(from, start - 2) + "/>\n"
+                + xml.substring(end + "\t</visualizer>\n".length());
+        expanded = expanded.replace("\t\t\t<static index=\"2\" />\n", xml.substring(start, end));
+        Assert.assertEquals(expanded, new String(Files.readAllBytes(constants.toPath()), StandardCharsets.UTF_8));
+        for (String name : new String[]{"StaticsBinary", "AsyncStatics"}) {
+            File converted = new File(dir, "visualization-" + name + ".xml");
+            if (name.endsWith("Binary")) {
+                BinaryTraceConverter.convert(new File(dir, "visualization-" + name + TraceFormat.BINARY.extension), converted);
+            }
+            Assert.assertEquals(Files.readAllBytes(converted.toPath()), Files.readAllBytes(statics.toPath()));
+        }
+    }
+
+    @Test(groups = "1s")
+    public void testRangeDomains() throws IOException {
+        for (String name : new String[]{"Values", "Ranges", "AsyncRanges", "RangesBinary"}) {
+            Model m = new Model();
+            Solver s = m.getSolver();
+            IntVar[] X = m.intVarArray("X", 4, 0, 999, false);
+            for (int i = 0; i < X.length; i++) {
+                for (int k = i; k < 1000; k += 97) {
+                    m.arithm(X[i], "!=", k).post();
+                }
+            }
+            m.allDifferent(X).post();
+            s.limitSolution(10);
+            Visualization visu = new Visualization(name, s, dir,
+                    name.endsWith("Binary") ? TraceFormat.BINARY : TraceFormat.XML);
+            if (name.startsWith("Async")) {
+                visu.enableAsync(Backpressure.BLOCK);
+            }
+            visu.createTree();
+            visu.createViz();
+            if (name.endsWith("Ranges")) {
+                visu.enableRangeDomains();
+            }
+            visu.addVisualizer(new Vector(X, "expanded", 4, 1000));
+            s.findAllSolutions();
+        }
+        File values = new File(dir, "visualization-Values.xml");
+        File ranges = new File(dir, "visualization-Ranges.xml");
+        Assert.assertTrue(ranges.length() * 10 < values.length());
+        File decoded = new File(dir, "visualization-RangesDecoded.xml");
+        RangeDecoder.decode(ranges, decoded);
+        Assert.assertEquals(Files.readAllBytes(decoded.toPath()), Files.readAllBytes(values.toPath()));
+        Assert.assertEquals(RangeDecoder.intervals("0..2 4 5 7..9"), new long[]{0, 2, 4, 5, 7, 9});
+        Assert.assertEquals(RangeDecoder.intervals("-5 .. 12"), new long[]{-5, 12});
+        File converted = new File(dir, "visualization-RangesConverted.xml");
+        BinaryTraceConverter.convert(new File(dir, "visualization-RangesBinary" + TraceFormat.BINARY.extension), converted, true);
+        for (File file : new File[]{new File(dir, "visualization-AsyncRanges.xml"), converted}) {
+            Assert.assertEquals(Files.readAllBytes(file.toPath()), Files.readAllBytes(ranges.toPath()));
+        }
+    }
+
+    @Test(groups = "1s")
+    public void testSetVars() throws IOException {
+        for (String name : new String[]{"Sets", "AsyncSets", "SetsBinary", "DeltaSets", "RangeSets"}) {
+            Model m = new Model();
+            Solver s = m.getSolver();
+            int[] envelope = new int[400];
+            for (int i = 0; i < envelope.length; i++) {
+                envelope[i] = i < 10 ? i : 5 * i;
+            }
+            SetVar[] S = new SetVar[3];
+            for (int i = 0; i < S.length; i++) {
+                S[i] = m.setVar("S" + i, new int[0], envelope);
+                m.member(2 * i, S[i]).post();
+                m.member(2 * i + 1, S[i]).post();
+                m.notMember(6 + i, S[i]).post();
+                S[i].getCard().eq(4).post();
+            }
+            m.allDisjoint(S).post();
+            s.limitSolution(5);
+            Visualization visu = new Visualization(name, s, dir,
+                    name.endsWith("Binary") ? TraceFormat.BINARY : TraceFormat.XML);
+            if (name.startsWith("Async")) {
+                visu.enableAsync(Backpressure.BLOCK);
+            }
+            visu.createTree();
+            visu.createViz();
+            if (name.startsWith("Delta")) {
+                visu.enableDeltaStates();
+            } else if (name.startsWith("Range")) {
+                visu.enableRangeDomains();
+            }
+            visu.addVisualizer(new Vector(S, "expanded", 3, 2000));
+            s.findAllSolutions();
+        }
+        File sets = new File(dir, "visualization-Sets.xml");
+        String xml = new String(Files.readAllBytes(sets.toPath()), StandardCharsets.UTF_8);
+        Assert.assertTrue(xml.contains("<svar index=\"1\" low=\"0 1 \" high=\"0 1 7 8 9 50 55 "));
+        Assert.assertTrue(xml.contains("<sinteger index=\"1\" value=\""));
+        File converted = new File(dir, "visualization-SetsConverted.xml");
+        BinaryTraceConverter.convert(new File(dir, "visualization-SetsBinary" + TraceFormat.BINARY.extension), converted);
+        File delta = new File(dir, "visualization-DeltaSetsDecoded.xml");
+        DeltaDecoder.decode(new File(dir, "visualization-DeltaSets.xml"), delta);
+        File ranges = new File(dir, "visualization-RangeSetsDecoded.xml");
+        RangeDecoder.decode(new File(dir, "visualization-RangeSets.xml"), ranges);
+        for (File file : new File[]{new File(dir, "visualization-AsyncSets.xml"), converted, delta, ranges}) {
+            Assert.assertEquals(Files.readAllBytes(file.toPath()), Files.readAllBytes(sets.toPath()));
+        }
+    }
+
     @Test(groups = "1s")
     public void testBinaryVector() {
         Model m = new Model();
@@ -280,6 +1620,94 @@ public class CPVizTest {
 
     }
 
+    @Test(groups = "1s")
+    public void testDomainMatrixOccurrences() throws Exception {
+        Model m = new Model();
+        Solver s = m.getSolver();
+        IntVar x = m.intVar("x", 1, 3), y = m.intVar("y", 1, 3);
+        m.arithm(x, "!=", y).post();
+        Visualization visu = new Visualization("MatrixOccurrences", s, dir);
+        visu.createTree();
+        visu.createViz();
+        // each variable appears twice in the matrix
+        visu.addVisualizer(new DomainMatrix(new IntVar[][]{{x, y}, {y, x}}, "expanded", 2, 2));
+        s.findAllSolutions();
+
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new File(dir, "visualization-MatrixOccurrences.xml"));
+        NodeList states = doc.getElementsByTagName("visualizer_state");
+        int focused = 0;
+        for (int i = 0; i < states.getLength(); i++) {
+            int focus = ((org.w3c.dom.Element) states.item(i)).getElementsByTagName("focus").getLength();
+            if (focus > 0) {
+                Assert.assertEquals(focus, 2);
+                focused++;
+            }
+        }
+        Assert.assertTrue(focused > 0);
+    }
+
+    @Test(groups = "1s")
+    public void testTiledMatrix() throws IOException {
+        for (String name : new String[]{"Cells", "Tiled", "TiledDelta", "AsyncTiledDelta", "TiledBinary"}) {
+            int n = 12;
+            Model m = new Model();
+            Solver s = m.getSolver();
+            IntVar[][] vars = m.intVarMatrix("v", n, n, 1, n, false);
+            for (int i = 0; i < n; i++) {
+                m.allDifferent(vars[i]).post();
+                m.allDifferent(ArrayUtils.getColumn(vars, i)).post();
+            }
+            Visualization visu = new Visualization(name, s, dir,
+                    name.endsWith("Binary") ? TraceFormat.BINARY : TraceFormat.XML);
+            if (name.startsWith("Async")) {
+                visu.enableAsync(Backpressure.BLOCK);
+            }
+            visu.createTree();
+            visu.createViz();
+            if (name.endsWith("Delta")) {
+                visu.enableDeltaStates();
+            }
+            DomainMatrix matrix = new DomainMatrix(vars, "expanded", n, n);
+            if (!name.equals("Cells")) {
+                matrix.setTiles(4, 4);
+                matrix.setDetail(0, 0, 2, 2);
+                // the region of interest moves during the search
+                s.plugMonitor(new IMonitorDownBranch() {
+                    @Override
+                    public void afterDownBranch(boolean left) {
+                        if (s.getNodeCount() == 20) {
+                            matrix.setDetail(4, 4, 4, 6);
+                        }
+                    }
+                });
+            }
+            visu.addVisualizer(matrix);
+            s.findSolution();
+        }
+        File tiled = new File(dir, "visualization-Tiled.xml");
+        String xml = new String(Files.readAllBytes(tiled.toPath()), StandardCharsets.UTF_8);
+        Assert.assertTrue(tiled.length() < new File(dir, "visualization-Cells.xml").length());
+        Assert.assertTrue(xml.contains("tiles=\"4 4\""));
+        Assert.assertTrue(xml.contains("<tile index=\"1 1\""));
+        Assert.assertTrue(xml.contains("<dvar index=\"1 2\""));
+        // once moved, the region covers the tile 2 2 and details the cell 5 5
+        Assert.assertTrue(xml.contains("<dvar index=\"5 5\""));
+        String last = xml.substring(xml.lastIndexOf("<state "));
+        Assert.assertFalse(last.contains("<tile index=\"2 2\""));
+        Assert.assertTrue(last.contains("<tile index=\"2 3\""));
+        for (String name : new String[]{"TiledDelta", "AsyncTiledDelta"}) {
+            File delta = new File(dir, "visualization-" + name + ".xml");
+            File decoded = new File(dir, "visualization-" + name + "Decoded.xml");
+            Assert.assertTrue(delta.length() < tiled.length());
+            DeltaDecoder.decode(delta, decoded);
+            Assert.assertEquals(Files.readAllBytes(decoded.toPath()), Files.readAllBytes(tiled.toPath()));
+        }
+        File converted = new File(dir, "visualization-TiledBinary.xml");
+        BinaryTraceConverter.convert(new File(dir, "visualization-TiledBinary" + TraceFormat.BINARY.extension), converted);
+        Assert.assertEquals(Files.readAllBytes(converted.toPath()), Files.readAllBytes(tiled.toPath()));
+    }
+
     @Test(groups = "1s")
     public void testAllDifferentMatrix() {
         Model m = new Model();